@@ -126,7 +126,7 @@ public class MainActivity extends AppCompatActivity {
 
 	public void start() {
 		setLoadingText(someStrings[new Random().nextInt(someStrings.length)]);
-		HomeView.setup(new DoneTask() {
+		HomeView.setup(this, new DoneTask() {
 			@Override
 			public void onError() {
 				setLoadingText("Arionum Server is not reachable! Retrying...");
@@ -0,0 +1,660 @@
+package arionum.net.cubedpixels.api;
+
+import com.programmerdan.arionum.arionum_miner.LatencyWindow;
+
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import arionum.net.cubedpixels.utils.JsonStream;
+
+/**
+ * Shared client for the node's api.php. Requests run on a small bounded pool instead of a thread each, every
+ * response body is read to the end and closed so HttpURLConnection keeps the connection to the peer alive for
+ * the next request, and connect/read timeouts keep a dead peer from hanging a request forever.
+ * <p>
+ * Requests go to the {@link PeerManager}'s current peer and report their outcome to it. When the connection
+ * itself fails nothing was sent, so the request is retried once on the next best peer.
+ * <p>
+ * With {@link #setHedging} on, a {@link #READ_ONLY} request whose peer has not started answering within the
+ * endpoint's recent p90 is sent to a second peer as well and the first good answer wins. Hedges are limited to
+ * about {@value #HEDGE_RATIO} of the requests and to {@link PeerManager#MAX_HEDGES_PER_PEER} per peer at a time.
+ * <p>
+ * Every request returns a {@link Handle} that can cancel it, including a read that is already blocked on the
+ * socket. A cancelled request calls neither {@link Callback#onResponse} nor {@link Callback#onError}.
+ */
+public class ApiClient {
+
+	public static final int DEFAULT_CONNECT_TIMEOUT = 10000;
+	public static final int DEFAULT_READ_TIMEOUT = 20000;
+	static final int THREADS = 4;
+	static final int QUEUE = 64;
+	/**
+	 * Calls that only read, so sending them twice is harmless.
+	 */
+	public static final Set<String> READ_ONLY = Collections.unmodifiableSet(new HashSet<String>(Arrays.asList(
+			"getBalance", "getPendingBalance", "getTransactions", "getTransaction", "currentBlock", "getBlock")));
+	/**
+	 * Hedges earned per hedgeable request, so at most about this share of requests is sent twice.
+	 */
+	static final double HEDGE_RATIO = 0.1d;
+	static final double HEDGE_BURST = 3d;
+	/**
+	 * Hedge delay while an endpoint has too few samples for a p90.
+	 */
+	static final long DEFAULT_HEDGE_DELAY = 1000l;
+	static final long MIN_HEDGE_DELAY = 50l;
+	/**
+	 * Successful requests per endpoint the hedge delay is taken from, and how many it needs first.
+	 */
+	static final int LATENCY_SAMPLES = 64;
+	static final int MIN_LATENCY_SAMPLES = 16;
+
+	private static final ApiClient shared = new ApiClient(THREADS, QUEUE);
+
+	private final ThreadPoolExecutor executor;
+	private final AtomicInteger inFlight = new AtomicInteger();
+	private volatile int connectTimeout = DEFAULT_CONNECT_TIMEOUT;
+	private volatile int readTimeout = DEFAULT_READ_TIMEOUT;
+	private volatile Metrics metrics;
+	private volatile boolean hedging;
+	private final ScheduledThreadPoolExecutor hedger;
+	private final Map<String, LatencyWindow> latencies = new HashMap<String, LatencyWindow>();
+	private final AtomicInteger hedges = new AtomicInteger();
+	private double hedgeBudget = HEDGE_BURST;
+
+	public ApiClient(int threads, int queue) {
+		executor = new ThreadPoolExecutor(threads, threads, 30l, TimeUnit.SECONDS,
+				new LinkedBlockingQueue<Runnable>(queue), new ThreadFactory() {
+			private final AtomicInteger count = new AtomicInteger();
+
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "api-" + count.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		executor.allowCoreThreadTimeOut(true);
+		hedger = new ScheduledThreadPoolExecutor(2, new ThreadFactory() {
+			private final AtomicInteger count = new AtomicInteger();
+
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "api-hedge-" + count.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		hedger.setRemoveOnCancelPolicy(true);
+	}
+
+	public static ApiClient get() {
+		return shared;
+	}
+
+	/**
+	 * Timeouts for requests started from now on, in milliseconds; 0 waits forever.
+	 */
+	public void setTimeouts(int connectTimeout, int readTimeout) {
+		this.connectTimeout = connectTimeout;
+		this.readTimeout = readTimeout;
+	}
+
+	public void setMetrics(Metrics metrics) {
+		this.metrics = metrics;
+	}
+
+	/**
+	 * Off by default and not exposed in the app's settings. A body that starts before any hedge is parsed as it
+	 * streams in; once a hedge started, both bodies are buffered and only the winner is parsed.
+	 */
+	public void setHedging(boolean hedging) {
+		this.hedging = hedging;
+	}
+
+	/**
+	 * Second requests sent so far.
+	 */
+	public int getHedges() {
+		return hedges.get();
+	}
+
+	/**
+	 * Requests queued or running.
+	 */
+	public int getInFlight() {
+		return inFlight.get();
+	}
+
+	/**
+	 * Run {@code q=endpoint} against the current peer, parse the body with {@code parser} and hand the result to
+	 * {@code callback} on a pool thread.
+	 */
+	public <T> Handle request(String endpoint, Parser<T> parser, Callback<T> callback, ApiRequest.Argument... arguments) {
+		Call<T> call = new Call<T>(endpoint, arguments, parser, callback);
+		if (hedging && READ_ONLY.contains(endpoint)) {
+			earnHedge();
+		}
+		begin(endpoint);
+		try {
+			call.future = executor.submit(call);
+		} catch (RejectedExecutionException e) {
+			call.claimed.set(true);
+			finish(endpoint, 0l, false);
+			callback.onError(new IOException("Too many API requests queued"));
+		}
+		return call;
+	}
+
+	/**
+	 * {@link #request} with the body parsed into a JSONObject.
+	 */
+	public Handle requestJson(String endpoint, Callback<JSONObject> callback, ApiRequest.Argument... arguments) {
+		return request(endpoint, JSON, callback, arguments);
+	}
+
+	static URL buildUrl(String peer, String endpoint, ApiRequest.Argument... arguments) throws IOException {
+		StringBuilder url = new StringBuilder(peer);
+		url.append("/api.php?q=").append(URLEncoder.encode(endpoint, "UTF-8"));
+		for (ApiRequest.Argument argument : arguments) {
+			url.append('&').append(URLEncoder.encode(argument.getName(), "UTF-8"))
+					.append('=').append(URLEncoder.encode(argument.getData(), "UTF-8"));
+		}
+		return new URL(url.toString());
+	}
+
+	private synchronized void earnHedge() {
+		hedgeBudget = Math.min(HEDGE_BURST, hedgeBudget + HEDGE_RATIO);
+	}
+
+	private synchronized boolean spendHedge() {
+		if (hedgeBudget < 1d) {
+			return false;
+		}
+		hedgeBudget -= 1d;
+		return true;
+	}
+
+	private LatencyWindow latencies(String endpoint) {
+		synchronized (latencies) {
+			LatencyWindow window = latencies.get(endpoint);
+			if (window == null) {
+				window = new LatencyWindow(LATENCY_SAMPLES);
+				latencies.put(endpoint, window);
+			}
+			return window;
+		}
+	}
+
+	/**
+	 * How long to wait for the primary peer before hedging: the endpoint's p90 over its recent requests.
+	 */
+	long hedgeDelay(String endpoint) {
+		LatencyWindow window = latencies(endpoint);
+		if (window.size() < MIN_LATENCY_SAMPLES) {
+			return DEFAULT_HEDGE_DELAY;
+		}
+		return Math.max(MIN_HEDGE_DELAY, window.percentile(90d) / 1000000l);
+	}
+
+	private void begin(String endpoint) {
+		int current = inFlight.incrementAndGet();
+		Metrics hook = metrics;
+		if (hook != null) {
+			hook.onStart(endpoint, current);
+		}
+	}
+
+	private void finish(String endpoint, long nanos, boolean success) {
+		int current = inFlight.decrementAndGet();
+		Metrics hook = metrics;
+		if (hook != null) {
+			hook.onFinish(endpoint, nanos, success, current);
+		}
+	}
+
+	/**
+	 * Reads the body as UTF-8 text. Implementations must consume what they need and may stop early; the client
+	 * drains and closes the stream afterwards.
+	 */
+	public interface Parser<T> {
+		T parse(Reader body) throws Exception;
+	}
+
+	/**
+	 * {@code data.height} of an api.php answer, -1 if it has none, e.g. for a balance.
+	 */
+	static long heightOf(String body) {
+		try {
+			JsonStream json = new JsonStream(new StringReader(body));
+			json.beginObject();
+			while (json.hasNext()) {
+				if ("data".equals(json.nextName()) && json.peek() == JsonStream.Token.BEGIN_OBJECT) {
+					json.beginObject();
+					while (json.hasNext()) {
+						if ("height".equals(json.nextName())) {
+							return json.nextLong();
+						}
+						json.skipValue();
+					}
+					return -1l;
+				}
+				json.skipValue();
+			}
+		} catch (IOException e) {
+			// not the usual envelope, nothing to judge it by
+		}
+		return -1l;
+	}
+
+	/**
+	 * The body as text, for a hedge race that must not parse until it is won.
+	 */
+	static final Parser<String> TEXT = new Parser<String>() {
+		@Override
+		public String parse(Reader body) throws Exception {
+			StringBuilder text = new StringBuilder();
+			char[] buffer = new char[2048];
+			int count;
+			while ((count = body.read(buffer)) != -1) {
+				text.append(buffer, 0, count);
+			}
+			return text.toString();
+		}
+	};
+
+	public static final Parser<JSONObject> JSON = new Parser<JSONObject>() {
+		@Override
+		public JSONObject parse(Reader body) throws Exception {
+			return new JSONObject(TEXT.parse(body));
+		}
+	};
+
+	public static abstract class Callback<T> {
+		/**
+		 * Called on a pool thread with the parsed response.
+		 */
+		public abstract void onResponse(T response);
+
+		/**
+		 * Called on a pool thread when connecting, reading or parsing failed.
+		 */
+		public void onError(Exception e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Latency and load per endpoint, e.g. for peer scoring or a debug overlay. Called on the caller's or a pool
+	 * thread, so keep it cheap.
+	 */
+	public interface Metrics {
+		void onStart(String endpoint, int inFlight);
+
+		/**
+		 * @param nanos time from the request leaving the queue to its parsed response, 0 if it never ran
+		 */
+		void onFinish(String endpoint, long nanos, boolean success, int inFlight);
+	}
+
+	public interface Handle {
+		/**
+		 * Stop the request if it has not finished; a blocked connect or read is aborted.
+		 */
+		void cancel();
+
+		boolean isCancelled();
+	}
+
+	private final class Call<T> implements Runnable, Handle {
+		private final String endpoint;
+		private final ApiRequest.Argument[] arguments;
+		private final Parser<T> parser;
+		private final Callback<T> callback;
+		/**
+		 * Taken by whichever comes first, running or cancelling before it ran, so the finish is counted once.
+		 */
+		private final AtomicBoolean claimed = new AtomicBoolean();
+		private final Map<String, HttpURLConnection> connections = new ConcurrentHashMap<String, HttpURLConnection>();
+		private volatile boolean cancelled;
+		volatile Future<?> future;
+		// hedged race state, guarded by this
+		private boolean hedgeStarted;
+		private boolean decided;
+		private int finished;
+		private String winner;
+		private String won;
+		private String fallback;
+		private Exception lost;
+
+		Call(String endpoint, ApiRequest.Argument[] arguments, Parser<T> parser, Callback<T> callback) {
+			this.endpoint = endpoint;
+			this.arguments = arguments;
+			this.parser = parser;
+			this.callback = callback;
+		}
+
+		@Override
+		public void run() {
+			if (!claimed.compareAndSet(false, true)) {
+				return;
+			}
+			long begin = System.nanoTime();
+			T response = null;
+			Exception failure = null;
+			PeerManager peers = PeerManager.get();
+			String peer = peers.getCurrentPeer();
+			try {
+				try {
+					response = hedging && READ_ONLY.contains(endpoint) ? fetchHedged(peer) : fetch(peer, parser);
+				} catch (ConnectFailed e) {
+					String next = peers.alternativeTo(peer);
+					if (next == null || cancelled) {
+						throw e.getCause();
+					}
+					System.err.println("Unable to reach " + peer + ", retrying " + endpoint + " on " + next);
+					response = fetch(next, parser);
+				}
+			} catch (ConnectFailed e) {
+				failure = (Exception) e.getCause();
+			} catch (Exception e) {
+				failure = e;
+			} finally {
+				finish(endpoint, System.nanoTime() - begin, failure == null);
+			}
+			if (cancelled) {
+				return;
+			}
+			if (failure == null) {
+				callback.onResponse(response);
+			} else {
+				callback.onError(failure);
+			}
+		}
+
+		/**
+		 * One attempt against {@code peer}, scored in the {@link PeerManager} unless it was cancelled.
+		 */
+		private <R> R fetch(String peer, Parser<R> reader) throws Exception {
+			long begin = System.nanoTime();
+			boolean success = false;
+			try {
+				R response = attempt(peer, reader);
+				success = true;
+				return response;
+			} finally {
+				long nanos = System.nanoTime() - begin;
+				if (success) {
+					latencies(endpoint).record(nanos);
+				}
+				if (cancelled) {
+					// says nothing about the peer
+				} else if (lostRace(peer)) {
+					// aborted by the faster peer, so it would have taken at least this long
+					PeerManager.get().record(peer, nanos, true);
+				} else {
+					PeerManager.get().record(peer, nanos, success);
+				}
+			}
+		}
+
+		/**
+		 * Ask {@code primary}, and if it has not started answering within the endpoint's p90 also the best in-sync
+		 * peer besides it. A primary body that arrives first is parsed as it streams and no hedge starts after that.
+		 * Once a hedge started, both bodies are buffered so only the winner gets parsed, and the winner aborts the
+		 * other download. An answer whose block height lags behind the highest known one only wins if the other
+		 * attempt fails.
+		 */
+		private T fetchHedged(final String primary) throws Exception {
+			final ScheduledFuture<?> timer = hedger.schedule(new Runnable() {
+				@Override
+				public void run() {
+					// only the trigger runs here, so a slow hedge does not hold up the next one's timer
+					try {
+						executor.execute(new Runnable() {
+							@Override
+							public void run() {
+								hedge(primary);
+							}
+						});
+					} catch (RejectedExecutionException e) {
+						// the pool is busy enough without a second request
+					}
+				}
+			}, hedgeDelay(endpoint), TimeUnit.MILLISECONDS);
+			final Object[] streamed = new Object[1];
+			String body = null;
+			Exception failure = null;
+			try {
+				body = fetch(primary, new Parser<String>() {
+					@Override
+					public String parse(Reader reader) throws Exception {
+						boolean stream;
+						synchronized (Call.this) {
+							stream = !hedgeStarted;
+							if (stream) {
+								// the primary is answering, no hedge will start now
+								decided = true;
+								winner = primary;
+							}
+						}
+						if (!stream) {
+							return TEXT.parse(reader);
+						}
+						streamed[0] = parser.parse(reader);
+						return null;
+					}
+				});
+			} catch (Exception e) {
+				failure = e;
+			}
+			String result;
+			synchronized (this) {
+				if (!hedgeStarted) {
+					decided = true;
+					timer.cancel(false);
+					if (failure != null) {
+						throw failure;
+					}
+					@SuppressWarnings("unchecked")
+					T response = (T) streamed[0];
+					return response;
+				}
+				offer(primary, body, failure);
+				while (!decided) {
+					wait();
+				}
+				if (won == null) {
+					throw lost;
+				}
+				result = won;
+			}
+			return parser.parse(new StringReader(result));
+		}
+
+		private void hedge(String primary) {
+			synchronized (this) {
+				if (decided || cancelled) {
+					return;
+				}
+			}
+			PeerManager peers = PeerManager.get();
+			String target = peers.acquireHedge(primary);
+			if (target == null) {
+				return;
+			}
+			try {
+				synchronized (this) {
+					if (decided || cancelled || !spendHedge()) {
+						return;
+					}
+					hedgeStarted = true;
+				}
+				hedges.incrementAndGet();
+				String body = null;
+				Exception failure = null;
+				try {
+					body = fetch(target, TEXT);
+				} catch (Exception e) {
+					failure = e instanceof ConnectFailed ? (Exception) e.getCause() : e;
+				}
+				synchronized (this) {
+					offer(target, body, failure);
+				}
+			} finally {
+				peers.releaseHedge(target);
+			}
+		}
+
+		/**
+		 * An attempt of a started race finished. Caller holds the lock.
+		 */
+		private void offer(String peer, String body, Exception failure) {
+			finished++;
+			if (decided) {
+				return;
+			}
+			if (failure != null) {
+				lost = failure;
+			} else if (PeerManager.get().isCurrent(heightOf(body))) {
+				won = body;
+				winner = peer;
+				decided = true;
+			} else if (fallback == null) {
+				fallback = body;
+				winner = peer;
+			}
+			if (finished == 2 && !decided) {
+				won = fallback;
+				decided = true;
+			}
+			if (decided) {
+				for (Map.Entry<String, HttpURLConnection> open : connections.entrySet()) {
+					if (!open.getKey().equals(winner)) {
+						// aborts the slower download, which also frees the run() thread if that is the one waiting
+						open.getValue().disconnect();
+					}
+				}
+			}
+			notifyAll();
+		}
+
+		private synchronized boolean lostRace(String peer) {
+			return decided && winner != null && !winner.equals(peer);
+		}
+
+		private <R> R attempt(String peer, Parser<R> reader) throws Exception {
+			URL url = buildUrl(peer, endpoint, arguments);
+			System.out.println(url.toString());
+			HttpURLConnection http = (HttpURLConnection) url.openConnection();
+			http.setConnectTimeout(connectTimeout);
+			http.setReadTimeout(readTimeout);
+			http.setRequestProperty("Connection", "keep-alive");
+			http.setRequestProperty("Accept-Encoding", "identity");
+			connections.put(peer, http);
+			try {
+				if (cancelled || lostRace(peer)) {
+					http.disconnect();
+					throw new IOException("Cancelled");
+				}
+				try {
+					http.connect();
+				} catch (IOException e) {
+					throw new ConnectFailed(e);
+				}
+				int status = http.getResponseCode();
+				if (status != HttpURLConnection.HTTP_OK) {
+					discard(http.getErrorStream());
+					throw new IOException("HTTP " + status + " from " + endpoint);
+				}
+				InputStream in = http.getInputStream();
+				try {
+					return reader.parse(new InputStreamReader(in, "UTF-8"));
+				} finally {
+					// a fully read and closed body lets the connection go back to the keep-alive pool
+					discard(in);
+				}
+			} finally {
+				connections.remove(peer);
+			}
+		}
+
+		private void discard(InputStream in) {
+			if (in == null) {
+				return;
+			}
+			try {
+				byte[] buffer = new byte[1024];
+				while (in.read(buffer) != -1) {
+				}
+			} catch (IOException e) {
+			} finally {
+				try {
+					in.close();
+				} catch (IOException e) {
+				}
+			}
+		}
+
+		@Override
+		public void cancel() {
+			cancelled = true;
+			if (claimed.compareAndSet(false, true)) {
+				// never started, so run() will not report it
+				finish(endpoint, 0l, false);
+				Future<?> pending = future;
+				if (pending != null) {
+					pending.cancel(false);
+				}
+				return;
+			}
+			for (HttpURLConnection open : connections.values()) {
+				open.disconnect();
+			}
+		}
+
+		@Override
+		public boolean isCancelled() {
+			return cancelled;
+		}
+	}
+
+	/**
+	 * The connection could not be opened, so the request never left and may be sent to another peer.
+	 */
+	private static final class ConnectFailed extends Exception {
+		ConnectFailed(IOException cause) {
+			super(cause);
+		}
+
+		@Override
+		public synchronized IOException getCause() {
+			return (IOException) super.getCause();
+		}
+	}
+}
@@ -2,63 +2,115 @@ package arionum.net.cubedpixels.api;
 
 import org.json.JSONObject;
 
-import java.io.BufferedInputStream;
-import java.io.ByteArrayOutputStream;
-import java.net.URL;
+import java.io.IOException;
+import java.io.Reader;
 
-import arionum.net.cubedpixels.views.HomeView;
+import arionum.net.cubedpixels.utils.JsonStream;
 
+/**
+ * The wallet's calls into api.php, run on the shared {@link ApiClient}.
+ */
 public class ApiRequest {
 
-	public static void requestFeedback(final RequestFeedback feedback, final String option, final Argument... data) {
-		//CREATE ASYNC THREAD WITH JSON RESPONSE
-		new Thread(new Runnable() {
+	/**
+	 * Request {@code option} and hand the whole JSON response to {@code feedback}, or null if it failed.
+	 */
+	public static ApiClient.Handle requestFeedback(final RequestFeedback feedback, final String option, final Argument... data) {
+		return ApiClient.get().requestJson(option, new ApiClient.Callback<JSONObject>() {
 			@Override
-			public void run() {
-				try {
-					String afterwards = "";
-					for (Argument a : data) {
-						afterwards += "&" + a.getName() + "=" + a.getData();
-					}
-					URL url = new URL(HomeView.getCurrentPeer() + "/api.php?q=" + option + afterwards);
-					System.out.println(url.toString());
-					String response = "";
-					//DOWNLOAD URL BYTES
-					ByteArrayOutputStream baos = new ByteArrayOutputStream();
-					BufferedInputStream in = new BufferedInputStream(url.openStream());
-					byte data[] = new byte[1024];
-					int count;
-					while ((count = in.read(data, 0, 1024)) != -1) {
-						baos.write(data, 0, count);
-						try {
-							//TRY TO PREFETCH
-							String s = new String(baos.toByteArray());
-							feedback.onPreFetch(new JSONObject(s.substring(0, s.lastIndexOf("}") + 1) + "]}"));
-						} catch (Exception e) {
-							e.printStackTrace();
-						}
-					}
-					//FULL RESPONSE
-					response = new String(baos.toByteArray());
-					//PARSE JSON
-					//DONE
-					JSONObject obj = new JSONObject(response.toString());
-					feedback.onFeedback(obj);
-				} catch (Exception e) {
-					e.printStackTrace();
-					feedback.onFeedback(null);
+			public void onResponse(JSONObject response) {
+				feedback.onFeedback(response);
+			}
+
+			@Override
+			public void onError(Exception e) {
+				e.printStackTrace();
+				feedback.onFeedback(null);
+			}
+		}, data);
+	}
+
+	/**
+	 * getTransactions, handing out each transaction as soon as it is parsed off the wire.
+	 */
+	public static ApiClient.Handle requestTransactions(final TransactionFeedback feedback, final Argument... data) {
+		return ApiClient.get().request("getTransactions", new ApiClient.Parser<Integer>() {
+			@Override
+			public Integer parse(Reader body) throws Exception {
+				return readTransactions(body, feedback);
+			}
+		}, new ApiClient.Callback<Integer>() {
+			@Override
+			public void onResponse(Integer count) {
+				feedback.onComplete(count);
+			}
+
+			@Override
+			public void onError(Exception e) {
+				e.printStackTrace();
+				feedback.onError(e);
+			}
+		}, data);
+	}
+
+	/**
+	 * Stream the {@code data} array of a getTransactions response into {@code feedback}.
+	 *
+	 * @return number of transactions read
+	 * @throws IOException on malformed input or a status other than ok
+	 */
+	public static int readTransactions(Reader reader, TransactionFeedback feedback) throws IOException {
+		JsonStream json = new JsonStream(reader);
+		int count = 0;
+		String status = null;
+		json.beginObject();
+		while (json.hasNext()) {
+			String name = json.nextName();
+			if ("status".equals(name)) {
+				status = json.nextString();
+				if (!"ok".equals(status)) {
+					throw new IOException("API status: " + status);
 				}
+			} else if ("data".equals(name) && json.peek() == JsonStream.Token.BEGIN_ARRAY) {
+				json.beginArray();
+				while (json.hasNext()) {
+					feedback.onTransaction(Transaction.read(json));
+					count++;
+				}
+				json.endArray();
+			} else {
+				json.skipValue();
 			}
-		}).start();
+		}
+		json.endObject();
+		return count;
 	}
 
 	public static abstract class RequestFeedback {
 		public abstract void onFeedback(JSONObject object);
 
+		/**
+		 * @deprecated No longer called. Re-parsing the growing body on every chunk made large responses
+		 * quadratic; use {@link #requestTransactions} to get records while they arrive.
+		 */
+		@Deprecated
 		public void onPreFetch(JSONObject object) {
 		}
 	}
 
+	public static abstract class TransactionFeedback {
+		/**
+		 * Called on the request thread for every transaction, in response order.
+		 */
+		public abstract void onTransaction(Transaction transaction);
+
+		public void onComplete(int count) {
+		}
+
+		public void onError(Exception e) {
+		}
+	}
+
 	public static class Argument {
 		private String name;
 		private String data;
@@ -0,0 +1,535 @@
+package arionum.net.cubedpixels.api;
+
+import org.json.JSONObject;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Scanner;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import arionum.net.cubedpixels.utils.DoneTask;
+
+/**
+ * Knows the network's peers and routes API requests to the best one.
+ * <p>
+ * Every peer keeps an EWMA of its latency and of its error rate, fed by concurrent {@code currentBlock}
+ * probes and by every request the {@link ApiClient} makes. The current peer is the one with the lowest
+ * {@link Peer#score()}; a failing current peer loses that place as soon as another one scores better, and two
+ * failures in a row trigger a new probe round. Peers and scores are saved, so a restart can go straight to
+ * probing the known peers instead of waiting on {@value #PEER_LIST}.
+ * <p>
+ * Probes also note each peer's block height, so a hedged read only goes to a peer that is in sync, see
+ * {@link #acquireHedge}. Heights older than {@value #HEIGHT_MAX_AGE} ms say little about who is in sync, so a
+ * hedge asked for then starts a new probe round instead.
+ */
+public class PeerManager {
+
+	public static final String PEER_LIST = "http://api.arionum.com/peers.txt";
+	public static final String FALLBACK_PEER = "http://peer1.arionum.com";
+	static final double ALPHA = 0.3d;
+	/**
+	 * Latency assumed for a peer that never answered, so an unknown peer ranks behind any healthy one.
+	 */
+	static final double UNKNOWN_LATENCY = 5000d;
+	/**
+	 * How much an error rate of 1 multiplies the latency by, on top of the latency itself.
+	 */
+	static final double ERROR_WEIGHT = 10d;
+	static final int PROBE_TIMEOUT = 5000;
+	static final int PROBE_THREADS = 8;
+	static final long REPROBE_DELAY = 30000l;
+	static final long LIST_MAX_AGE = 24l * 60l * 60l * 1000l;
+	/**
+	 * Blocks a peer may lag behind the highest known height and still count as in sync.
+	 */
+	static final long HEIGHT_TOLERANCE = 2l;
+	/**
+	 * About one block, after which probed heights are too old to judge a peer by.
+	 */
+	static final long HEIGHT_MAX_AGE = 4l * 60l * 1000l;
+	/**
+	 * Hedged requests one peer gets at the same time, on top of the requests routed to it normally.
+	 */
+	static final int MAX_HEDGES_PER_PEER = 2;
+
+	private static final PeerManager shared = new PeerManager();
+
+	private final Map<String, Peer> peers = new LinkedHashMap<String, Peer>();
+	private final ExecutorService probes = Executors.newFixedThreadPool(PROBE_THREADS, new ThreadFactory() {
+		private final AtomicInteger count = new AtomicInteger();
+
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread thread = new Thread(r, "peer-probe-" + count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+	});
+	private volatile String current = "";
+	private File store;
+	private long listLoaded;
+	private long lastProbe;
+	private long heightsProbed;
+	private boolean probing;
+	private boolean probeQueued;
+	private List<DoneTask> waiting;
+
+	public static PeerManager get() {
+		return shared;
+	}
+
+	/**
+	 * The peer requests go to, "" until the first peer is known.
+	 */
+	public String getCurrentPeer() {
+		return current;
+	}
+
+	/**
+	 * Where peers and scores are kept between launches. Loads what is there.
+	 */
+	public synchronized void setStore(File store) {
+		if (store.equals(this.store)) {
+			return;
+		}
+		this.store = store;
+		load();
+	}
+
+	/**
+	 * Get a usable peer in the background: known peers are probed right away, the public peer list is only
+	 * waited for when no peer is known. {@code done} gets {@link DoneTask#onError()} if there is none. Calls
+	 * while a refresh runs wait for that one.
+	 */
+	public void refresh(DoneTask done) {
+		synchronized (this) {
+			if (waiting != null) {
+				waiting.add(done);
+				return;
+			}
+			waiting = new ArrayList<DoneTask>();
+			waiting.add(done);
+		}
+		new Thread(new Runnable() {
+			@Override
+			public void run() {
+				boolean known;
+				boolean listStale;
+				synchronized (PeerManager.this) {
+					known = !peers.isEmpty();
+					listStale = System.currentTimeMillis() - listLoaded > LIST_MAX_AGE;
+				}
+				if (!known || listStale) {
+					try {
+						downloadList();
+					} catch (IOException e) {
+						System.err.println("Peer list download failed: " + e.getMessage());
+						if (!known) {
+							finish(false);
+							return;
+						}
+					}
+				}
+				probeAll();
+				finish(!current.isEmpty());
+			}
+		}, "peer-refresh").start();
+	}
+
+	private void finish(boolean success) {
+		List<DoneTask> done;
+		synchronized (this) {
+			done = waiting;
+			waiting = null;
+		}
+		for (DoneTask task : done) {
+			if (success) {
+				task.onDone();
+			} else {
+				task.onError();
+			}
+		}
+	}
+
+	/**
+	 * Probe every known peer at once and switch to the best. Blocks until all probes answered or timed out.
+	 */
+	public void probeAll() {
+		List<String> urls;
+		synchronized (this) {
+			if (probing) {
+				return;
+			}
+			probing = true;
+			probeQueued = false;
+			lastProbe = System.currentTimeMillis();
+			urls = new ArrayList<String>(peers.keySet());
+		}
+		try {
+			final CountDownLatch done = new CountDownLatch(urls.size());
+			for (final String url : urls) {
+				probes.execute(new Runnable() {
+					@Override
+					public void run() {
+						try {
+							long begin = System.nanoTime();
+							long height = probe(url);
+							record(url, System.nanoTime() - begin, height >= 0);
+							if (height >= 0) {
+								synchronized (PeerManager.this) {
+									Peer peer = peers.get(url);
+									if (peer != null) {
+										peer.height = height;
+									}
+								}
+							}
+						} finally {
+							done.countDown();
+						}
+					}
+				});
+			}
+			done.await(PROBE_TIMEOUT * 3l, TimeUnit.MILLISECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			synchronized (this) {
+				probing = false;
+				heightsProbed = System.currentTimeMillis();
+				select();
+				save();
+			}
+		}
+		System.out.println("Peers probed, using " + current);
+	}
+
+	/**
+	 * Feed one request's outcome into the scores of {@code url}, switching peers if the current one now ranks
+	 * worse.
+	 */
+	public synchronized void record(String url, long nanos, boolean success) {
+		Peer peer = peers.get(url);
+		if (peer == null) {
+			return;
+		}
+		peer.record(nanos / 1000000d, success);
+		if (url.equals(current)) {
+			String before = current;
+			select();
+			if (!before.equals(current)) {
+				System.out.println("Switched peer from " + before + " to " + current);
+				save();
+			}
+			if (peer.failures >= 2 && System.currentTimeMillis() - lastProbe > REPROBE_DELAY) {
+				probeLater();
+			}
+		}
+	}
+
+	/**
+	 * Start a probe round on a probe thread unless one is running or queued. Caller holds the lock.
+	 */
+	private void probeLater() {
+		if (probing || probeQueued) {
+			return;
+		}
+		probeQueued = true;
+		probes.execute(new Runnable() {
+			@Override
+			public void run() {
+				probeAll();
+			}
+		});
+	}
+
+	/**
+	 * Peers with their scores, best first.
+	 */
+	public synchronized List<Peer> getPeers() {
+		List<Peer> sorted = new ArrayList<Peer>(peers.values());
+		java.util.Collections.sort(sorted, new java.util.Comparator<Peer>() {
+			@Override
+			public int compare(Peer a, Peer b) {
+				return Double.compare(a.score(), b.score());
+			}
+		});
+		return sorted;
+	}
+
+	/**
+	 * The best peer other than {@code url}, for retrying a request that could not reach it. Null if there is
+	 * no other peer.
+	 */
+	public synchronized String alternativeTo(String url) {
+		Peer best = null;
+		for (Peer peer : peers.values()) {
+			if (!peer.url.equals(url) && (best == null || peer.score() < best.score())) {
+				best = peer;
+			}
+		}
+		return best == null ? null : best.url;
+	}
+
+	/**
+	 * Reserve a hedge slot on the best peer other than {@code primary} that is in sync. Null if there is none,
+	 * every candidate already has {@value #MAX_HEDGES_PER_PEER} hedges running, or the heights are too old to
+	 * tell, in which case they are probed again. A reserved slot must be given back through
+	 * {@link #releaseHedge}.
+	 */
+	public synchronized String acquireHedge(String primary) {
+		if (heightsStale()) {
+			probeLater();
+			return null;
+		}
+		Peer best = null;
+		for (Peer peer : peers.values()) {
+			if (!peer.url.equals(primary) && peer.hedges < MAX_HEDGES_PER_PEER && isInSync(peer)
+					&& (best == null || peer.score() < best.score())) {
+				best = peer;
+			}
+		}
+		if (best == null) {
+			return null;
+		}
+		best.hedges++;
+		return best.url;
+	}
+
+	public synchronized void releaseHedge(String url) {
+		Peer peer = peers.get(url);
+		if (peer != null && peer.hedges > 0) {
+			peer.hedges--;
+		}
+	}
+
+	/**
+	 * Whether an answer at block {@code height} is within {@value #HEIGHT_TOLERANCE} blocks of the highest height
+	 * any peer reported. True for an unknown height (below 0), since then there is nothing to check.
+	 */
+	public synchronized boolean isCurrent(long height) {
+		long highest = highest();
+		return height < 0 || highest < 0 || height >= highest - HEIGHT_TOLERANCE;
+	}
+
+	private boolean heightsStale() {
+		return System.currentTimeMillis() - heightsProbed > HEIGHT_MAX_AGE;
+	}
+
+	private boolean isInSync(Peer peer) {
+		long highest = highest();
+		return highest < 0 || peer.height >= highest - HEIGHT_TOLERANCE;
+	}
+
+	private long highest() {
+		long highest = -1l;
+		for (Peer peer : peers.values()) {
+			highest = Math.max(highest, peer.height);
+		}
+		return highest;
+	}
+
+	private void select() {
+		Peer best = null;
+		for (Peer peer : peers.values()) {
+			if (best == null || peer.score() < best.score()) {
+				best = peer;
+			}
+		}
+		if (best != null) {
+			Peer active = peers.get(current);
+			// only switch for a clear win, so two similar peers do not take turns
+			if (active == null || best.score() < active.score() * 0.8d) {
+				current = best.url;
+			}
+		} else if (current.isEmpty()) {
+			current = FALLBACK_PEER;
+		}
+	}
+
+	/**
+	 * @return the peer's block height, -1 if it did not answer properly
+	 */
+	private long probe(String url) {
+		try {
+			HttpURLConnection http = (HttpURLConnection) new URL(url + "/api.php?q=currentBlock").openConnection();
+			http.setConnectTimeout(PROBE_TIMEOUT);
+			http.setReadTimeout(PROBE_TIMEOUT);
+			int status = http.getResponseCode();
+			InputStream in = status == HttpURLConnection.HTTP_OK ? http.getInputStream() : http.getErrorStream();
+			long height = -1l;
+			if (in != null) {
+				Scanner body = new Scanner(in, "UTF-8").useDelimiter("\\A");
+				if (status == HttpURLConnection.HTTP_OK && body.hasNext()) {
+					JSONObject block = new JSONObject(body.next());
+					if ("ok".equals(block.optString("status", ""))) {
+						height = block.getJSONObject("data").optLong("height", -1l);
+					}
+				}
+				in.close();
+			}
+			return height;
+		} catch (Exception e) {
+			return -1l;
+		}
+	}
+
+	private void downloadList() throws IOException {
+		HttpURLConnection http = (HttpURLConnection) new URL(PEER_LIST).openConnection();
+		http.setConnectTimeout(PROBE_TIMEOUT);
+		http.setReadTimeout(PROBE_TIMEOUT);
+		Scanner s = new Scanner(http.getInputStream(), "UTF-8");
+		List<String> urls = new ArrayList<String>();
+		try {
+			while (s.hasNext()) {
+				urls.add(trimSlash(s.next()));
+			}
+		} finally {
+			s.close();
+		}
+		if (urls.isEmpty()) {
+			throw new IOException("Empty peer list");
+		}
+		synchronized (this) {
+			for (String url : urls) {
+				if (!peers.containsKey(url)) {
+					peers.put(url, new Peer(url));
+				}
+			}
+			listLoaded = System.currentTimeMillis();
+		}
+	}
+
+	private static String trimSlash(String url) {
+		return url.endsWith("/") ? url.substring(0, url.length() - 1) : url;
+	}
+
+	/**
+	 * First line: when the list was downloaded. Then one peer per line: url, latency EWMA in ms (-1 if none)
+	 * and error EWMA, tab separated.
+	 */
+	private void load() {
+		if (store == null || !store.exists()) {
+			return;
+		}
+		try {
+			BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(store), "UTF-8"));
+			try {
+				String line = reader.readLine();
+				listLoaded = line == null ? 0l : Long.parseLong(line.trim());
+				while ((line = reader.readLine()) != null) {
+					String[] parts = line.split("\t");
+					if (parts.length < 3) {
+						continue;
+					}
+					Peer peer = new Peer(parts[0]);
+					peer.latency = Double.parseDouble(parts[1]);
+					peer.errors = Double.parseDouble(parts[2]);
+					peers.put(peer.url, peer);
+				}
+			} finally {
+				reader.close();
+			}
+			select();
+		} catch (Exception e) {
+			System.err.println("Unable to load peers: " + e.getMessage());
+		}
+	}
+
+	private void save() {
+		if (store == null) {
+			return;
+		}
+		try {
+			Writer writer = new OutputStreamWriter(new FileOutputStream(store), "UTF-8");
+			try {
+				writer.write(listLoaded + "\n");
+				for (Peer peer : peers.values()) {
+					writer.write(String.format(Locale.US, "%s\t%.1f\t%.4f\n", peer.url, peer.latency, peer.errors));
+				}
+			} finally {
+				writer.close();
+			}
+		} catch (IOException e) {
+			System.err.println("Unable to save peers: " + e.getMessage());
+		}
+	}
+
+	public static class Peer {
+		final String url;
+		/**
+		 * EWMA of successful request latency in ms, -1 before the first success.
+		 */
+		double latency = -1d;
+		/**
+		 * EWMA of failures, 0 (never fails) to 1 (always fails).
+		 */
+		double errors;
+		int failures;
+		/**
+		 * Block height at the last probe, -1 if unknown. Not saved, heights are stale by the next launch.
+		 */
+		long height = -1l;
+		int hedges;
+
+		Peer(String url) {
+			this.url = url;
+		}
+
+		void record(double millis, boolean success) {
+			errors += ALPHA * ((success ? 0d : 1d) - errors);
+			if (success) {
+				latency = latency < 0 ? millis : latency + ALPHA * (millis - latency);
+				failures = 0;
+			} else {
+				failures++;
+			}
+		}
+
+		/**
+		 * Lower is better: expected latency, inflated by the error rate.
+		 */
+		public double score() {
+			return (latency < 0 ? UNKNOWN_LATENCY : latency) * (1d + ERROR_WEIGHT * errors);
+		}
+
+		public String getUrl() {
+			return url;
+		}
+
+		public double getLatency() {
+			return latency;
+		}
+
+		public double getErrorRate() {
+			return errors;
+		}
+
+		public long getHeight() {
+			return height;
+		}
+
+		@Override
+		public String toString() {
+			return String.format(Locale.US, "%s %.0fms %.0f%% errors", url, latency, errors * 100d);
+		}
+	}
+}
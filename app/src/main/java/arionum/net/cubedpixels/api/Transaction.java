@@ -0,0 +1,106 @@
+package arionum.net.cubedpixels.api;
+
+import java.io.IOException;
+
+import arionum.net.cubedpixels.utils.JsonStream;
+
+/**
+ * The fields of an api.php transaction the app shows. Everything else in the record is skipped while parsing.
+ */
+public class Transaction {
+	private String id;
+	private String val;
+	private String src;
+	private String dst;
+	private long date;
+	private String type;
+	private long height;
+
+	Transaction() {
+	}
+
+	Transaction(String id, String val, String src, String dst, long date, String type, long height) {
+		this.id = id;
+		this.val = val;
+		this.src = src;
+		this.dst = dst;
+		this.date = date;
+		this.type = type;
+		this.height = height;
+	}
+
+	/**
+	 * Read one transaction object from the stream, positioned at its opening brace.
+	 */
+	public static Transaction read(JsonStream json) throws IOException {
+		Transaction transaction = new Transaction();
+		json.beginObject();
+		while (json.hasNext()) {
+			String name = json.nextName();
+			if ("id".equals(name)) {
+				transaction.id = json.nextString();
+			} else if ("val".equals(name)) {
+				transaction.val = json.nextString();
+			} else if ("src".equals(name)) {
+				transaction.src = json.nextString();
+			} else if ("dst".equals(name)) {
+				transaction.dst = json.nextString();
+			} else if ("date".equals(name)) {
+				transaction.date = json.nextLong();
+			} else if ("type".equals(name)) {
+				transaction.type = json.nextString();
+			} else if ("height".equals(name) && json.peek() != JsonStream.Token.NULL) {
+				transaction.height = json.nextLong();
+			} else {
+				json.skipValue();
+			}
+		}
+		json.endObject();
+		return transaction;
+	}
+
+	public String getId() {
+		return id;
+	}
+
+	public String getVal() {
+		return val;
+	}
+
+	public String getSrc() {
+		return src;
+	}
+
+	public String getDst() {
+		return dst;
+	}
+
+	/**
+	 * @return unix time in seconds
+	 */
+	public long getDate() {
+		return date;
+	}
+
+	public String getType() {
+		return type;
+	}
+
+	/**
+	 * @return block height, 0 while pending
+	 */
+	public long getHeight() {
+		return height;
+	}
+
+	public boolean isCredit() {
+		return "credit".equals(type);
+	}
+
+	/**
+	 * Still in the mempool. Pending transactions keep their id once they are mined, but not their type.
+	 */
+	public boolean isPending() {
+		return "mempool".equals(type);
+	}
+}
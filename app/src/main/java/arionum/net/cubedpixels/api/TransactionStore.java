@@ -0,0 +1,357 @@
+package arionum.net.cubedpixels.api;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * The account's transaction history on disk, so a refresh only downloads what is new.
+ * <p>
+ * Mined transactions are appended to a tab separated file, oldest first, and kept in memory newest first as
+ * those lines, with an index by id. Loading only checks a line's field count; a line is parsed when it is part
+ * of a requested {@link #page}, and dropped then if it does not parse.
+ * getTransactions has no "since" parameter, so {@link #sync} asks for the newest {@value #FIRST_PAGE} and widens
+ * the page only while none of them is known yet. Pending transactions are not written, they are replaced by
+ * every sync until they come back mined.
+ * <p>
+ * The first call reads the whole file, so keep it off the main thread. Writes happen outside the store's lock,
+ * so readers only wait for the in-memory update.
+ */
+public class TransactionStore {
+
+	static final int FIRST_PAGE = 10;
+	/**
+	 * Largest page api.php hands out.
+	 */
+	static final int MAX_PAGE = 1000;
+	static final int GROWTH = 10;
+	static final int FIELDS = 7;
+
+	private static final Map<String, TransactionStore> open = new HashMap<String, TransactionStore>();
+	/**
+	 * Starts the syncs of every store. Only the load and the first request run here, the rest is on request
+	 * threads.
+	 */
+	private static final ExecutorService syncs = Executors.newSingleThreadExecutor(new ThreadFactory() {
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread thread = new Thread(r, "transactions-sync");
+			thread.setDaemon(true);
+			return thread;
+		}
+	});
+
+	private final File file;
+	/**
+	 * Lines of mined transactions, newest first.
+	 */
+	private final List<String> mined = new ArrayList<String>();
+	private final Set<String> ids = new HashSet<String>();
+	private List<Transaction> pending = new ArrayList<Transaction>();
+	private boolean loaded;
+	private List<SyncFeedback> waiting;
+
+	TransactionStore(File file) {
+		this.file = file;
+	}
+
+	/**
+	 * The store of {@code account}, one per account and process.
+	 */
+	public static TransactionStore open(File directory, String account) {
+		synchronized (open) {
+			TransactionStore store = open.get(account);
+			if (store == null) {
+				store = new TransactionStore(new File(directory, "transactions-" + account + ".tsv"));
+				open.put(account, store);
+			}
+			return store;
+		}
+	}
+
+	/**
+	 * Pending and mined transactions.
+	 */
+	public synchronized int size() {
+		load();
+		return pending.size() + mined.size();
+	}
+
+	/**
+	 * Up to {@code limit} transactions from {@code offset} on, pending ones first, then newest first.
+	 */
+	public synchronized List<Transaction> page(int offset, int limit) {
+		load();
+		List<Transaction> page = new ArrayList<Transaction>(Math.max(0, Math.min(limit, size() - offset)));
+		int i = offset;
+		while (page.size() < limit) {
+			if (i < pending.size()) {
+				page.add(pending.get(i++));
+			} else if (i - pending.size() < mined.size()) {
+				String line = mined.get(i - pending.size());
+				try {
+					page.add(parse(line));
+					i++;
+				} catch (RuntimeException e) {
+					// written by a broken build or damaged on disk, the next line moves up
+					mined.remove(i - pending.size());
+					ids.remove(line.substring(0, line.indexOf('\t')));
+				}
+			} else {
+				break;
+			}
+		}
+		return page;
+	}
+
+	/**
+	 * Id of the newest transaction, pending or mined, null if there is none.
+	 */
+	public synchronized String getNewestId() {
+		List<Transaction> newest = page(0, 1);
+		return newest.isEmpty() ? null : newest.get(0).getId();
+	}
+
+	/**
+	 * Fetch what is new since the last sync. {@code feedback} is called on a request thread; calls while a sync
+	 * runs wait for that one.
+	 */
+	public void sync(final String publicKey, final String account, SyncFeedback feedback) {
+		synchronized (this) {
+			if (waiting != null) {
+				waiting.add(feedback);
+				return;
+			}
+			waiting = new ArrayList<SyncFeedback>();
+			waiting.add(feedback);
+		}
+		// may be called on the main thread, and the first sync loads the file
+		syncs.execute(new Runnable() {
+			@Override
+			public void run() {
+				int limit;
+				synchronized (TransactionStore.this) {
+					load();
+					// nothing to stop at yet, so take the whole history at once
+					limit = mined.isEmpty() ? MAX_PAGE : FIRST_PAGE;
+				}
+				request(publicKey, account, limit);
+			}
+		});
+	}
+
+	private void request(final String publicKey, final String account, final int limit) {
+		final List<Transaction> page = new ArrayList<Transaction>(limit);
+		ApiRequest.requestTransactions(new ApiRequest.TransactionFeedback() {
+			@Override
+			public void onTransaction(Transaction transaction) {
+				page.add(transaction);
+			}
+
+			@Override
+			public void onComplete(int count) {
+				int added;
+				try {
+					added = merge(page, limit);
+				} catch (IOException e) {
+					finish(-1, e);
+					return;
+				}
+				if (added < 0) {
+					request(publicKey, account, Math.min(MAX_PAGE, limit * GROWTH));
+				} else {
+					finish(added, null);
+				}
+			}
+
+			@Override
+			public void onError(Exception e) {
+				finish(-1, e);
+			}
+		}, new ApiRequest.Argument("public_key", publicKey), new ApiRequest.Argument("account", account),
+				new ApiRequest.Argument("limit", limit));
+	}
+
+	/**
+	 * Take the new transactions of a page, newest first as api.php sends them.
+	 *
+	 * @return mined transactions added, or -1 if the page holds nothing known and a bigger one is needed
+	 */
+	int merge(List<Transaction> page, int limit) throws IOException {
+		List<Transaction> added = new ArrayList<Transaction>();
+		synchronized (this) {
+			load();
+			List<Transaction> nowPending = new ArrayList<Transaction>();
+			boolean overlap = false;
+			for (Transaction transaction : page) {
+				if (transaction.isPending()) {
+					nowPending.add(transaction);
+				} else if (ids.contains(transaction.getId())) {
+					overlap = true;
+				} else {
+					added.add(transaction);
+				}
+			}
+			if (!overlap && !mined.isEmpty() && page.size() >= limit && limit < MAX_PAGE) {
+				// the gap to what is stored may be bigger than this page
+				return -1;
+			}
+			pending = nowPending;
+			if (added.isEmpty()) {
+				return 0;
+			}
+		}
+		Collections.reverse(added);
+		List<String> lines = new ArrayList<String>(added.size());
+		for (Transaction transaction : added) {
+			lines.add(line(transaction));
+		}
+		// only one sync runs at a time, so nothing else writes the file or adds these ids meanwhile
+		append(lines);
+		synchronized (this) {
+			for (int i = 0; i < lines.size(); i++) {
+				mined.add(0, lines.get(i));
+				ids.add(added.get(i).getId());
+			}
+		}
+		return added.size();
+	}
+
+	private void finish(int added, Exception failure) {
+		List<SyncFeedback> done;
+		synchronized (this) {
+			done = waiting;
+			waiting = null;
+		}
+		for (SyncFeedback feedback : done) {
+			if (failure == null) {
+				feedback.onSynced(added);
+			} else {
+				feedback.onError(failure);
+			}
+		}
+	}
+
+	/**
+	 * One transaction per line: id, height, date, type, val, src, dst.
+	 */
+	private void load() {
+		if (loaded) {
+			return;
+		}
+		loaded = true;
+		if (!file.exists()) {
+			return;
+		}
+		try {
+			dropTornLine();
+			BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+			try {
+				String line;
+				while ((line = reader.readLine()) != null) {
+					if (isValid(line) && ids.add(line.substring(0, line.indexOf('\t')))) {
+						mined.add(line);
+					}
+				}
+			} finally {
+				reader.close();
+			}
+			Collections.reverse(mined);
+		} catch (Exception e) {
+			System.err.println("Unable to load transactions: " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Write {@code lines}, oldest first, behind what is on disk.
+	 */
+	private void append(List<String> lines) throws IOException {
+		StringBuilder text = new StringBuilder(lines.size() * 256);
+		for (String line : lines) {
+			text.append(line).append('\n');
+		}
+		Writer writer = new OutputStreamWriter(new FileOutputStream(file, true), "UTF-8");
+		try {
+			writer.write(text.toString());
+		} finally {
+			writer.close();
+		}
+	}
+
+	/**
+	 * Cut a last line without its newline off the file. A crash while appending left it, and even if its fields
+	 * look whole the last one may be short; the next {@link #append} would also run into it.
+	 */
+	private void dropTornLine() throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		try {
+			long end = raf.length();
+			while (end > 0) {
+				raf.seek(end - 1);
+				if (raf.read() == '\n') {
+					break;
+				}
+				end--;
+			}
+			raf.setLength(end);
+		} finally {
+			raf.close();
+		}
+	}
+
+	static String line(Transaction transaction) {
+		return transaction.getId() + '\t' + transaction.getHeight() + '\t' + transaction.getDate() + '\t'
+				+ transaction.getType() + '\t' + transaction.getVal() + '\t' + transaction.getSrc() + '\t'
+				+ transaction.getDst();
+	}
+
+	static Transaction parse(String line) {
+		String[] parts = line.split("\t", -1);
+		return new Transaction(parts[0], parts[4], parts[5], parts[6], Long.parseLong(parts[2]), parts[3],
+				Long.parseLong(parts[1]));
+	}
+
+	/**
+	 * Whether {@code line} has an id and {@value #FIELDS} fields. The fields themselves are checked by
+	 * {@link #page}.
+	 */
+	private static boolean isValid(String line) {
+		if (line.indexOf('\t') <= 0) {
+			return false;
+		}
+		int fields = 1;
+		for (int i = 0; i < line.length(); i++) {
+			if (line.charAt(i) == '\t') {
+				fields++;
+			}
+		}
+		return fields == FIELDS;
+	}
+
+	public static abstract class SyncFeedback {
+		/**
+		 * @param added mined transactions that were not stored before
+		 */
+		public abstract void onSynced(int added);
+
+		public void onError(Exception e) {
+			e.printStackTrace();
+		}
+	}
+}
@@ -78,9 +78,9 @@ public class TransactionListenerService extends Service {
 					return;
 				}
 				//CURRENT PEER CHECK
-				if (HomeView.getCurrentPeer() == "")
+				if (HomeView.getCurrentPeer().isEmpty())
 				{
-					HomeView.setup(new DoneTask() {
+					HomeView.setup(TransactionListenerService.this, new DoneTask() {
 						@Override
 						public void onDone() {
 							System.out.println("NEW PEER SET!");
@@ -0,0 +1,398 @@
+package arionum.net.cubedpixels.utils;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Pull tokenizer for JSON read straight off a stream, in the style of android.util.JsonReader but usable from
+ * plain Java too. Nothing is buffered beyond one read chunk and the value being read, so callers pick out the
+ * fields they need and {@link #skipValue()} the rest instead of building a whole tree.
+ */
+public class JsonStream {
+
+    public enum Token {
+        BEGIN_OBJECT, END_OBJECT, BEGIN_ARRAY, END_ARRAY, NAME, STRING, NUMBER, BOOLEAN, NULL, END_DOCUMENT
+    }
+
+    private static final int EMPTY_DOCUMENT = 0;
+    private static final int NONEMPTY_DOCUMENT = 1;
+    private static final int EMPTY_OBJECT = 2;
+    private static final int DANGLING_NAME = 3;
+    private static final int NONEMPTY_OBJECT = 4;
+    private static final int EMPTY_ARRAY = 5;
+    private static final int NONEMPTY_ARRAY = 6;
+
+    private final Reader in;
+    private final char[] buffer = new char[1024];
+    private int pos;
+    private int limit;
+
+    private int[] stack = new int[32];
+    private int depth;
+
+    private Token peeked;
+    private String value;
+    private final StringBuilder scratch = new StringBuilder(64);
+
+    public JsonStream(Reader in) {
+        this.in = in;
+        stack[depth++] = EMPTY_DOCUMENT;
+    }
+
+    public Token peek() throws IOException {
+        if (peeked != null) {
+            return peeked;
+        }
+        int c;
+        switch (stack[depth - 1]) {
+            case EMPTY_DOCUMENT:
+                stack[depth - 1] = NONEMPTY_DOCUMENT;
+                return peeked = readValue(nextNonWhitespace());
+            case NONEMPTY_DOCUMENT:
+                c = nextNonWhitespace();
+                if (c != -1) {
+                    throw syntaxError("Trailing content");
+                }
+                return peeked = Token.END_DOCUMENT;
+            case EMPTY_ARRAY:
+                stack[depth - 1] = NONEMPTY_ARRAY;
+                c = nextNonWhitespace();
+                if (c == ']') {
+                    depth--;
+                    return peeked = Token.END_ARRAY;
+                }
+                return peeked = readValue(c);
+            case NONEMPTY_ARRAY:
+                c = nextNonWhitespace();
+                if (c == ']') {
+                    depth--;
+                    return peeked = Token.END_ARRAY;
+                }
+                if (c != ',') {
+                    throw syntaxError("Expected , or ]");
+                }
+                return peeked = readValue(nextNonWhitespace());
+            case EMPTY_OBJECT:
+            case NONEMPTY_OBJECT:
+                c = nextNonWhitespace();
+                if (c == '}') {
+                    depth--;
+                    return peeked = Token.END_OBJECT;
+                }
+                if (stack[depth - 1] == NONEMPTY_OBJECT) {
+                    if (c != ',') {
+                        throw syntaxError("Expected , or }");
+                    }
+                    c = nextNonWhitespace();
+                }
+                if (c != '"') {
+                    throw syntaxError("Expected name");
+                }
+                value = readString();
+                stack[depth - 1] = DANGLING_NAME;
+                return peeked = Token.NAME;
+            case DANGLING_NAME:
+                if (nextNonWhitespace() != ':') {
+                    throw syntaxError("Expected :");
+                }
+                stack[depth - 1] = NONEMPTY_OBJECT;
+                return peeked = readValue(nextNonWhitespace());
+            default:
+                throw new IllegalStateException();
+        }
+    }
+
+    public boolean hasNext() throws IOException {
+        Token token = peek();
+        return token != Token.END_OBJECT && token != Token.END_ARRAY && token != Token.END_DOCUMENT;
+    }
+
+    public void beginObject() throws IOException {
+        expect(Token.BEGIN_OBJECT);
+    }
+
+    public void endObject() throws IOException {
+        expect(Token.END_OBJECT);
+    }
+
+    public void beginArray() throws IOException {
+        expect(Token.BEGIN_ARRAY);
+    }
+
+    public void endArray() throws IOException {
+        expect(Token.END_ARRAY);
+    }
+
+    public String nextName() throws IOException {
+        expect(Token.NAME);
+        return value;
+    }
+
+    /**
+     * The next scalar as text. Numbers and booleans are returned as written, null as null.
+     */
+    public String nextString() throws IOException {
+        Token token = peek();
+        if (token == Token.NULL) {
+            peeked = null;
+            return null;
+        }
+        if (token != Token.STRING && token != Token.NUMBER && token != Token.BOOLEAN) {
+            throw syntaxError("Expected a value but was " + token);
+        }
+        peeked = null;
+        return value;
+    }
+
+    /**
+     * The next number or numeric string as a long.
+     */
+    public long nextLong() throws IOException {
+        String text = nextString();
+        if (text == null) {
+            throw syntaxError("Expected a number but was null");
+        }
+        try {
+            return Long.parseLong(text);
+        } catch (NumberFormatException e) {
+            try {
+                return (long) Double.parseDouble(text);
+            } catch (NumberFormatException notNumeric) {
+                throw syntaxError("Expected a number but was " + text);
+            }
+        }
+    }
+
+    public boolean nextBoolean() throws IOException {
+        Token token = peek();
+        if (token != Token.BOOLEAN) {
+            throw syntaxError("Expected a boolean but was " + token);
+        }
+        peeked = null;
+        return "true".equals(value);
+    }
+
+    /**
+     * Skip the next value, including everything nested in it.
+     */
+    public void skipValue() throws IOException {
+        int nesting = 0;
+        do {
+            Token token = peek();
+            peeked = null;
+            if (token == Token.BEGIN_OBJECT || token == Token.BEGIN_ARRAY) {
+                nesting++;
+            } else if (token == Token.END_OBJECT || token == Token.END_ARRAY) {
+                nesting--;
+            } else if (token == Token.END_DOCUMENT) {
+                return;
+            }
+        } while (nesting > 0);
+    }
+
+    public void close() throws IOException {
+        in.close();
+    }
+
+    private void expect(Token expected) throws IOException {
+        Token token = peek();
+        if (token != expected) {
+            throw syntaxError("Expected " + expected + " but was " + token);
+        }
+        peeked = null;
+    }
+
+    private Token readValue(int c) throws IOException {
+        switch (c) {
+            case '{':
+                push(EMPTY_OBJECT);
+                return Token.BEGIN_OBJECT;
+            case '[':
+                push(EMPTY_ARRAY);
+                return Token.BEGIN_ARRAY;
+            case '"':
+                value = readString();
+                return Token.STRING;
+            case -1:
+                throw syntaxError("Unexpected end of input");
+            default:
+                pos--;
+                value = readLiteral();
+                if ("true".equals(value) || "false".equals(value)) {
+                    return Token.BOOLEAN;
+                }
+                if ("null".equals(value)) {
+                    return Token.NULL;
+                }
+                if (value.isEmpty()) {
+                    throw syntaxError("Unexpected character " + (char) c);
+                }
+                if (!isNumber(value)) {
+                    throw syntaxError("Unexpected literal " + value);
+                }
+                return Token.NUMBER;
+        }
+    }
+
+    /**
+     * Whether {@code text} follows the JSON number grammar: -?(0|[1-9][0-9]*)(.[0-9]+)?([eE][+-]?[0-9]+)?
+     */
+    private static boolean isNumber(String text) {
+        int i = 0;
+        int length = text.length();
+        if (i < length && text.charAt(i) == '-') {
+            i++;
+        }
+        if (i < length && text.charAt(i) == '0') {
+            i++;
+        } else {
+            int digits = skipDigits(text, i);
+            if (digits == i) {
+                return false;
+            }
+            i = digits;
+        }
+        if (i < length && text.charAt(i) == '.') {
+            int digits = skipDigits(text, ++i);
+            if (digits == i) {
+                return false;
+            }
+            i = digits;
+        }
+        if (i < length && (text.charAt(i) == 'e' || text.charAt(i) == 'E')) {
+            i++;
+            if (i < length && (text.charAt(i) == '+' || text.charAt(i) == '-')) {
+                i++;
+            }
+            int digits = skipDigits(text, i);
+            if (digits == i) {
+                return false;
+            }
+            i = digits;
+        }
+        return i == length;
+    }
+
+    private static int skipDigits(String text, int i) {
+        while (i < text.length() && text.charAt(i) >= '0' && text.charAt(i) <= '9') {
+            i++;
+        }
+        return i;
+    }
+
+    private void push(int scope) {
+        if (depth == stack.length) {
+            int[] grown = new int[depth * 2];
+            System.arraycopy(stack, 0, grown, 0, depth);
+            stack = grown;
+        }
+        stack[depth++] = scope;
+    }
+
+    /**
+     * Reads up to the closing quote, the opening one is already consumed.
+     */
+    private String readString() throws IOException {
+        scratch.setLength(0);
+        while (true) {
+            int start = pos;
+            while (pos < limit) {
+                char c = buffer[pos++];
+                if (c == '"') {
+                    scratch.append(buffer, start, pos - 1 - start);
+                    return scratch.toString();
+                } else if (c == '\\') {
+                    scratch.append(buffer, start, pos - 1 - start);
+                    scratch.append(readEscape());
+                    start = pos;
+                }
+            }
+            scratch.append(buffer, start, pos - start);
+            if (!fill()) {
+                throw syntaxError("Unterminated string");
+            }
+        }
+    }
+
+    private char readEscape() throws IOException {
+        int c = read();
+        switch (c) {
+            case 'u':
+                int unicode = 0;
+                for (int i = 0; i < 4; i++) {
+                    int digit = Character.digit(read(), 16);
+                    if (digit < 0) {
+                        throw syntaxError("Invalid unicode escape");
+                    }
+                    unicode = (unicode << 4) | digit;
+                }
+                return (char) unicode;
+            case 'b':
+                return '\b';
+            case 'f':
+                return '\f';
+            case 'n':
+                return '\n';
+            case 'r':
+                return '\r';
+            case 't':
+                return '\t';
+            case -1:
+                throw syntaxError("Unterminated escape");
+            default:
+                return (char) c;
+        }
+    }
+
+    private String readLiteral() throws IOException {
+        scratch.setLength(0);
+        while (true) {
+            int start = pos;
+            while (pos < limit) {
+                char c = buffer[pos];
+                if (c == ',' || c == '}' || c == ']' || c == ':' || c == ' ' || c == '\t' || c == '\r' || c == '\n') {
+                    scratch.append(buffer, start, pos - start);
+                    return scratch.toString();
+                }
+                pos++;
+            }
+            scratch.append(buffer, start, pos - start);
+            if (!fill()) {
+                return scratch.toString();
+            }
+        }
+    }
+
+    private int nextNonWhitespace() throws IOException {
+        while (true) {
+            int c = read();
+            if (c != ' ' && c != '\t' && c != '\r' && c != '\n') {
+                return c;
+            }
+        }
+    }
+
+    private int read() throws IOException {
+        if (pos == limit && !fill()) {
+            return -1;
+        }
+        return buffer[pos++];
+    }
+
+    private boolean fill() throws IOException {
+        pos = 0;
+        limit = 0;
+        int count;
+        while ((count = in.read(buffer, 0, buffer.length)) == 0) {
+        }
+        if (count < 0) {
+            return false;
+        }
+        limit = count;
+        return true;
+    }
+
+    private IOException syntaxError(String message) {
+        return new IOException("JSON syntax error: " + message);
+    }
+}
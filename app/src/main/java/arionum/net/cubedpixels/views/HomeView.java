@@ -1,7 +1,5 @@
 package arionum.net.cubedpixels.views;
 
-import android.app.Activity;
-import android.app.ActivityManager;
 import android.app.NotificationChannel;
 import android.app.NotificationManager;
 import android.content.ClipData;
@@ -23,20 +21,16 @@ import android.support.v4.app.NotificationCompat;
 import android.support.v4.content.ContextCompat;
 import android.support.v4.view.LayoutInflaterCompat;
 import android.support.v7.app.AppCompatActivity;
+import android.support.v7.widget.RecyclerView;
 import android.text.Editable;
 import android.text.InputType;
 import android.text.TextWatcher;
-import android.view.LayoutInflater;
 import android.view.View;
-import android.view.ViewGroup;
 import android.view.WindowManager;
-import android.view.animation.Animation;
-import android.view.animation.TranslateAnimation;
-import android.widget.ArrayAdapter;
 import android.widget.Button;
+import android.widget.CheckBox;
 import android.widget.EditText;
 import android.widget.ImageView;
-import android.widget.ListView;
 import android.widget.RelativeLayout;
 import android.widget.TextView;
 import android.widget.Toast;
@@ -66,27 +60,23 @@ import com.mikepenz.materialdrawer.model.SecondaryDrawerItem;
 import com.mikepenz.materialdrawer.model.interfaces.IDrawerItem;
 import com.mikepenz.materialdrawer.model.interfaces.IProfile;
 import com.mikepenz.materialdrawer.model.interfaces.Nameable;
-import com.nineoldandroids.view.ViewHelper;
+import com.programmerdan.arionum.arionum_miner.AdvMode;
+import com.programmerdan.arionum.arionum_miner.HasherScheduler;
 import com.programmerdan.arionum.arionum_miner.Miner;
 
 import net.glxn.qrgen.android.QRCode;
 
-import org.json.JSONArray;
 import org.json.JSONObject;
 
-import java.lang.reflect.Method;
-import java.net.URL;
+import java.io.File;
 import java.text.DecimalFormat;
-import java.text.SimpleDateFormat;
 import java.util.ArrayList;
-import java.util.Calendar;
-import java.util.List;
-import java.util.Random;
-import java.util.Scanner;
 
 import arionum.net.cubedpixels.MainActivity;
 import arionum.net.cubedpixels.R;
 import arionum.net.cubedpixels.api.ApiRequest;
+import arionum.net.cubedpixels.api.PeerManager;
+import arionum.net.cubedpixels.api.TransactionStore;
 import arionum.net.cubedpixels.style.Styler;
 import arionum.net.cubedpixels.utils.Base58;
 import arionum.net.cubedpixels.utils.CrossfadeWrapper;
@@ -98,6 +88,8 @@ import static android.view.View.GONE;
 public class HomeView extends AppCompatActivity implements ComponentCallbacks2 {
 
     private static final int PROFILE_SETTING = 1;
+    static final int LAST_TRANSACTIONS = 10;
+    static final int HISTORY_PAGE = 100;
     public static HomeView instance;
     public static Miner miner;
     static String signature = "";
@@ -105,9 +97,7 @@ public class HomeView extends AppCompatActivity implements ComponentCallbacks2 {
     static String val = "";
     static String unixTime = "";
     static String message = "";
-    private static ArrayList<String> peers = new ArrayList<>();
     private static ArrayList<Page> pages = new ArrayList<>();
-    private static String currentPeer = "";
     private static String public_key = "";
     private static String private_key = "";
     private static String address = "";
@@ -117,25 +107,18 @@ public class HomeView extends AppCompatActivity implements ComponentCallbacks2 {
     private Drawer result = null;
     private MiniDrawer miniResult = null;
     private Crossfader crossFader;
+    private TransactionAdapter lastTransactions;
+    private TransactionAdapter history;
     private boolean refreshing = true;
 
-    public static void setup(final DoneTask done) {
-        new Thread(new Runnable() {
-            @Override
-            public void run() {
-                try {
-                    System.out.print(">>Running Peer download");
-                    URL url = new URL("http://api.arionum.com/peers.txt");
-                    Scanner s = new Scanner(url.openStream());
-                    while (s.hasNext())
-                        peers.add(s.next());
-                    currentPeer = peers.get(new Random().nextInt(peers.size()));
-                    done.onDone();
-                } catch (Exception e) {
-                    done.onError();
-                }
-            }
-        }).start();
+    /**
+     * Find a peer to talk to, see {@link PeerManager#refresh}. Known peers and their scores are kept in the
+     * files dir of {@code context}.
+     */
+    public static void setup(Context context, final DoneTask done) {
+        System.out.print(">>Running Peer refresh");
+        PeerManager.get().setStore(new File(context.getFilesDir(), "peers.dat"));
+        PeerManager.get().refresh(done);
     }
 
     @Override
@@ -158,12 +141,9 @@ public class HomeView extends AppCompatActivity implements ComponentCallbacks2 {
 
 
         // SETUP
-        if (peers.size() > 0)
-            currentPeer = peers.get(new Random().nextInt(peers.size()));
-        else
-            currentPeer = "http://peer1.arionum.com";
+        String peer = getCurrentPeer().isEmpty() ? PeerManager.FALLBACK_PEER : getCurrentPeer();
         TextView test = findViewById(R.id.connected);
-        test.setText(currentPeer.replace("http://", ""));
+        test.setText(peer.replace("http://", ""));
         TextView address = findViewById(R.id.address);
         address.setText(HomeView.address);
         setupThankyouList();
@@ -221,30 +201,14 @@ public class HomeView extends AppCompatActivity implements ComponentCallbacks2 {
                 new ApiRequest.Argument("account", HomeView.address));
 
         // GETTRANSACTIONS
-        ApiRequest.requestFeedback(new ApiRequest.RequestFeedback() {
-                                       @Override
-                                       public void onFeedback(JSONObject object) {
-                                           System.out.println("GOT RESPONSE! TRANSACTIONS!");
-                                           try {
-                                               if (object.getJSONArray("data").length() > 0) {
-                                                   saveString("lastID", object.getJSONArray("data").getJSONObject(0).get("id").toString());
-                                                   sortArrayAndPutInList(object.getJSONArray("data"),
-                                                           (ListView) findViewById(R.id.transactionlist));
-                                               }
-                                               Handler h = new Handler(instance.getMainLooper());
-                                               h.post(new Runnable() {
-                                                   @Override
-                                                   public void run() {
-                                                       findViewById(R.id.waitingtransbar).setVisibility(GONE);
-                                                   }
-                                               });
-                                           } catch (Exception e) {
-                                               e.printStackTrace();
-                                           }
-                                           refreshing = false;
-                                       }
-                                   }, "getTransactions", new ApiRequest.Argument("public_key", public_key),
-                new ApiRequest.Argument("account", HomeView.address), new ApiRequest.Argument("limit", "10"));
+        if (!getString("transactions").isEmpty())
+            // the whole history used to be kept here, the store replaces it
+            saveString("transactions", "");
+        lastTransactions = new TransactionAdapter(this, getTransactions(), LAST_TRANSACTIONS, false);
+        lastTransactions.attach((RecyclerView) findViewById(R.id.transactionlist));
+        history = new TransactionAdapter(this, getTransactions(), HISTORY_PAGE, true);
+        history.attach((RecyclerView) findViewById(R.id.historylisttransactions));
+        syncLastTransactions();
 
     }
 
@@ -289,8 +253,11 @@ public class HomeView extends AppCompatActivity implements ComponentCallbacks2 {
         });
 
         final FancyButton b = findViewById(R.id.minerToggle);
+        final FancyButton pause = findViewById(R.id.minerPause);
         final EditText editPool = findViewById(R.id.pool);
         final EditText editHashers = findViewById(R.id.hashers);
+        final CheckBox editPipelined = findViewById(R.id.pipelined);
+        final CheckBox editAutoTune = findViewById(R.id.autoTune);
         pages.add(new Page("MINER", (RelativeLayout) findViewById(R.id.minerview)) {
             @Override
             public void onEnable() {
@@ -303,24 +270,37 @@ public class HomeView extends AppCompatActivity implements ComponentCallbacks2 {
                 editPool.setText("http://aro.cool");
                 System.gc();
 
-                int max = Runtime.getRuntime().availableProcessors();
+                // upper cap only, the miner's HasherScheduler sizes the live worker count itself
+                int max = HasherScheduler.suggestWorkers();
 
-                ActivityManager activityManager = (ActivityManager) HomeView.instance.getSystemService(ACTIVITY_SERVICE);
-                ActivityManager.MemoryInfo memoryInfo = new ActivityManager.MemoryInfo();
-                activityManager.getMemoryInfo(memoryInfo);
-
-                double availPercent = (((double) (memoryInfo.availMem / 0x100000L)) * 1.4 / (double) ((memoryInfo.totalMem / 0x100000L)));
+                editHashers.setEnabled(!minerActive);
+                editHashers.setText(max + "");
 
+                // only the native engine pipelines, the Java fallback ignores it
+                editPipelined.setEnabled(!minerActive);
+                editPipelined.setChecked("true".equals(getString("minerPipelined")));
 
-                int MAXramThreads = (int) ((memoryInfo.totalMem / 0x100000L) / 512);
-                System.out.println(MAXramThreads + " | " + availPercent);
+                // the auto-tuner starts from these settings and then picks hashers, pipelining and session length
+                editAutoTune.setEnabled(!minerActive);
+                editAutoTune.setChecked(!"false".equals(getString("minerAutoTune")));
 
-                if (MAXramThreads <= max) {
-                    max = (int) (MAXramThreads * availPercent);
+                pause.setVisibility(minerActive ? View.VISIBLE : View.GONE);
+                pause.setText(minerActive && miner.isPaused() ? "Resume Miner" : "Pause Miner");
+            }
+        });
+        pause.setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View view) {
+                if (miner == null || miner.isDraining())
+                    return;
+                // hashers keep their Argon2 memory and nonce while paused, so resuming is immediate
+                if (miner.isPaused()) {
+                    miner.resume();
+                    pause.setText("Pause Miner");
+                } else {
+                    miner.pause();
+                    pause.setText("Resume Miner");
                 }
-
-                editHashers.setEnabled(!minerActive);
-                editHashers.setText(max + "");
             }
         });
         b.setOnClickListener(new View.OnClickListener() {
@@ -335,146 +315,77 @@ public class HomeView extends AppCompatActivity implements ComponentCallbacks2 {
                 b.setText(!minerActive ? "Stop Miner" : "Start Miner");
                 editPool.setEnabled(minerActive);
                 editHashers.setEnabled(minerActive);
+                editPipelined.setEnabled(minerActive);
+                editAutoTune.setEnabled(minerActive);
                 if (!minerActive) {
                     getWindow().addFlags(WindowManager.LayoutParams.FLAG_KEEP_SCREEN_ON);
-                    minerThread = new Thread(new Runnable() {
+                    // created here, so a Stop right after Start drains this miner and not the previous one
+                    final Miner created = Miner.create(new Miner.callbackMiner() {
                         @Override
-                        public void run() {
-
-                            miner = Miner.main(new Miner.callbackMiner() {
-                                @Override
-                                public void onHashRate(final String hash, final String dur) {
-                                    Handler h = new Handler(HomeView.this.getMainLooper());
-                                    h.post(new Runnable() {
-                                        @Override
-                                        public void run() {
-                                            try {
-                                                DecimalFormat df = new DecimalFormat("#.00");
-                                                double d = Double.parseDouble(hash.replace(",", "."));
-
-                                                String s = df.format(d);
-                                                if (s.startsWith(","))
-                                                    s = "0" + s;
-                                                if (s.startsWith("."))
-                                                    s = "0" + s;
-
-                                                ((TextView) findViewById(R.id.hashRate)).setText(s + " H/s \nBEST DL:" + dur);
-                                                ((TextView) findViewById(R.id.limitVIEW)).setText(Miner.limitDuration + "");
-
-                                                GraphView graph = findViewById(R.id.graph);
-                                                if (graph.getSeries().size() <= 0) {
-                                                    LineGraphSeries<DataPoint> series = new LineGraphSeries<>(new DataPoint[]{
-                                                            new DataPoint(0, 0)
-                                                    });
-                                                    graph.addSeries(series);
-                                                } else {
-                                                    LineGraphSeries<DataPoint> series1 = (LineGraphSeries<DataPoint>) graph.getSeries().get(0);
-                                                    series1.setAnimated(false);
-                                                    series1.setThickness(3);
-                                                    series1.setColor(ContextCompat.getColor(instance, R.color.colorAccent));
-                                                    graph.getSeries().clear();
-                                                    series1.appendData(new DataPoint(series1.getHighestValueX() + 1, d), false, Integer.MAX_VALUE, false);
-
-                                                    graph.getViewport().setMinX(series1.getLowestValueX());
-                                                    graph.getViewport().setMaxX(series1.getHighestValueX() + 2);
-                                                    graph.getViewport().setMinY(series1.getLowestValueY());
-                                                    graph.getViewport().setMaxY(series1.getHighestValueY() + 2);
-
-                                                    graph.getViewport().setYAxisBoundsManual(true);
-                                                    graph.getViewport().setXAxisBoundsManual(true);
-
-                                                    graph.addSeries(series1);
-                                                }
-
-
-                                            } catch (Exception e) {
-
-                                            }
-                                        }
-                                    });
-                                }
-
+                        public void onHashRate(final String hash, final String dur) {
+                            Handler h = new Handler(HomeView.this.getMainLooper());
+                            h.post(new Runnable() {
                                 @Override
-                                public void onShare(final String hash) {
-                                    Handler h = new Handler(HomeView.this.getMainLooper());
-                                    h.post(new Runnable() {
-                                        @Override
-                                        public void run() {
-                                            System.out.println("FOUND SHARE = " + hash);
-
-                                            NotificationCompat.Builder mBuilder = new NotificationCompat.Builder(
-                                                    HomeView.this, "ARONOTIFICATIONS")
-                                                    .setSmallIcon(R.drawable.aro)
-                                                    .setContentTitle("Arionum Wallet | Miner")
-                                                    .setContentText("Found a share")
-                                                    .setChannelId("notify_001")
-                                                    .setPriority(NotificationCompat.PRIORITY_DEFAULT);
-
-
-                                            NotificationManager mNotificationManager =
-                                                    (NotificationManager) HomeView.this.getSystemService(Context.NOTIFICATION_SERVICE);
-                                            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
-                                                NotificationChannel channel = new NotificationChannel("notify_001",
-                                                        "Channel human readable title",
-                                                        NotificationManager.IMPORTANCE_DEFAULT);
-                                                mNotificationManager.createNotificationChannel(channel);
-                                            }
-                                            mNotificationManager.notify(1347, mBuilder.build());
-
-                                            TextView t = findViewById(R.id.shares);
-                                            String text = t.getText().toString();
-                                            int parsed = 0;
-                                            try {
-                                                parsed = Integer.parseInt(text);
-                                            } catch (Exception e) {
-                                            }
-                                            t.setText((parsed + 1) + "");
+                                public void run() {
+                                    try {
+                                        DecimalFormat df = new DecimalFormat("#.00");
+                                        double d = Double.parseDouble(hash.replace(",", "."));
+
+                                        String s = df.format(d);
+                                        if (s.startsWith(","))
+                                            s = "0" + s;
+                                        if (s.startsWith("."))
+                                            s = "0" + s;
+
+                                        ((TextView) findViewById(R.id.hashRate)).setText(s + " H/s \nBEST DL:" + dur);
+                                        ((TextView) findViewById(R.id.limitVIEW)).setText(Miner.limitDuration + "");
+
+                                        GraphView graph = findViewById(R.id.graph);
+                                        if (graph.getSeries().size() <= 0) {
+                                            LineGraphSeries<DataPoint> series = new LineGraphSeries<>(new DataPoint[]{
+                                                    new DataPoint(0, 0)
+                                            });
+                                            graph.addSeries(series);
+                                        } else {
+                                            LineGraphSeries<DataPoint> series1 = (LineGraphSeries<DataPoint>) graph.getSeries().get(0);
+                                            series1.setAnimated(false);
+                                            series1.setThickness(3);
+                                            series1.setColor(ContextCompat.getColor(instance, R.color.colorAccent));
+                                            graph.getSeries().clear();
+                                            series1.appendData(new DataPoint(series1.getHighestValueX() + 1, d), false, Integer.MAX_VALUE, false);
+
+                                            graph.getViewport().setMinX(series1.getLowestValueX());
+                                            graph.getViewport().setMaxX(series1.getHighestValueX() + 2);
+                                            graph.getViewport().setMinY(series1.getLowestValueY());
+                                            graph.getViewport().setMaxY(series1.getHighestValueY() + 2);
+
+                                            graph.getViewport().setYAxisBoundsManual(true);
+                                            graph.getViewport().setXAxisBoundsManual(true);
+
+                                            graph.addSeries(series1);
                                         }
-                                    });
-                                }
-
-                                @Override
-                                public void onReject(String hash) {
-                                    System.out.println("FOUND REJECT = " + hash);
 
 
-                                    NotificationCompat.Builder mBuilder = new NotificationCompat.Builder(
-                                            HomeView.this, "ARONOTIFICATIONS")
-                                            .setSmallIcon(R.drawable.aro)
-                                            .setContentTitle("Arionum Wallet | Miner")
-                                            .setContentText("Share got rejected!")
-                                            .setStyle(
-                                                    new NotificationCompat.InboxStyle()
-                                                            .addLine("Share got rejected")
-                                                            .addLine(hash)
-                                            )
-                                            .setChannelId("notify_001")
-                                            .setPriority(NotificationCompat.PRIORITY_DEFAULT);
-
+                                    } catch (Exception e) {
 
-                                    NotificationManager mNotificationManager =
-                                            (NotificationManager) HomeView.this.getSystemService(Context.NOTIFICATION_SERVICE);
-                                    if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
-                                        NotificationChannel channel = new NotificationChannel("notify_001",
-                                                "Channel human readable title",
-                                                NotificationManager.IMPORTANCE_DEFAULT);
-                                        mNotificationManager.createNotificationChannel(channel);
                                     }
-                                    mNotificationManager.notify(1357, mBuilder.build());
                                 }
+                            });
+                        }
 
+                        @Override
+                        public void onShare(final String hash) {
+                            Handler h = new Handler(HomeView.this.getMainLooper());
+                            h.post(new Runnable() {
                                 @Override
-                                public void onAccept(String hash) {
+                                public void run() {
+                                    System.out.println("FOUND SHARE = " + hash);
+
                                     NotificationCompat.Builder mBuilder = new NotificationCompat.Builder(
                                             HomeView.this, "ARONOTIFICATIONS")
                                             .setSmallIcon(R.drawable.aro)
                                             .setContentTitle("Arionum Wallet | Miner")
-                                            .setContentText("Share got accepted!")
-                                            .setStyle(
-                                                    new NotificationCompat.InboxStyle()
-                                                            .addLine("Share got accepted")
-                                                            .addLine(hash)
-                                            )
+                                            .setContentText("Found a share")
                                             .setChannelId("notify_001")
                                             .setPriority(NotificationCompat.PRIORITY_DEFAULT);
 
@@ -487,79 +398,145 @@ public class HomeView extends AppCompatActivity implements ComponentCallbacks2 {
                                                 NotificationManager.IMPORTANCE_DEFAULT);
                                         mNotificationManager.createNotificationChannel(channel);
                                     }
-                                    mNotificationManager.notify(1357, mBuilder.build());
-                                }
-
-                                @Override
-                                public void onFind(String hash) {
-                                    System.out.println("FOUND FIND = " + hash);
-
-                                    NotificationCompat.Builder mBuilder = new NotificationCompat.Builder(
-                                            HomeView.this, "ARONOTIFICATIONS")
-                                            .setSmallIcon(R.drawable.aro)
-                                            .setContentTitle("Arionum Wallet | Miner")
-                                            .setContentText("Share got accepted!")
-                                            .setChannelId("notify_001")
-                                            .setPriority(NotificationCompat.PRIORITY_DEFAULT);
+                                    mNotificationManager.notify(1347, mBuilder.build());
 
-
-                                    NotificationManager mNotificationManager =
-                                            (NotificationManager) HomeView.this.getSystemService(Context.NOTIFICATION_SERVICE);
-                                    if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
-                                        NotificationChannel channel = new NotificationChannel("notify_001",
-                                                "Channel human readable title",
-                                                NotificationManager.IMPORTANCE_DEFAULT);
-                                        mNotificationManager.createNotificationChannel(channel);
+                                    TextView t = findViewById(R.id.shares);
+                                    String text = t.getText().toString();
+                                    int parsed = 0;
+                                    try {
+                                        parsed = Integer.parseInt(text);
+                                    } catch (Exception e) {
                                     }
-                                    mNotificationManager.notify(1357, mBuilder.build());
+                                    t.setText((parsed + 1) + "");
                                 }
+                            });
+                        }
 
-                                @Override
-                                public void onDurChange(final String dur) {
+                        @Override
+                        public void onReject(String hash) {
+                            System.out.println("FOUND REJECT = " + hash);
+
+
+                            NotificationCompat.Builder mBuilder = new NotificationCompat.Builder(
+                                    HomeView.this, "ARONOTIFICATIONS")
+                                    .setSmallIcon(R.drawable.aro)
+                                    .setContentTitle("Arionum Wallet | Miner")
+                                    .setContentText("Share got rejected!")
+                                    .setStyle(
+                                            new NotificationCompat.InboxStyle()
+                                                    .addLine("Share got rejected")
+                                                    .addLine(hash)
+                                    )
+                                    .setChannelId("notify_001")
+                                    .setPriority(NotificationCompat.PRIORITY_DEFAULT);
+
+
+                            NotificationManager mNotificationManager =
+                                    (NotificationManager) HomeView.this.getSystemService(Context.NOTIFICATION_SERVICE);
+                            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+                                NotificationChannel channel = new NotificationChannel("notify_001",
+                                        "Channel human readable title",
+                                        NotificationManager.IMPORTANCE_DEFAULT);
+                                mNotificationManager.createNotificationChannel(channel);
+                            }
+                            mNotificationManager.notify(1357, mBuilder.build());
+                        }
 
-                                    final TextView t = findViewById(R.id.currentDur);
-                                    runOnUiThread(new Runnable() {
-                                        @Override
-                                        public void run() {
-                                            t.setText(dur);
-                                            try {
-                                                long l = Long.parseLong(dur);
-                                                if (Miner.finalDuration >= l)
-                                                    Miner.finalDuration = l;
-                                            } catch (Exception e) {
+                        @Override
+                        public void onAccept(String hash) {
+                            NotificationCompat.Builder mBuilder = new NotificationCompat.Builder(
+                                    HomeView.this, "ARONOTIFICATIONS")
+                                    .setSmallIcon(R.drawable.aro)
+                                    .setContentTitle("Arionum Wallet | Miner")
+                                    .setContentText("Share got accepted!")
+                                    .setStyle(
+                                            new NotificationCompat.InboxStyle()
+                                                    .addLine("Share got accepted")
+                                                    .addLine(hash)
+                                    )
+                                    .setChannelId("notify_001")
+                                    .setPriority(NotificationCompat.PRIORITY_DEFAULT);
+
+
+                            NotificationManager mNotificationManager =
+                                    (NotificationManager) HomeView.this.getSystemService(Context.NOTIFICATION_SERVICE);
+                            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+                                NotificationChannel channel = new NotificationChannel("notify_001",
+                                        "Channel human readable title",
+                                        NotificationManager.IMPORTANCE_DEFAULT);
+                                mNotificationManager.createNotificationChannel(channel);
+                            }
+                            mNotificationManager.notify(1357, mBuilder.build());
+                        }
 
-                                            }
-                                        }
-                                    });
-                                }
+                        @Override
+                        public void onFind(String hash) {
+                            System.out.println("FOUND FIND = " + hash);
+
+                            NotificationCompat.Builder mBuilder = new NotificationCompat.Builder(
+                                    HomeView.this, "ARONOTIFICATIONS")
+                                    .setSmallIcon(R.drawable.aro)
+                                    .setContentTitle("Arionum Wallet | Miner")
+                                    .setContentText("Share got accepted!")
+                                    .setChannelId("notify_001")
+                                    .setPriority(NotificationCompat.PRIORITY_DEFAULT);
+
+
+                            NotificationManager mNotificationManager =
+                                    (NotificationManager) HomeView.this.getSystemService(Context.NOTIFICATION_SERVICE);
+                            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+                                NotificationChannel channel = new NotificationChannel("notify_001",
+                                        "Channel human readable title",
+                                        NotificationManager.IMPORTANCE_DEFAULT);
+                                mNotificationManager.createNotificationChannel(channel);
+                            }
+                            mNotificationManager.notify(1357, mBuilder.build());
+                        }
+
+                        @Override
+                        public void onDurChange(final String dur) {
 
+                            final TextView t = findViewById(R.id.currentDur);
+                            runOnUiThread(new Runnable() {
                                 @Override
-                                public void onStop() {
-                                    b.setText("Stop Miner");
+                                public void run() {
+                                    t.setText(dur);
                                     try {
-                                        miner.stop();
-                                        Method m = Thread.class.getDeclaredMethod("stop0", Object.class);
-                                        m.setAccessible(true);
-                                        m.invoke(minerThread, new ThreadDeath());
-                                        minerThread.interrupt();
+                                        long l = Long.parseLong(dur);
+                                        if (Miner.finalDuration >= l)
+                                            Miner.finalDuration = l;
                                     } catch (Exception e) {
-                                        minerThread.interrupt();
+
                                     }
                                 }
-                            }, editPool.getText().toString(), editHashers.getText().toString());
+                            });
+                        }
+
+                        @Override
+                        public void onStop() {
+                            b.setText("Stop Miner");
+                            miner.stop();
+                        }
+                    }, editPool.getText().toString(), editHashers.getText().toString());
+                    saveString("minerPipelined", editPipelined.isChecked() + "");
+                    created.setPipelined(editPipelined.isChecked());
+                    saveString("minerAutoTune", editAutoTune.isChecked() + "");
+                    created.setHasherMode(editAutoTune.isChecked() ? AdvMode.auto : AdvMode.standard);
+                    miner = created;
+                    minerThread = new Thread(new Runnable() {
+                        @Override
+                        public void run() {
+                            created.start();
                         }
                     });
                     minerThread.start();
+                    pause.setText("Pause Miner");
+                    pause.setVisibility(View.VISIBLE);
                 } else {
                     getWindow().clearFlags(WindowManager.LayoutParams.FLAG_KEEP_SCREEN_ON);
-                    try {
-                        Method m = Thread.class.getDeclaredMethod("stop0", Object.class);
-                        m.setAccessible(true);
-                        m.invoke(minerThread, new ThreadDeath());
-                        minerThread.interrupt();
-                    } catch (Exception e) {
-                        minerThread.interrupt();
-                    }
+                    // hashers finish their current iteration and free their Argon2 memory, then the miner loop ends
+                    miner.drain();
+                    pause.setVisibility(View.GONE);
                 }
             }
         });
@@ -737,122 +714,16 @@ public class HomeView extends AppCompatActivity implements ComponentCallbacks2 {
         pages.add(new Page("HISTORY", (RelativeLayout) findViewById(R.id.historyview)) {
             @Override
             public void onEnable() {
-                try {
-                    String transactions = getString("transactions");
-                    final JSONObject p = new JSONObject(transactions);
-                    sortArrayAndPutInList(p.getJSONArray("data"),
-                            (ListView) findViewById(R.id.historylisttransactions));
-                } catch (Exception e) {
-                }
-
-                checkIfLastTransactionIsSame(new LastTransactionTimer() {
-                    @Override
-                    public void onSame(String id) {
-                        try {
-                            String transactions = getString("transactions");
-                            if (transactions.isEmpty()) {
-                                downloadTransactions(new Call() {
-                                    @Override
-                                    public void onDone(JSONObject o) {
-                                        try {
-                                            ListView l = findViewById(R.id.historylisttransactions);
-                                            sortArrayAndPutInList(o.getJSONArray("data"),
-                                                    (ListView) findViewById(R.id.historylisttransactions));
-                                            Handler h = new Handler(instance.getMainLooper());
-                                            h.post(new Runnable() {
-                                                @Override
-                                                public void run() {
-                                                    findViewById(R.id.progressBar).setVisibility(GONE);
-                                                }
-                                            });
-                                        } catch (Exception e) {
-                                            e.printStackTrace();
-                                        }
-                                    }
-                                });
-                                return;
-                            }
-
-
-                            final JSONObject p = new JSONObject(transactions);
-                            JSONArray a = p.getJSONArray("data");
-                            if (a.length() < 11) {
-                                downloadTransactions(new Call() {
-                                    @Override
-                                    public void onDone(final JSONObject o) {
-                                        try {
-                                            sortArrayAndPutInList(o.getJSONArray("data"),
-                                                    (ListView) findViewById(R.id.historylisttransactions));
-                                            Handler h = new Handler(instance.getMainLooper());
-                                            h.post(new Runnable() {
-                                                @Override
-                                                public void run() {
-                                                    findViewById(R.id.progressBar).setVisibility(GONE);
-                                                }
-                                            });
-                                        } catch (Exception e) {
-                                            e.printStackTrace();
-                                        }
-                                    }
-                                });
-                            } else {
-                                String currentID = getString("lastID");
-                                if (currentID != ((JSONObject) a.get(0)).get("id")) {
-                                    downloadTransactions(new Call() {
-                                        @Override
-                                        public void onDone(final JSONObject o) {
-                                            try {
-                                                sortArrayAndPutInList(o.getJSONArray("data"),
-                                                        (ListView) findViewById(R.id.historylisttransactions));
-                                                Handler h = new Handler(instance.getMainLooper());
-                                                h.post(new Runnable() {
-                                                    @Override
-                                                    public void run() {
-                                                        findViewById(R.id.progressBar).setVisibility(GONE);
-                                                    }
-                                                });
-                                            } catch (Exception e) {
-                                                e.printStackTrace();
-                                            }
-                                        }
-                                    });
-                                } else {
-                                    sortArrayAndPutInList(p.getJSONArray("data"),
-                                            (ListView) findViewById(R.id.historylisttransactions));
-                                    Handler h = new Handler(instance.getMainLooper());
-                                    h.post(new Runnable() {
-                                        @Override
-                                        public void run() {
-                                            findViewById(R.id.progressBar).setVisibility(GONE);
-                                        }
-                                    });
-                                }
-                            }
-
-                        } catch (Exception e) {
-                            e.printStackTrace();
-                        }
-                    }
-
+                // what is stored already shows, the sync only adds what is new
+                downloadTransactions(new Runnable() {
                     @Override
-                    public void onDifferect(String id) {
-                        downloadTransactions(new Call() {
+                    public void run() {
+                        history.refresh();
+                        Handler h = new Handler(instance.getMainLooper());
+                        h.post(new Runnable() {
                             @Override
-                            public void onDone(JSONObject o) {
-                                try {
-                                    ListView l = findViewById(R.id.historylisttransactions);
-                                    sortArrayAndPutInList(o.getJSONArray("data"),
-                                            (ListView) findViewById(R.id.historylisttransactions));
-                                    Handler h = new Handler(instance.getMainLooper());
-                                    h.post(new Runnable() {
-                                        @Override
-                                        public void run() {
-                                            findViewById(R.id.progressBar).setVisibility(GONE);
-                                        }
-                                    });
-                                } catch (Exception e) {
-                                    e.printStackTrace();
-                                }
+                            public void run() {
+                                findViewById(R.id.progressBar).setVisibility(GONE);
                             }
                         });
                     }
@@ -865,108 +736,44 @@ public class HomeView extends AppCompatActivity implements ComponentCallbacks2 {
         return public_key;
     }
 
-    public void sortArrayAndPutInList(JSONArray array, final ListView view) {
-        try {
-
-            final int y = view.getScrollY();
-            final float yz = ViewHelper.getScrollY(view);
-
-            int size = array.length();
-            ArrayList<String> name = new ArrayList<String>();
-            ArrayList<GoogleMaterial.Icon> icon = new ArrayList<GoogleMaterial.Icon>();
-            for (int i = 0; i < size; i++) {
-                JSONObject o = array.getJSONObject(i);
-                name.add(o.get("id").toString() + "," + o.get("val").toString() + "," + o.get("src") + "," +
-                        o.get("dst") + "," + o.get("date"));
-                // type <-
-                if (o.get("type").toString().equals("credit")) {
-                    icon.add(GoogleMaterial.Icon.gmd_long_arrow_down);
-                } else {
-                    icon.add(GoogleMaterial.Icon.gmd_long_arrow_up);
+    public TransactionStore getTransactions() {
+        return TransactionStore.open(getFilesDir(), address);
+    }
 
-                }
+    /**
+     * {@link #syncTransactions} with the history spinner showing.
+     */
+    public void downloadTransactions(final Runnable done) {
+        // GETTRANSACTIONS
+        Handler h = new Handler(getMainLooper());
+        h.post(new Runnable() {
+            @Override
+            public void run() {
+                findViewById(R.id.progressBar).setVisibility(View.VISIBLE);
             }
-            System.out.println(size + " | " + name.size());
-
-            List<String> list = new ArrayList<String>();
-            final ArrayAdapter emptyAdapter = new ArrayAdapter<String>(HomeView.this,
-                    android.R.layout.simple_list_item_1,
-                    list.toArray(new String[0]));
-
-            final CustomList adapter = new CustomList(HomeView.this, name, icon);
-            Handler h = new Handler(instance.getMainLooper());
-            h.post(new Runnable() {
-                @Override
-                public void run() {
-                    view.clearChoices();
-                    view.clearAnimation();
-                    for (int index = 0; index < view.getChildCount(); ++index) {
-                        View child = view.getChildAt(index);
-                        child.setVisibility(GONE);
-                    }
-
-
-                    view.setAdapter(emptyAdapter);
-                    view.setAdapter(adapter);
-                    view.setScrollY(y);
-
-                    view.post(new Runnable() {
-                        @Override
-                        public void run() {
-                            for (int index = 0; index < view.getChildCount(); ++index) {
-                                View child = view.getChildAt(index);
-                                Animation animation = new TranslateAnimation(500, 0, 0, 0);
-                                animation.setDuration(1000);
-                                animation.setStartOffset(index * 100);
-                                child.startAnimation(animation);
-                                view.setScrollY(y);
-                            }
-                            view.post(new Runnable() {
-                                @Override
-                                public void run() {
-                                    System.out.println("SCROLLING TO: " + y + " | " + yz);
-                                    view.scrollTo(0, y);
-                                }
-                            });
-                        }
-                    });
-                    view.setScrollY(y);
-                }
-            });
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
+        });
+        syncTransactions(done);
     }
 
-    public void downloadTransactions(final Call call) {
-        new Thread(new Runnable() {
+    /**
+     * Fetch the transactions that are not stored yet, then run {@code done} on the request thread.
+     */
+    private void syncTransactions(final Runnable done) {
+        getTransactions().sync(public_key, address, new TransactionStore.SyncFeedback() {
             @Override
-            public void run() {
-                // GETTRANSACTIONS
-                Handler h = new Handler(getMainLooper());
-                h.post(new Runnable() {
-                    @Override
-                    public void run() {
-                        findViewById(R.id.progressBar).setVisibility(View.VISIBLE);
-                    }
-                });
-                ApiRequest.requestFeedback(new ApiRequest.RequestFeedback() {
+            public void onSynced(int added) {
+                String newest = getTransactions().getNewestId();
+                if (newest != null)
+                    saveString("lastID", newest);
+                done.run();
+            }
 
-                                               @Override
-                                               public void onFeedback(JSONObject object) {
-                                                   try {
-                                                       saveString("lastID", object.getJSONArray("data").getJSONObject(0).get("id").toString());
-                                                       saveString("transactions", object.toString());
-                                                       call.onDone(object);
-                                                   } catch (Exception e) {
-                                                       e.printStackTrace();
-                                                   }
-                                               }
-                                           }, "getTransactions", new ApiRequest.Argument("public_key", public_key),
-                        new ApiRequest.Argument("account", address),
-                        new ApiRequest.Argument("limit", "1000"));
+            @Override
+            public void onError(Exception e) {
+                e.printStackTrace();
+                done.run();
             }
-        }).start();
+        });
     }
 
     public QRCodeReaderView.OnQRCodeReadListener createQRlistener() {
@@ -1158,31 +965,6 @@ public class HomeView extends AppCompatActivity implements ComponentCallbacks2 {
         crossFader.getCrossFadeSlidingPaneLayout().setShadowResourceLeft(R.drawable.material_drawer_shadow_left);
     }
 
-    public void checkIfLastTransactionIsSame(final LastTransactionTimer timer) {
-        new Thread(new Runnable() {
-            @Override
-            public void run() {
-                // GETTRANSACTIONS
-                ApiRequest.requestFeedback(new ApiRequest.RequestFeedback() {
-                                               @Override
-                                               public void onFeedback(JSONObject object) {
-                                                   try {
-                                                       JSONArray array = object.getJSONArray("data");
-                                                       String id = ((JSONObject) array.get(0)).get("id").toString();
-                                                       if (getString("lastID").equalsIgnoreCase(id))
-                                                           timer.onSame(id);
-                                                       else
-                                                           timer.onDifferect(id);
-                                                   } catch (Exception e) {
-                                                   }
-                                               }
-                                           }, "getTransactions", new ApiRequest.Argument("public_key", public_key),
-                        new ApiRequest.Argument("account", address),
-                        new ApiRequest.Argument("limit", "1"));
-            }
-        }).start();
-    }
-
     @Override
     public void onBackPressed() {
         new MaterialDialog.Builder(this).title("Do you want to exit?").cancelable(true).positiveText("Yes")
@@ -1317,78 +1099,6 @@ public class HomeView extends AppCompatActivity implements ComponentCallbacks2 {
         }
     }
 
-    public class CustomList extends ArrayAdapter<String> {
-
-        private final Activity context;
-        private final ArrayList<String> strings;
-        private final ArrayList<GoogleMaterial.Icon> imageId;
-
-        private IconicsDrawable drawablepositive;
-        private IconicsDrawable drawablenegative;
-
-        public CustomList(Activity context, ArrayList<String> strings, ArrayList<GoogleMaterial.Icon> imageId) {
-            super(context, R.layout.list_single, strings);
-            this.context = context;
-            this.strings = strings;
-            this.imageId = imageId;
-            if (drawablepositive == null) {
-                drawablepositive = new IconicsDrawable(HomeView.this).icon(GoogleMaterial.Icon.gmd_long_arrow_down)
-                        .color(ContextCompat.getColor(HomeView.instance, R.color.colorGreen)).sizeDp(24);
-            }
-            if (drawablenegative == null) {
-                drawablenegative = new IconicsDrawable(HomeView.this).icon(GoogleMaterial.Icon.gmd_long_arrow_up)
-                        .color(ContextCompat.getColor(HomeView.instance, R.color.colorRed)).sizeDp(24);
-            }
-        }
-
-        @Override
-        public View getView(int position, View view, ViewGroup parent) {
-            LayoutInflater inflater = context.getLayoutInflater();
-            View rowView = inflater.inflate(R.layout.list_single, null, true);
-            TextView txtTitle = rowView.findViewById(R.id.txt);
-            TextView value = rowView.findViewById(R.id.value);
-            TextView from = rowView.findViewById(R.id.from);
-            TextView to = rowView.findViewById(R.id.to);
-            TextView date = rowView.findViewById(R.id.date);
-            ImageView imageView = rowView.findViewById(R.id.img);
-            txtTitle.setText("ID: " + strings.get(position).split(",")[0]);
-            value.setText(strings.get(position).split(",")[1] + " ARO");
-
-            if (imageId.get(position) == GoogleMaterial.Icon.gmd_long_arrow_down)
-                value.setTextColor(ContextCompat.getColor(HomeView.instance, R.color.colorGreen));
-            else
-                value.setTextColor(ContextCompat.getColor(HomeView.instance, R.color.colorRed));
-
-            from.setText("<- " + strings.get(position).split(",")[2]);
-            to.setText("-> " + strings.get(position).split(",")[3]);
-            long t = Long.parseLong(strings.get(position).split(",")[4]) * 1000;
-            Calendar dated = Calendar.getInstance();
-            SimpleDateFormat format1 = new SimpleDateFormat("yyyy-MM-dd");
-            dated.setTimeInMillis(t);
-            String date1 = format1.format(dated.getTime());
-            date.setText(date1);
-
-            if (imageId.get(position) == GoogleMaterial.Icon.gmd_long_arrow_down) {
-
-                imageView.setImageDrawable(drawablepositive);
-            } else {
-
-                imageView.setImageDrawable(drawablenegative);
-            }
-            return rowView;
-        }
-    }
-
-    public abstract class LastTransactionTimer {
-        public abstract void onSame(String id);
-
-        public abstract void onDifferect(String id);
-    }
-
-    public abstract class Call {
-        public abstract void onDone(JSONObject o);
-    }
-
     public static String getAddress() {
         return address;
     }
@@ -1424,7 +1134,7 @@ public class HomeView extends AppCompatActivity implements ComponentCallbacks2 {
     }
 
     public static String getCurrentPeer() {
-        return currentPeer;
+        return PeerManager.get().getCurrentPeer();
     }
 
     public static void makeTransaction(final String addressTO, double value, String MSG, final Runnable run) {
@@ -1529,25 +1239,24 @@ public class HomeView extends AppCompatActivity implements ComponentCallbacks2 {
                                        }
                                    }, "getBalance", new ApiRequest.Argument("public_key", public_key),
                 new ApiRequest.Argument("account", address));
-        ApiRequest.requestFeedback(new ApiRequest.RequestFeedback() {
+        syncLastTransactions();
+    }
 
-                                       @Override
-                                       public void onFeedback(JSONObject object) {
-                                           try {
-                                               sortArrayAndPutInList(object.getJSONArray("data"), (ListView) findViewById(R.id.transactionlist));
-                                               Handler h = new Handler(instance.getMainLooper());
-                                               h.post(new Runnable() {
-                                                   @Override
-                                                   public void run() {
-                                                       findViewById(R.id.waitingtransbar).setVisibility(GONE);
-                                                   }
-                                               });
-                                           } catch (Exception e) {
-                                               e.printStackTrace();
-                                           }
-                                           refreshing = false;
-                                       }
-                                   }, "getTransactions", new ApiRequest.Argument("public_key", public_key),
-                new ApiRequest.Argument("account", address), new ApiRequest.Argument("limit", "10"));
+    private void syncLastTransactions() {
+        syncTransactions(new Runnable() {
+            @Override
+            public void run() {
+                lastTransactions.refresh();
+                history.refresh();
+                Handler h = new Handler(instance.getMainLooper());
+                h.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        findViewById(R.id.waitingtransbar).setVisibility(GONE);
+                    }
+                });
+                refreshing = false;
+            }
+        });
     }
 }
\ No newline at end of file
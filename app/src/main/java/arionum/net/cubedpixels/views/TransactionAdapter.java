@@ -0,0 +1,234 @@
+package arionum.net.cubedpixels.views;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.support.v4.content.ContextCompat;
+import android.support.v7.util.DiffUtil;
+import android.support.v7.widget.DefaultItemAnimator;
+import android.support.v7.widget.LinearLayoutManager;
+import android.support.v7.widget.RecyclerView;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.ImageView;
+import android.widget.TextView;
+
+import com.mikepenz.google_material_typeface_library.GoogleMaterial;
+import com.mikepenz.iconics.IconicsDrawable;
+
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import arionum.net.cubedpixels.R;
+import arionum.net.cubedpixels.api.Transaction;
+import arionum.net.cubedpixels.api.TransactionStore;
+
+/**
+ * Shows a {@link TransactionStore} in a RecyclerView. Only the first page is read from the store, a paged list
+ * reads the next one when it is scrolled close to the end. {@link #refresh()} diffs the new first pages
+ * against what is shown, so rows that did not change keep their views and only new rows are animated.
+ * Pages are read and diffed on a background thread, since the first read loads the store from disk; only the
+ * updates are applied on the main thread.
+ */
+public class TransactionAdapter extends RecyclerView.Adapter<TransactionAdapter.Holder> {
+
+    /**
+     * Rows left below the last visible one when the next page is read.
+     */
+    static final int PREFETCH = 10;
+    /**
+     * One thread for every adapter, so reads are applied in the order they were asked for.
+     */
+    private static final ExecutorService reader = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "transactions");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    private final TransactionStore store;
+    private final int pageSize;
+    private final boolean paged;
+    private final Handler main = new Handler(Looper.getMainLooper());
+    private final SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd", Locale.US);
+    private final int creditColor;
+    private final int debitColor;
+    private volatile List<Transaction> shown = new ArrayList<Transaction>();
+    private boolean loading;
+
+    /**
+     * @param paged keep reading pages while scrolling, otherwise only the first {@code pageSize} rows show
+     */
+    public TransactionAdapter(Context context, TransactionStore store, int pageSize, boolean paged) {
+        this.store = store;
+        this.pageSize = pageSize;
+        this.paged = paged;
+        creditColor = ContextCompat.getColor(context, R.color.colorGreen);
+        debitColor = ContextCompat.getColor(context, R.color.colorRed);
+    }
+
+    /**
+     * Show this adapter in {@code view} and start with what the store already has.
+     */
+    public void attach(RecyclerView view) {
+        final LinearLayoutManager layout = new LinearLayoutManager(view.getContext());
+        view.setLayoutManager(layout);
+        view.setItemAnimator(new DefaultItemAnimator());
+        view.setAdapter(this);
+        if (paged) {
+            view.addOnScrollListener(new RecyclerView.OnScrollListener() {
+                @Override
+                public void onScrolled(RecyclerView recyclerView, int dx, int dy) {
+                    if (!loading && layout.findLastVisibleItemPosition() >= shown.size() - PREFETCH) {
+                        loading = true;
+                        loadMore();
+                    }
+                }
+            });
+        }
+        refresh();
+    }
+
+    /**
+     * Re-read the pages shown so far from the store and apply the difference. May be called from any thread.
+     */
+    public void refresh() {
+        reader.execute(new Runnable() {
+            @Override
+            public void run() {
+                final List<Transaction> before = shown;
+                final List<Transaction> after = store.page(0, paged ? Math.max(pageSize, before.size()) : pageSize);
+                final DiffUtil.DiffResult diff = diff(before, after);
+                main.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (shown != before) {
+                            // a page was appended meanwhile, the diff no longer starts from what is shown
+                            refresh();
+                            return;
+                        }
+                        shown = after;
+                        diff.dispatchUpdatesTo(TransactionAdapter.this);
+                    }
+                });
+            }
+        });
+    }
+
+    private static DiffUtil.DiffResult diff(final List<Transaction> before, final List<Transaction> after) {
+        return DiffUtil.calculateDiff(new DiffUtil.Callback() {
+            @Override
+            public int getOldListSize() {
+                return before.size();
+            }
+
+            @Override
+            public int getNewListSize() {
+                return after.size();
+            }
+
+            @Override
+            public boolean areItemsTheSame(int oldPosition, int newPosition) {
+                return before.get(oldPosition).getId().equals(after.get(newPosition).getId());
+            }
+
+            @Override
+            public boolean areContentsTheSame(int oldPosition, int newPosition) {
+                // a pending transaction keeps its id once mined, only type and height change
+                Transaction old = before.get(oldPosition);
+                Transaction now = after.get(newPosition);
+                return old.getHeight() == now.getHeight()
+                        && String.valueOf(old.getType()).equals(String.valueOf(now.getType()));
+            }
+        });
+    }
+
+    /**
+     * Read the page after the shown rows and append it, unless a refresh changed them meanwhile.
+     */
+    private void loadMore() {
+        final List<Transaction> before = shown;
+        reader.execute(new Runnable() {
+            @Override
+            public void run() {
+                final List<Transaction> next = before.size() < store.size()
+                        ? store.page(before.size(), pageSize) : new ArrayList<Transaction>();
+                main.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        loading = false;
+                        if (next.isEmpty() || shown != before) {
+                            return;
+                        }
+                        List<Transaction> grown = new ArrayList<Transaction>(before.size() + next.size());
+                        grown.addAll(before);
+                        grown.addAll(next);
+                        shown = grown;
+                        notifyItemRangeInserted(before.size(), next.size());
+                    }
+                });
+            }
+        });
+    }
+
+    @Override
+    public Holder onCreateViewHolder(ViewGroup parent, int viewType) {
+        return new Holder(LayoutInflater.from(parent.getContext()).inflate(R.layout.list_single, parent, false));
+    }
+
+    @Override
+    public void onBindViewHolder(Holder holder, int position) {
+        holder.bind(shown.get(position));
+    }
+
+    @Override
+    public int getItemCount() {
+        return shown.size();
+    }
+
+    class Holder extends RecyclerView.ViewHolder {
+        private final TextView id;
+        private final TextView value;
+        private final TextView from;
+        private final TextView to;
+        private final TextView date;
+        private final ImageView icon;
+        private final IconicsDrawable credit;
+        private final IconicsDrawable debit;
+
+        Holder(View row) {
+            super(row);
+            id = row.findViewById(R.id.txt);
+            value = row.findViewById(R.id.value);
+            from = row.findViewById(R.id.from);
+            to = row.findViewById(R.id.to);
+            date = row.findViewById(R.id.date);
+            icon = row.findViewById(R.id.img);
+            // one drawable per row, a shared one would have its bounds and state changed by every row using it
+            credit = new IconicsDrawable(row.getContext()).icon(GoogleMaterial.Icon.gmd_long_arrow_down)
+                    .color(creditColor).sizeDp(24);
+            debit = new IconicsDrawable(row.getContext()).icon(GoogleMaterial.Icon.gmd_long_arrow_up)
+                    .color(debitColor).sizeDp(24);
+        }
+
+        void bind(Transaction transaction) {
+            boolean isCredit = transaction.isCredit();
+            id.setText("ID: " + transaction.getId());
+            value.setText(transaction.getVal() + " ARO");
+            value.setTextColor(isCredit ? creditColor : debitColor);
+            from.setText("<- " + transaction.getSrc());
+            to.setText("-> " + transaction.getDst());
+            date.setText(dateFormat.format(new Date(transaction.getDate() * 1000l)));
+            icon.setImageDrawable(isCredit ? credit : debit);
+        }
+    }
+}
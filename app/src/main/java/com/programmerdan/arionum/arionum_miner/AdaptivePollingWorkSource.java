@@ -0,0 +1,60 @@
+package com.programmerdan.arionum.arionum_miner;
+
+/**
+ * Polls like {@link PollingWorkSource}, but stretches the interval while the block stays the same and
+ * tightens it again once the block is due. The expected block time starts at the Arionum target and follows
+ * the intervals actually observed.
+ */
+public class AdaptivePollingWorkSource extends PollingWorkSource {
+
+    static final long MIN_DELAY = 1000l;
+    static final long MAX_DELAY = 15000l;
+    static final double BACKOFF = 1.5d;
+    static final long TARGET_BLOCK_TIME = 240000l;
+    /**
+     * Share of the expected block time after which we poll at {@link #MIN_DELAY} again.
+     */
+    static final double DUE_FRACTION = 0.75d;
+    static final double INTERVAL_WEIGHT = 0.2d;
+
+    private long delay = MIN_DELAY;
+    private long lastChange;
+    private double expectedInterval = TARGET_BLOCK_TIME;
+
+    @Override
+    public synchronized long nextDelay(WorkInfo previous, WorkInfo latest, boolean failed) {
+        long now = System.currentTimeMillis();
+        if (failed || latest == null) {
+            delay = Math.min(MAX_DELAY, (long) (delay * BACKOFF));
+            return delay;
+        }
+        if (!latest.sameBlock(previous)) {
+            if (previous != null && lastChange > 0) {
+                expectedInterval += INTERVAL_WEIGHT * ((now - lastChange) - expectedInterval);
+            }
+            lastChange = now;
+            delay = MIN_DELAY;
+        } else {
+            delay = Math.min(MAX_DELAY, (long) (delay * BACKOFF));
+        }
+        if (lastChange > 0) {
+            long sinceChange = now - lastChange;
+            if (sinceChange >= expectedInterval * DUE_FRACTION) {
+                delay = MIN_DELAY;
+            } else {
+                // never sleep past the point where the block becomes due
+                delay = Math.max(MIN_DELAY, Math.min(delay, (long) (expectedInterval * DUE_FRACTION) - sinceChange));
+            }
+        }
+        return delay;
+    }
+
+    public synchronized long getExpectedInterval() {
+        return (long) expectedInterval;
+    }
+
+    @Override
+    public String getName() {
+        return "adaptive";
+    }
+}
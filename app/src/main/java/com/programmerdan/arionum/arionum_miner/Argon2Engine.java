@@ -0,0 +1,39 @@
+package com.programmerdan.arionum.arionum_miner;
+
+import de.wuthoehle.argon2jni.Argon2;
+import de.wuthoehle.argon2jni.SecurityParameters;
+
+/**
+ * What a {@link MappedHasher} runs Argon2 with: the native library or {@link JavaArgon2}. An engine belongs
+ * to one hasher and is only used from its thread.
+ */
+interface Argon2Engine {
+
+    /**
+     * Argon2i parameters of the Arionum proof of work.
+     */
+    SecurityParameters SECURITY_PARAMETERS = Argon2.SecurityParameterTemplates.OFFICIAL_DEFAULT;
+
+    /**
+     * Hash {@code password} with a fresh random salt. The result stays readable through {@link #append} until
+     * the next call.
+     */
+    void hash(byte[] password);
+
+    /**
+     * Write the encoded result of the last hash behind the prefix of {@code base}.
+     *
+     * @return number of valid bytes in {@code base.buffer}
+     */
+    int append(HashBase base);
+
+    /**
+     * Free the memory matrix of the calling thread.
+     */
+    void release();
+
+    /**
+     * Short name for logs and benchmarks.
+     */
+    String getName();
+}
@@ -0,0 +1,62 @@
+package com.programmerdan.arionum.arionum_miner;
+
+import java.math.BigInteger;
+
+/**
+ * Computes the Arionum duration from a SHA-512 digest: the decimal concatenation of eight digest bytes,
+ * divided by the difficulty.
+ * <p>
+ * The concatenation can reach 24 digits, which does not fit in a long, so the quotient is built by long
+ * division one byte value at a time. The remainder always stays below the difficulty, so nothing overflows
+ * as long as the difficulty is below {@link #MAX_FAST_DIFFICULTY} and the quotient fits in a long. Anything
+ * else falls back to the original BigInteger path.
+ */
+public class Duration {
+
+    static final int[] DIGEST_INDEXES = {10, 15, 20, 23, 31, 40, 45, 55};
+    static final long MAX_FAST_DIFFICULTY = (Long.MAX_VALUE - 255l) / 1000l;
+    // each step adds at most scale + 255 / difficulty to the shifted quotient
+    private static final long MAX_FAST_QUOTIENT = (Long.MAX_VALUE - 1256l) / 1000l;
+
+    /**
+     * @param digest     final SHA-512 digest
+     * @param difficulty difficulty as a long, or a value &lt;= 0 if it does not fit
+     * @param fallback   the same difficulty as a BigInteger, used when the fast path cannot be taken
+     */
+    public static long compute(byte[] digest, long difficulty, BigInteger fallback) {
+        if (difficulty <= 0 || difficulty > MAX_FAST_DIFFICULTY) {
+            return computeBigInteger(digest, fallback);
+        }
+        long quotient = 0l;
+        long remainder = 0l;
+        for (int index : DIGEST_INDEXES) {
+            int value = digest[index] & 0xFF;
+            long scale = value < 10 ? 10l : value < 100 ? 100l : 1000l;
+            if (quotient > MAX_FAST_QUOTIENT) {
+                return computeBigInteger(digest, fallback);
+            }
+            long partial = remainder * scale + value;
+            quotient = quotient * scale + partial / difficulty;
+            remainder = partial % difficulty;
+        }
+        return quotient;
+    }
+
+    /**
+     * Reference implementation, identical to what the hash loop used to do on every hash.
+     */
+    public static long computeBigInteger(byte[] digest, BigInteger difficulty) {
+        StringBuilder duration = new StringBuilder(25);
+        for (int index : DIGEST_INDEXES) {
+            duration.append(digest[index] & 0xFF);
+        }
+        return new BigInteger(duration.toString()).divide(difficulty).longValue();
+    }
+
+    /**
+     * Difficulty in the form {@link #compute(byte[], long, BigInteger)} expects.
+     */
+    public static long fastDifficulty(BigInteger difficulty) {
+        return difficulty.signum() > 0 && difficulty.bitLength() < 64 ? difficulty.longValue() : -1l;
+    }
+}
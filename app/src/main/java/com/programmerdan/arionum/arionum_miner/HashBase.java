@@ -0,0 +1,106 @@
+package com.programmerdan.arionum.arionum_miner;
+
+import java.nio.charset.Charset;
+import java.security.DigestException;
+import java.security.MessageDigest;
+
+/**
+ * Hash base for one nonce. {@code prefix} is handed to Argon2 as the password, {@code buffer} holds the
+ * same bytes followed by room for the encoded Argon2 output so the SHA-512 chain can digest it in place.
+ */
+final class HashBase {
+
+    /**
+     * Room reserved behind the hash base for the encoded Argon2 output. The encoded form for
+     * OFFICIAL_DEFAULT with a 16 byte salt and 32 byte hash is 96 characters.
+     */
+    static final int ENCODED_CAPACITY = 128;
+    static final int DIGEST_LENGTH = 64;
+
+    /**
+     * The work this base was laid out for, null for fixed test bases.
+     */
+    final MiningWork work;
+    final byte[] prefix;
+    final int nonceOffset;
+    final int nonceLength;
+    byte[] buffer;
+
+    HashBase(MiningWork work, byte[] prefix, int nonceOffset, int nonceLength) {
+        this.work = work;
+        this.prefix = prefix;
+        this.nonceOffset = nonceOffset;
+        this.nonceLength = nonceLength;
+        this.buffer = new byte[prefix.length + ENCODED_CAPACITY];
+        System.arraycopy(prefix, 0, buffer, 0, prefix.length);
+    }
+
+    /**
+     * Overwrite only the nonce, in both the Argon2 password and the SHA buffer.
+     */
+    void patchNonce(NonceGenerator nonces) {
+        nonces.fill(prefix, nonceOffset);
+        System.arraycopy(prefix, nonceOffset, buffer, nonceOffset, nonceLength);
+    }
+
+    /**
+     * The nonce as submitted, only built when a share is found.
+     */
+    String nonce() {
+        return new String(prefix, nonceOffset, nonceLength, Charset.forName("ASCII"));
+    }
+
+    /**
+     * Writes the encoded Argon2 output behind the prefix.
+     *
+     * @return number of valid bytes in {@code buffer}
+     */
+    @SuppressWarnings("deprecation")
+    int append(String encoded) {
+        int length = ensureCapacity(encoded.length());
+        // encoded Argon2 output is plain ASCII, so the low byte of each char is the byte we want
+        encoded.getBytes(0, encoded.length(), buffer, prefix.length);
+        return length;
+    }
+
+    /**
+     * Writes {@code encodedLength} bytes of encoded Argon2 output behind the prefix.
+     *
+     * @return number of valid bytes in {@code buffer}
+     */
+    int append(byte[] encoded, int encodedLength) {
+        int length = ensureCapacity(encodedLength);
+        System.arraycopy(encoded, 0, buffer, prefix.length, encodedLength);
+        return length;
+    }
+
+    /**
+     * The SHA-512 chain of the miner: one digest of the first {@code length} bytes of {@code buffer}, then five
+     * more over the digest itself, left in {@code digest}.
+     */
+    void digest(MessageDigest sha512, int length, byte[] digest) throws DigestException {
+        sha512.update(buffer, 0, length);
+        sha512.digest(digest, 0, DIGEST_LENGTH);
+        for (int i = 0; i < 5; i++) {
+            sha512.update(digest, 0, DIGEST_LENGTH);
+            sha512.digest(digest, 0, DIGEST_LENGTH);
+        }
+    }
+
+    /**
+     * The encoded Argon2 output last written by append, only built when a share is submitted.
+     */
+    String encoded(int length) {
+        return new String(buffer, prefix.length, length - prefix.length, Charset.forName("ASCII"));
+    }
+
+    private int ensureCapacity(int encodedLength) {
+        int length = prefix.length + encodedLength;
+        if (length > buffer.length) {
+            byte[] grown = new byte[length];
+            System.arraycopy(prefix, 0, grown, 0, prefix.length);
+            buffer = grown;
+        }
+        return length;
+    }
+}
@@ -0,0 +1,312 @@
+package com.programmerdan.arionum.arionum_miner;
+
+import java.math.BigInteger;
+import java.security.DigestException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Optional three stage hash pipeline shared by all {@link PipelinedHasher}s of a miner.
+ * <ul>
+ * <li>prep: one thread keeps a ring of fresh hash bases (nonce draw, filtering, layout) ahead of the workers</li>
+ * <li>argon: the hashers themselves, which only take a base, run an Argon2 hash and hand it on</li>
+ * <li>post: one thread runs the SHA-512 chain, the duration and the submit decision for finished hashes</li>
+ * </ul>
+ * Hand-offs go through {@link BoundedRing}s, so an Argon2 worker never waits on the other stages: an empty base
+ * ring means the worker builds its own base, a full post ring means it processes the hash itself.
+ */
+public class HashPipeline {
+
+    static final int BASE_CAPACITY = 16;
+    static final int POST_CAPACITY = 64;
+    static final long IDLE_PARK = 250000l;
+
+    private final Miner parent;
+    private final BoundedRing<Prepared> bases;
+    private final BoundedRing<Job> completed;
+    private final Thread prepThread;
+    private final Thread postThread;
+    private volatile boolean running;
+
+    private final AtomicLong prepBusy = new AtomicLong();
+    private final AtomicLong argonBusy = new AtomicLong();
+    private final AtomicLong postBusy = new AtomicLong();
+    private final AtomicLong baseMisses = new AtomicLong();
+    private final AtomicLong inlineJobs = new AtomicLong();
+    private long sampleBegin;
+    private double prepUtilisation;
+    private double argonUtilisation;
+    private double postUtilisation;
+
+    public HashPipeline(Miner parent) {
+        this.parent = parent;
+        this.bases = new BoundedRing<Prepared>(BASE_CAPACITY);
+        this.completed = new BoundedRing<Job>(POST_CAPACITY);
+        this.prepThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                prepare();
+            }
+        }, "hash-prep");
+        this.postThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                postProcess();
+            }
+        }, "hash-post");
+        prepThread.setDaemon(true);
+        postThread.setDaemon(true);
+    }
+
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        sampleBegin = System.nanoTime();
+        prepThread.start();
+        postThread.start();
+    }
+
+    /**
+     * Stop both stages. Hashes already queued for post-processing are still finished and handed back.
+     */
+    public void shutdown() {
+        running = false;
+        LockSupport.unpark(prepThread);
+        LockSupport.unpark(postThread);
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * @return a prepared base for {@code current}, or null if the prep stage has none ready
+     */
+    Prepared nextBase(MiningWork current) {
+        Prepared prepared;
+        while ((prepared = bases.poll()) != null) {
+            LockSupport.unpark(prepThread);
+            if (prepared.work == current) {
+                return prepared;
+            }
+            // built for a block we are no longer mining
+        }
+        baseMisses.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * Queue a finished Argon2 hash for the post stage.
+     *
+     * @return false if the post stage is full or stopped; the caller then processes the hash itself
+     */
+    boolean submit(Job job) {
+        if (!running || !completed.offer(job)) {
+            inlineJobs.incrementAndGet();
+            return false;
+        }
+        LockSupport.unpark(postThread);
+        return true;
+    }
+
+    void recordArgon(long nanos) {
+        argonBusy.addAndGet(nanos);
+    }
+
+    void recordPost(long nanos) {
+        postBusy.addAndGet(nanos);
+    }
+
+    /**
+     * Busy share of each stage since the previous sample. Argon2 is averaged over {@code argonWorkers}.
+     */
+    public synchronized void sample(int argonWorkers) {
+        long now = System.nanoTime();
+        long wall = now - sampleBegin;
+        sampleBegin = now;
+        if (wall <= 0) {
+            return;
+        }
+        prepUtilisation = (double) prepBusy.getAndSet(0l) / (double) wall;
+        argonUtilisation = (double) argonBusy.getAndSet(0l) / ((double) wall * Math.max(1, argonWorkers));
+        postUtilisation = (double) postBusy.getAndSet(0l) / (double) wall;
+    }
+
+    public double getPrepUtilisation() {
+        return prepUtilisation;
+    }
+
+    public double getArgonUtilisation() {
+        return argonUtilisation;
+    }
+
+    public double getPostUtilisation() {
+        return postUtilisation;
+    }
+
+    public long getBaseMisses() {
+        return baseMisses.get();
+    }
+
+    public long getInlineJobs() {
+        return inlineJobs.get();
+    }
+
+    public String describe() {
+        return String.format("prep %.1f%% argon %.1f%% post %.1f%% (bases %d/%d, misses %d, inline %d)",
+                prepUtilisation * 100d, argonUtilisation * 100d, postUtilisation * 100d,
+                bases.size(), bases.capacity(), baseMisses.get(), inlineJobs.get());
+    }
+
+    private void prepare() {
+        NonceGenerator nonces = NonceGenerator.forCurrentThread();
+        Prepared pending = null;
+        while (running) {
+            MiningWork current = parent.getWork();
+            if (current == null) {
+                LockSupport.parkNanos(this, IDLE_PARK);
+                continue;
+            }
+            if (pending == null || pending.work != current) {
+                long begin = System.nanoTime();
+                pending = new Prepared(current, current.newBase(nonces));
+                pending.prepNanos = System.nanoTime() - begin;
+                prepBusy.addAndGet(pending.prepNanos);
+            }
+            if (bases.offer(pending)) {
+                pending = null;
+            } else {
+                // full: wait for a hasher to take one
+                LockSupport.parkNanos(this, IDLE_PARK * 4);
+            }
+        }
+    }
+
+    private void postProcess() {
+        MessageDigest sha512;
+        try {
+            sha512 = MessageDigest.getInstance("SHA-512");
+        } catch (NoSuchAlgorithmException e) {
+            System.err.println("Unable to find SHA-512 algorithm! Pipeline post stage disabled.");
+            running = false;
+            return;
+        }
+        byte[] digest = new byte[HashBase.DIGEST_LENGTH];
+        while (true) {
+            Job job = completed.poll();
+            if (job == null) {
+                if (!running) {
+                    break;
+                }
+                LockSupport.parkNanos(this, IDLE_PARK);
+                continue;
+            }
+            try {
+                job.process(sha512, digest, parent);
+                recordPost(job.postTime);
+            } catch (Exception e) {
+                System.err.println("PIPELINE POST FAILED! " + e.getMessage());
+                e.printStackTrace();
+            }
+            job.owner.recycle(job);
+        }
+    }
+
+    /**
+     * A hash base and the work it was built for, compared by identity.
+     */
+    static final class Prepared {
+        final MiningWork work;
+        final HashBase base;
+        long prepNanos;
+
+        Prepared(MiningWork work, HashBase base) {
+            this.work = work;
+            this.base = base;
+        }
+    }
+
+    /**
+     * One Argon2 hash on its way through the pipeline. Owned by a single hasher, which reuses it once the
+     * post stage hands it back; the result counters are folded into the hasher's session at that point.
+     */
+    static final class Job {
+        final PipelinedHasher owner;
+        HashBase base;
+        MiningWork work;
+        String encoded;
+        BigInteger difficulty;
+        long difficultyValue;
+        long limit;
+        Miner.callbackMiner caller;
+        String type;
+
+        long hashes;
+        long bestDL = Long.MAX_VALUE;
+        long shares;
+        long finds;
+        long staleHashes;
+        long shaTime;
+        long postTime;
+
+        Job(PipelinedHasher owner) {
+            this.owner = owner;
+        }
+
+        void process(MessageDigest sha512, byte[] digest, Miner parent) throws DigestException {
+            long begin = System.nanoTime();
+            hashes++;
+            if (!work.sameBlock(parent.getWork())) {
+                // the block changed while the hash was running or queued
+                staleHashes++;
+                this.postTime += System.nanoTime() - begin;
+                return;
+            }
+            int length = base.append(encoded);
+
+            long statShaBegin = System.nanoTime();
+            base.digest(sha512, length, digest);
+            this.shaTime += System.nanoTime() - statShaBegin;
+
+            long finalDuration = Duration.compute(digest, difficultyValue, difficulty);
+            Miner.limitDuration = limit;
+            if (caller != null) {
+                caller.onDurChange(finalDuration + "");
+            }
+
+            if (finalDuration <= limit) {
+                Miner.finalDuration = Long.MAX_VALUE;
+                parent.submit(work, base.nonce(), base.encoded(length), finalDuration, type);
+                if (finalDuration <= 240) {
+                    finds++;
+                    if (caller != null) {
+                        caller.onFind(finalDuration + "");
+                    }
+                } else {
+                    shares++;
+                    if (caller != null) {
+                        caller.onShare(finalDuration + "");
+                    }
+                }
+            }
+            if (finalDuration < bestDL) {
+                bestDL = finalDuration;
+            }
+            this.postTime += System.nanoTime() - begin;
+        }
+
+        void reset() {
+            hashes = 0l;
+            bestDL = Long.MAX_VALUE;
+            shares = 0l;
+            finds = 0l;
+            staleHashes = 0l;
+            shaTime = 0l;
+            postTime = 0l;
+        }
+    }
+}
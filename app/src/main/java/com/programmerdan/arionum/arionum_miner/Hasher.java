@@ -13,11 +13,15 @@ public abstract class Hasher implements Runnable {
     protected long hashEnd;
     protected long hashTime;
     protected long maxTime;
+    /**
+     * Hashes without a share after which the hasher ends and is replaced, see {@link SessionController}.
+     */
+    protected long recycleAfter;
     protected long blockHeight;
     protected BigInteger difficulty;
+    protected long difficultyValue;
     protected String difficultyString;
     protected String data;
-    protected int hashBufferSize;
     protected long limit;
     protected String publicKey;
     protected long bestDL;
@@ -27,6 +31,27 @@ public abstract class Hasher implements Runnable {
     protected long argonTime;
     protected long shaTime;
     protected long nonArgonTime;
+    protected long prepTime;
+    protected long postTime;
+    /**
+     * Hashes finished after their block had already been replaced, and so thrown away.
+     */
+    protected long staleHashes;
+    protected MiningWork work;
+    protected Miner.callbackMiner caller;
+    protected boolean retired;
+    Hasher successor;
+    private StatsSlab slab;
+    private long publishedHashes;
+    private long publishedArgonTime;
+    private long publishedShaTime;
+    private long publishedNonArgonTime;
+    private long publishedPrepTime;
+    private long publishedPostTime;
+    private long publishedShares;
+    private long publishedFinds;
+    private long publishedStaleHashes;
+    final int generation;
 
     public Hasher(Miner parent, String id, long target, long maxTime) {
         super();
@@ -36,9 +61,14 @@ public abstract class Hasher implements Runnable {
         this.hashCount = 0l;
         this.targetHashCount = target;
         this.maxTime = maxTime;
+        this.generation = parent.getGeneration();
+        this.caller = Miner.getCallback();
+        this.recycleAfter = parent.getSessionDecision().recycleHashes;
     }
 
     public void run() {
+        StatsBoard board = parent.getStatsBoard();
+        slab = board.attach();
         try {
             active = true;
             go();
@@ -49,25 +79,71 @@ public abstract class Hasher implements Runnable {
 
             System.err.println("\n\nThis is probably fatal, so exiting now.");
         }
-        HasherStats stats = new HasherStats(id, argonTime, shaTime, nonArgonTime, hashTime, hashCount, bestDL, shares, finds, getType());
-        parent.workerFinish(stats, this);
+        publish();
+        if (hashCount > 0) {
+            slab.session(hashCount, hashTime);
+        }
+        board.detach(slab);
+        parent.workerFinish(this);
     }
 
     public abstract void go();
 
+    /**
+     * Push what this session did since the last publish to the stats board. Call after every batch; only
+     * this hasher's thread may call it.
+     */
+    protected void publish() {
+        if (slab == null) {
+            return;
+        }
+        parent.getHashrateMeter().record(hashCount - publishedHashes);
+        slab.add(hashCount - publishedHashes, argonTime - publishedArgonTime, shaTime - publishedShaTime,
+                nonArgonTime - publishedNonArgonTime, prepTime - publishedPrepTime, postTime - publishedPostTime,
+                shares - publishedShares, finds - publishedFinds, staleHashes - publishedStaleHashes, bestDL);
+        publishedHashes = hashCount;
+        publishedArgonTime = argonTime;
+        publishedShaTime = shaTime;
+        publishedNonArgonTime = nonArgonTime;
+        publishedPrepTime = prepTime;
+        publishedPostTime = postTime;
+        publishedShares = shares;
+        publishedFinds = finds;
+        publishedStaleHashes = staleHashes;
+    }
+
     public void completeSession() {
-        HasherStats stats = new HasherStats(id, argonTime, shaTime, nonArgonTime, hashTime, hashCount, bestDL, shares, finds, getType());
+        publish();
+        if (slab != null) {
+            slab.session(hashCount, hashTime);
+        }
+        publishedHashes = 0l;
+        publishedArgonTime = 0l;
+        publishedShaTime = 0l;
+        publishedNonArgonTime = 0l;
+        publishedPrepTime = 0l;
+        publishedPostTime = 0l;
+        publishedShares = 0l;
+        publishedFinds = 0l;
+        publishedStaleHashes = 0l;
         argonTime = 0l;
         shaTime = 0l;
         nonArgonTime = 0l;
+        prepTime = 0l;
+        postTime = 0l;
         hashTime = 0l;
         hashCount = 0l;
         bestDL = Long.MAX_VALUE;
         shares = 0l;
         finds = 0l;
-        long[] sessionUpd = parent.sessionFinish(stats, this);
-        this.targetHashCount = sessionUpd[0];
-        this.maxTime = sessionUpd[1];
+        staleHashes = 0l;
+        SessionController.Decision session = parent.sessionFinish(this);
+        this.targetHashCount = session.hashesPerSession;
+        this.maxTime = session.maxTime;
+        this.recycleAfter = session.recycleHashes;
+        if (parent.shouldRetire(this)) {
+            this.retired = true;
+        }
     }
 
     public String getID() {
@@ -99,28 +175,66 @@ public abstract class Hasher implements Runnable {
         return nonArgonTime;
     }
 
+    public long getPrepTime() {
+        return prepTime;
+    }
+
+    public long getPostTime() {
+        return postTime;
+    }
+
     public long getLoopTime() {
         return loopTime;
     }
 
+    public long getStaleHashes() {
+        return staleHashes;
+    }
+
     public long getHashTime() {
         return this.hashTime;
     }
 
-    public void update(BigInteger difficulty, String data, long limit, String publicKey, long blockHeight, Miner.callbackMiner caller) {
-        this.difficulty = difficulty;
-        this.difficultyString = difficulty.toString();
-        if (!data.equals(this.data)) {
+    /**
+     * Switch to the miner's current work if it changed since the last call. Hashers call this before every
+     * batch, on their own thread.
+     *
+     * @return false while the miner has no work yet
+     */
+    protected boolean refreshWork() {
+        MiningWork current = parent.getWork();
+        if (current == null) {
+            return false;
+        }
+        if (current != this.work) {
+            adopt(current);
+        }
+        return true;
+    }
+
+    /**
+     * Whether hashes started on {@code used} are worthless because the block changed since.
+     */
+    protected boolean isStale(MiningWork used) {
+        return !used.sameBlock(parent.getWork());
+    }
+
+    protected void adopt(MiningWork next) {
+        MiningWork previous = this.work;
+        this.work = next;
+        this.difficulty = next.difficulty;
+        this.difficultyValue = next.difficultyValue;
+        this.difficultyString = next.difficultyString;
+        if (!next.block.equals(this.data)) {
             bestDL = Long.MAX_VALUE;
         }
-        this.data = data;
-        this.hashBufferSize = 280 + this.data.length();
-        this.limit = limit;
-        this.publicKey = publicKey;
-        if (blockHeight != this.blockHeight) {
-            newHeight(this.blockHeight, blockHeight);
+        this.data = next.block;
+        this.limit = next.limit;
+        this.publicKey = next.publicKey;
+        if (previous == null || next.height != previous.height) {
+            newHeight(this.blockHeight, next.height);
         }
-        this.blockHeight = blockHeight;
+        this.blockHeight = next.height;
     }
 
     public abstract void newHeight(long oldBlockHeight, long newBlockHeight);
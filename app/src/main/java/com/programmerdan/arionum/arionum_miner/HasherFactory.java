@@ -2,14 +2,25 @@ package com.programmerdan.arionum.arionum_miner;
 
 public class HasherFactory {
 
+    /**
+     * {@link AdvMode#legacy} and {@link AdvMode#experimental} hash with {@link JavaArgon2}, as does every mode
+     * when libargon2jni does not load. The pipeline is native only.
+     */
     public static Hasher createHasher(AdvMode mode, Miner parent, String id, long lifeTime, long maxSession) {
+        boolean javaArgon2 = usesJavaArgon2(mode);
+        if (parent != null && parent.isPipelined() && !javaArgon2) {
+            return new PipelinedHasher(parent, id, lifeTime, maxSession);
+        }
+        return new MappedHasher(parent, id, lifeTime, maxSession, javaArgon2);
+    }
+
+    public static boolean usesJavaArgon2(AdvMode mode) {
         switch (mode) {
+            case legacy:
             case experimental:
-                return new MappedHasher(parent, id, lifeTime, maxSession);
-            case standard:
-                return new MappedHasher(parent, id, lifeTime, maxSession);
+                return true;
             default:
-                return new MappedHasher(parent, id, lifeTime, maxSession);
+                return !NativeArgon2Engine.isAvailable();
         }
     }
 }
@@ -0,0 +1,288 @@
+package com.programmerdan.arionum.arionum_miner;
+
+import android.content.Context;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Decides how many Argon2 workers may run at once from live available memory, online cores and the thermal
+ * status, instead of a fixed thread count that the OOM killer ends up enforcing.
+ * <p>
+ * Workers are only added or removed at session boundaries: {@link #tryRetire()} is asked from
+ * {@link Hasher#completeSession()} and when a hasher finishes, {@link #canGrow()} from the miner loop.
+ * Each launched slot keeps running successor hashers on the same thread, so a {@link JavaArgon2} matrix
+ * kept by the thread is reused.
+ */
+public class HasherScheduler {
+
+    /**
+     * Native overhead per worker on top of the Argon2 matrix (thread stack, JNI, buffers).
+     */
+    static final long WORKER_OVERHEAD = 16l * 1024l * 1024l;
+    /**
+     * Memory left to the rest of the system before we count anything as ours to use.
+     */
+    static final long SYSTEM_RESERVE = 384l * 1024l * 1024l;
+    /**
+     * Java heap left to the rest of the app when {@link JavaArgon2} keeps its matrices on the heap.
+     */
+    static final long HEAP_RESERVE = 32l * 1024l * 1024l;
+    static final long REASSESS_DELAY = 10000l;
+
+    private static final int THERMAL_STATUS_MODERATE = 2;
+    private static final int THERMAL_STATUS_SEVERE = 3;
+    private static final int THERMAL_STATUS_CRITICAL = 4;
+
+    private volatile int maxWorkers;
+    private final long perWorker;
+    private final Context context;
+    private final HashrateMeter meter;
+    private final ExecutorService executor;
+    private final AtomicInteger running;
+    private volatile int target;
+    private volatile boolean heapMatrices;
+    private volatile boolean memoryStarved;
+    private long lastReassess;
+    private long lastAvailable;
+    private int lastThermal;
+
+    /**
+     * @param meter forgets a slot's latencies when the slot ends, may be null
+     */
+    public HasherScheduler(int maxWorkers, Context context, HashrateMeter meter) {
+        this.maxWorkers = maxWorkers > 0 ? maxWorkers : Runtime.getRuntime().availableProcessors();
+        this.perWorker = (long) Argon2Engine.SECURITY_PARAMETERS.m_cost * 1024l + WORKER_OVERHEAD;
+        this.context = context;
+        this.meter = meter;
+        this.running = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(0, Integer.MAX_VALUE, 30l, TimeUnit.SECONDS,
+                new SynchronousQueue<Runnable>(), new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                return new Thread(r, "hasher-" + count.incrementAndGet());
+            }
+        });
+        this.target = 1;
+        reassess(true);
+    }
+
+    /**
+     * Worker count the current device state allows, without an upper cap from the user.
+     */
+    public static int suggestWorkers() {
+        long perWorker = (long) Argon2Engine.SECURITY_PARAMETERS.m_cost * 1024l + WORKER_OVERHEAD;
+        long available = availableMemory();
+        int cores = Runtime.getRuntime().availableProcessors();
+        if (available < 0) {
+            return cores;
+        }
+        return Math.max(1, Math.min(cores, (int) ((available - SYSTEM_RESERVE) / perWorker)));
+    }
+
+    /**
+     * Workers whose {@link JavaArgon2} matrix fits under the Java heap limit. Android caps an app's heap far
+     * below the device's memory, often under a single matrix, whatever MemAvailable says.
+     */
+    public static int heapWorkers() {
+        long matrix = (long) Argon2Engine.SECURITY_PARAMETERS.m_cost * 1024l;
+        return (int) Math.max(0l, (Runtime.getRuntime().maxMemory() - HEAP_RESERVE) / matrix);
+    }
+
+    /**
+     * Whether hashers keep their matrix on the Java heap, so {@link #heapWorkers()} caps the worker count.
+     */
+    public void setHeapMatrices(boolean heapMatrices) {
+        this.heapMatrices = heapMatrices;
+    }
+
+    /**
+     * Recompute the target worker count. Cheap enough for every miner cycle, but only acts every
+     * {@link #REASSESS_DELAY} unless forced.
+     */
+    public void reassess(boolean force) {
+        long now = System.currentTimeMillis();
+        if (!force && now - lastReassess < REASSESS_DELAY) {
+            return;
+        }
+        lastReassess = now;
+
+        int cores = Runtime.getRuntime().availableProcessors();
+        int allowed = Math.min(maxWorkers, cores);
+
+        long available = availableMemory();
+        lastAvailable = available;
+        if (available >= 0) {
+            // matrices of running workers are already missing from MemAvailable, so count them back in
+            long budget = available - SYSTEM_RESERVE + (long) running.get() * perWorker;
+            allowed = (int) Math.min(allowed, Math.max(0l, budget / perWorker));
+        }
+        if (heapMatrices) {
+            allowed = Math.min(allowed, heapWorkers());
+        }
+        // like suggestWorkers() we never go below one worker, but say so when memory alone would have stopped us
+        boolean starved = allowed < 1;
+        if (starved && !memoryStarved) {
+            System.err.println("Not enough memory for an Argon2 matrix (available " + (available >> 20)
+                    + "MB), mining on one worker anyway");
+        }
+        memoryStarved = starved;
+        allowed = Math.max(1, allowed);
+
+        int thermal = thermalStatus();
+        lastThermal = thermal;
+        if (thermal >= THERMAL_STATUS_CRITICAL) {
+            allowed = Math.min(allowed, 1);
+        } else if (thermal >= THERMAL_STATUS_SEVERE) {
+            allowed = Math.max(1, allowed / 2);
+        } else if (thermal >= THERMAL_STATUS_MODERATE) {
+            allowed = Math.max(1, allowed - 1);
+        }
+
+        target = allowed;
+    }
+
+    /**
+     * @return true if another worker slot may be launched right now
+     */
+    public boolean canGrow() {
+        return running.get() < target;
+    }
+
+    /**
+     * Ask whether the calling worker should stop at this session boundary. A true answer already counts the
+     * worker as gone, so concurrent callers never retire more workers than needed.
+     */
+    public boolean tryRetire() {
+        while (true) {
+            int current = running.get();
+            if (current <= target) {
+                return false;
+            }
+            if (running.compareAndSet(current, current - 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Start a new worker slot running {@code first} and then each of its successors on one thread.
+     */
+    public void launch(final Hasher first) {
+        running.incrementAndGet();
+        try {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    Hasher current = first;
+                    try {
+                        while (true) {
+                            current.run();
+                            if (current.successor == null) {
+                                break;
+                            }
+                            current = current.successor;
+                        }
+                    } finally {
+                        if (!current.retired) {
+                            running.decrementAndGet();
+                        }
+                        if (meter != null) {
+                            meter.forgetLatency();
+                        }
+                    }
+                }
+            });
+        } catch (RuntimeException e) {
+            running.decrementAndGet();
+            throw e;
+        }
+    }
+
+    /**
+     * Change the user cap, e.g. from the auto-tuner. Takes effect on the next {@link #reassess(boolean)}.
+     */
+    public void setMaxWorkers(int maxWorkers) {
+        this.maxWorkers = maxWorkers > 0 ? maxWorkers : Runtime.getRuntime().availableProcessors();
+    }
+
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    public int getTarget() {
+        return target;
+    }
+
+    public int getRunning() {
+        return running.get();
+    }
+
+    public long getLastAvailable() {
+        return lastAvailable;
+    }
+
+    public int getLastThermal() {
+        return lastThermal;
+    }
+
+    public String describe() {
+        return "target " + target + " running " + running.get() + " available " + (lastAvailable >> 20) + "MB thermal "
+                + lastThermal + (memoryStarved ? " memory starved" : "");
+    }
+
+    /**
+     * Whether the last {@link #reassess(boolean)} found too little memory (or Java heap) for even one matrix
+     * and kept a single worker only because of the floor.
+     */
+    public boolean isMemoryStarved() {
+        return memoryStarved;
+    }
+
+    /**
+     * MemAvailable from /proc/meminfo in bytes, -1 if it cannot be read.
+     */
+    static long availableMemory() {
+        try {
+            BufferedReader reader = new BufferedReader(new FileReader("/proc/meminfo"));
+            try {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (line.startsWith("MemAvailable:")) {
+                        String[] parts = line.trim().split("\\s+");
+                        return Long.parseLong(parts[1]) * 1024l;
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+        } catch (Exception e) {
+        }
+        return -1l;
+    }
+
+    /**
+     * PowerManager thermal status (API 29+), looked up reflectively so older SDKs still build. 0 if unknown.
+     */
+    private int thermalStatus() {
+        if (context == null) {
+            return 0;
+        }
+        try {
+            Object power = context.getSystemService(Context.POWER_SERVICE);
+            Method method = power.getClass().getMethod("getCurrentThermalStatus");
+            return (Integer) method.invoke(power);
+        } catch (Throwable e) {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package com.programmerdan.arionum.arionum_miner;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Hashrate over fixed windows, from a ring of per-second hash counts covering the longest window. Each bucket
+ * is tagged with its second, so buckets nobody wrote to for a while read as empty instead of as an old count,
+ * and nothing ever has to be reset on a timer. The second still being filled is left out, so the numbers do
+ * not sag at the start of every second.
+ * <p>
+ * Also keeps recent per-hash latencies of each hasher thread for p50/p95; the key is the thread, not the
+ * hasher, since a hasher's successor keeps its thread. The entry is dropped when the thread's worker slot
+ * ends, see {@link #forgetLatency()}.
+ */
+public class HashrateMeter {
+
+    public static final int INSTANT = 5;
+    public static final int MINUTE = 60;
+    public static final int QUARTER_HOUR = 15 * 60;
+    static final int LATENCY_SAMPLES = 64;
+    private static final int BUCKETS = QUARTER_HOUR + 1;
+
+    private final long[] counts = new long[BUCKETS];
+    private final long[] seconds = new long[BUCKETS];
+    private final ConcurrentHashMap<String, LatencyWindow> latencies = new ConcurrentHashMap<String, LatencyWindow>();
+    private long began;
+
+    public HashrateMeter() {
+        reset();
+    }
+
+    public synchronized void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = 0l;
+            seconds[i] = -1l;
+        }
+        began = System.currentTimeMillis() / 1000l;
+        latencies.clear();
+    }
+
+    /**
+     * Count {@code hashes} as done now.
+     */
+    public synchronized void record(long hashes) {
+        if (hashes <= 0) {
+            return;
+        }
+        long second = System.currentTimeMillis() / 1000l;
+        int bucket = (int) (second % BUCKETS);
+        if (seconds[bucket] != second) {
+            seconds[bucket] = second;
+            counts[bucket] = 0l;
+        }
+        counts[bucket] += hashes;
+    }
+
+    /**
+     * Latency of one hash on the calling hasher thread.
+     */
+    public void recordLatency(long nanosPerHash) {
+        String thread = Thread.currentThread().getName();
+        LatencyWindow window = latencies.get(thread);
+        if (window == null) {
+            LatencyWindow created = new LatencyWindow(LATENCY_SAMPLES);
+            window = latencies.putIfAbsent(thread, created);
+            if (window == null) {
+                window = created;
+            }
+        }
+        window.record(nanosPerHash);
+    }
+
+    /**
+     * Drop the latencies of the calling hasher thread, once it runs no more hashers.
+     */
+    public void forgetLatency() {
+        latencies.remove(Thread.currentThread().getName());
+    }
+
+    /**
+     * Hashes per second over the last {@code window} complete seconds, or since the meter started if that is
+     * more recent.
+     */
+    public synchronized double getRate(int window) {
+        long current = System.currentTimeMillis() / 1000l;
+        long span = Math.min(window, current - began);
+        if (span <= 0) {
+            return 0d;
+        }
+        long hashes = 0l;
+        for (long second = current - span; second < current; second++) {
+            int bucket = (int) (second % BUCKETS);
+            if (seconds[bucket] == second) {
+                hashes += counts[bucket];
+            }
+        }
+        return (double) hashes / (double) span;
+    }
+
+    public double getInstantRate() {
+        return getRate(INSTANT);
+    }
+
+    public double getMinuteRate() {
+        return getRate(MINUTE);
+    }
+
+    public double getQuarterHourRate() {
+        return getRate(QUARTER_HOUR);
+    }
+
+    /**
+     * p50 and p95 per-hash latency in milliseconds of each hasher thread, by thread name.
+     */
+    public Map<String, double[]> getLatencyPercentiles() {
+        TreeMap<String, double[]> result = new TreeMap<String, double[]>();
+        for (Map.Entry<String, LatencyWindow> entry : latencies.entrySet()) {
+            long[] p = entry.getValue().percentiles(50d, 95d);
+            result.put(entry.getKey(), new double[]{p[0] / 1000000d, p[1] / 1000000d});
+        }
+        return result;
+    }
+
+    /**
+     * The pool and UI both parse this, so always with a dot.
+     */
+    public static String format(double rate) {
+        return String.format(Locale.US, "%.3f", rate);
+    }
+
+    public String describe() {
+        StringBuilder line = new StringBuilder(String.format("now %s | 1m %s | 15m %s H/s",
+                format(getInstantRate()), format(getMinuteRate()), format(getQuarterHourRate())));
+        for (Map.Entry<String, double[]> entry : getLatencyPercentiles().entrySet()) {
+            line.append(String.format(Locale.US, "%n  %s per hash p50 %.0fms p95 %.0fms", entry.getKey(),
+                    entry.getValue()[0], entry.getValue()[1]));
+        }
+        return line.toString();
+    }
+}
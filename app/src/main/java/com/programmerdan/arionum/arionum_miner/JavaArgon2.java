@@ -0,0 +1,516 @@
+package com.programmerdan.arionum.arionum_miner;
+
+/**
+ * Argon2i v1.3 in plain Java, for devices where libargon2jni does not load and for running the miner on a
+ * desktop JVM.
+ * <p>
+ * The memory matrix is one long[] of 1 KiB blocks (128 longs each), kept per thread, and every scratch block
+ * and the BLAKE2b state are reused, so a hash allocates nothing. The compression function is written out round
+ * by round with the BlaMka multiply-add inlined instead of looping over index tables. Lanes are filled one
+ * after the other, segment by segment, which gives the same result as the reference's threaded fill.
+ */
+public final class JavaArgon2 {
+
+    public static final int VERSION_13 = 0x13;
+    public static final int TYPE_ARGON2I = 1;
+    static final int BLOCK_LONGS = 128;
+    static final int BLOCK_BYTES = BLOCK_LONGS * 8;
+    static final int SYNC_POINTS = 4;
+    private static final int PREHASH_LENGTH = 64;
+    private static final char[] BASE64 = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/".toCharArray();
+    private static final ThreadLocal<long[]> MATRIX = new ThreadLocal<long[]>();
+
+    private final int timeCost;
+    private final int memoryCost;
+    private final int lanes;
+    private final int hashLength;
+    private final int laneLength;
+    private final int segmentLength;
+    private final int blockCount;
+    private final byte[] secret;
+    private final byte[] associatedData;
+    private final byte[] encodedHead;
+
+    private final Blake2b blake = new Blake2b();
+    private final byte[] prehash = new byte[PREHASH_LENGTH + 8];
+    private final byte[] blockBytes = new byte[BLOCK_BYTES];
+    private final byte[] tag;
+    private final long[] r = new long[BLOCK_LONGS];
+    private final long[] z = new long[BLOCK_LONGS];
+    private final long[] zeroBlock = new long[BLOCK_LONGS];
+    private final long[] inputBlock = new long[BLOCK_LONGS];
+    private final long[] addressBlock = new long[BLOCK_LONGS];
+    private long[] memory;
+
+    public JavaArgon2(int timeCost, int memoryCost, int lanes, int hashLength) {
+        this(timeCost, memoryCost, lanes, hashLength, new byte[0], new byte[0]);
+    }
+
+    /**
+     * @param memoryCost memory in KiB, rounded down to a multiple of {@code 4 * lanes} like the reference
+     * @param secret     optional key K, never part of the encoded form; null or empty for none
+     * @param associatedData optional associated data X; null or empty for none
+     */
+    public JavaArgon2(int timeCost, int memoryCost, int lanes, int hashLength, byte[] secret, byte[] associatedData) {
+        if (timeCost < 1 || lanes < 1 || hashLength < 4 || memoryCost < 8 * lanes) {
+            throw new IllegalArgumentException("Invalid Argon2 parameters t=" + timeCost + " m=" + memoryCost
+                    + " p=" + lanes + " hash=" + hashLength);
+        }
+        this.timeCost = timeCost;
+        this.memoryCost = memoryCost;
+        this.lanes = lanes;
+        this.hashLength = hashLength;
+        this.segmentLength = memoryCost / (lanes * SYNC_POINTS);
+        this.laneLength = segmentLength * SYNC_POINTS;
+        this.blockCount = laneLength * lanes;
+        this.secret = secret != null ? secret : new byte[0];
+        this.associatedData = associatedData != null ? associatedData : new byte[0];
+        this.encodedHead = ("$argon2i$v=" + VERSION_13 + "$m=" + memoryCost + ",t=" + timeCost + ",p=" + lanes + "$")
+                .getBytes();
+        this.tag = new byte[hashLength];
+    }
+
+    public int getMemoryCost() {
+        return memoryCost;
+    }
+
+    public int getLanes() {
+        return lanes;
+    }
+
+    /**
+     * Raw tag of {@code password} and {@code salt}. The returned array is reused by the next hash.
+     */
+    public byte[] hash(byte[] password, byte[] salt) {
+        return hash(password, 0, password.length, salt, 0, salt.length);
+    }
+
+    public byte[] hash(byte[] password, int passwordOffset, int passwordLength, byte[] salt, int saltOffset,
+                       int saltLength) {
+        attachMatrix();
+        initialBlocks(password, passwordOffset, passwordLength, salt, saltOffset, saltLength);
+        for (int pass = 0; pass < timeCost; pass++) {
+            for (int slice = 0; slice < SYNC_POINTS; slice++) {
+                for (int lane = 0; lane < lanes; lane++) {
+                    fillSegment(pass, lane, slice);
+                }
+            }
+        }
+        finish();
+        return tag;
+    }
+
+    /**
+     * Hash and write the PHC encoded form {@code $argon2i$v=19$m=..,t=..,p=..$salt$hash} as ASCII, the same
+     * string libargon2 produces.
+     *
+     * @return bytes written to {@code into}
+     */
+    public int hashEncoded(byte[] password, byte[] salt, byte[] into, int offset) {
+        hash(password, 0, password.length, salt, 0, salt.length);
+        int at = offset;
+        System.arraycopy(encodedHead, 0, into, at, encodedHead.length);
+        at += encodedHead.length;
+        at = base64(salt, salt.length, into, at);
+        into[at++] = '$';
+        at = base64(tag, tag.length, into, at);
+        return at - offset;
+    }
+
+    /**
+     * Length {@link #hashEncoded} writes for a salt of {@code saltLength} bytes.
+     */
+    public int encodedLength(int saltLength) {
+        return encodedHead.length + base64Length(saltLength) + 1 + base64Length(hashLength);
+    }
+
+    /**
+     * Let go of the matrix and free the calling thread's copy; the next hash allocates a new one.
+     */
+    public void release() {
+        memory = null;
+        MATRIX.remove();
+    }
+
+    private void attachMatrix() {
+        long[] current = MATRIX.get();
+        if (current == null || current.length < blockCount * BLOCK_LONGS) {
+            // drop the old matrix before allocating, both will not fit
+            memory = null;
+            MATRIX.remove();
+            current = new long[blockCount * BLOCK_LONGS];
+            MATRIX.set(current);
+        }
+        memory = current;
+    }
+
+    private void initialBlocks(byte[] password, int passwordOffset, int passwordLength, byte[] salt, int saltOffset,
+                               int saltLength) {
+        blake.init(PREHASH_LENGTH);
+        blake.updateInt(lanes);
+        blake.updateInt(hashLength);
+        blake.updateInt(memoryCost);
+        blake.updateInt(timeCost);
+        blake.updateInt(VERSION_13);
+        blake.updateInt(TYPE_ARGON2I);
+        blake.updateInt(passwordLength);
+        blake.update(password, passwordOffset, passwordLength);
+        blake.updateInt(saltLength);
+        blake.update(salt, saltOffset, saltLength);
+        blake.updateInt(secret.length);
+        blake.update(secret, 0, secret.length);
+        blake.updateInt(associatedData.length);
+        blake.update(associatedData, 0, associatedData.length);
+        blake.digest(prehash, 0);
+
+        for (int lane = 0; lane < lanes; lane++) {
+            intToBytes(lane, prehash, PREHASH_LENGTH + 4);
+            for (int block = 0; block < 2; block++) {
+                intToBytes(block, prehash, PREHASH_LENGTH);
+                longHash(prehash, prehash.length, blockBytes, BLOCK_BYTES);
+                int base = (lane * laneLength + block) * BLOCK_LONGS;
+                for (int i = 0; i < BLOCK_LONGS; i++) {
+                    memory[base + i] = bytesToLong(blockBytes, i * 8);
+                }
+            }
+        }
+    }
+
+    private void fillSegment(int pass, int lane, int slice) {
+        int startingIndex = 0;
+        inputBlock[0] = pass;
+        inputBlock[1] = lane;
+        inputBlock[2] = slice;
+        inputBlock[3] = blockCount;
+        inputBlock[4] = timeCost;
+        inputBlock[5] = TYPE_ARGON2I;
+        inputBlock[6] = 0l;
+        if (pass == 0 && slice == 0) {
+            startingIndex = 2;
+            nextAddresses();
+        }
+
+        int currentOffset = lane * laneLength + slice * segmentLength + startingIndex;
+        int previousOffset = currentOffset % laneLength == 0 ? currentOffset + laneLength - 1 : currentOffset - 1;
+        boolean withXor = pass != 0;
+
+        for (int index = startingIndex; index < segmentLength; index++, currentOffset++, previousOffset++) {
+            if (currentOffset % laneLength == 1) {
+                previousOffset = currentOffset - 1;
+            }
+            if (index % BLOCK_LONGS == 0) {
+                nextAddresses();
+            }
+            long pseudoRandom = addressBlock[index % BLOCK_LONGS];
+            int referenceLane = pass == 0 && slice == 0 ? lane : (int) ((pseudoRandom >>> 32) % lanes);
+            int referenceIndex = referenceIndex(pass, slice, index, pseudoRandom & 0xFFFFFFFFl, referenceLane == lane);
+            fillBlock(previousOffset * BLOCK_LONGS, (referenceLane * laneLength + referenceIndex) * BLOCK_LONGS,
+                    currentOffset * BLOCK_LONGS, withXor);
+        }
+    }
+
+    private int referenceIndex(int pass, int slice, int index, long pseudoRandom, boolean sameLane) {
+        long areaSize;
+        if (pass == 0) {
+            if (slice == 0) {
+                areaSize = index - 1;
+            } else if (sameLane) {
+                areaSize = slice * segmentLength + index - 1;
+            } else {
+                areaSize = slice * segmentLength + (index == 0 ? -1 : 0);
+            }
+        } else if (sameLane) {
+            areaSize = laneLength - segmentLength + index - 1;
+        } else {
+            areaSize = laneLength - segmentLength + (index == 0 ? -1 : 0);
+        }
+        long relative = (pseudoRandom * pseudoRandom) >>> 32;
+        relative = areaSize - 1 - ((areaSize * relative) >>> 32);
+        long start = pass != 0 && slice != SYNC_POINTS - 1 ? (slice + 1) * segmentLength : 0;
+        return (int) ((start + relative) % laneLength);
+    }
+
+    private void nextAddresses() {
+        inputBlock[6]++;
+        compress(zeroBlock, 0, inputBlock, 0, addressBlock, 0, false);
+        compress(zeroBlock, 0, addressBlock, 0, addressBlock, 0, false);
+    }
+
+    private void fillBlock(int previous, int reference, int next, boolean withXor) {
+        compress(memory, previous, memory, reference, memory, next, withXor);
+    }
+
+    /**
+     * G: next = P(x ^ y) ^ x ^ y, additionally ^ next from the second pass on. {@code next} may alias
+     * {@code y}.
+     */
+    private void compress(long[] x, int xOffset, long[] y, int yOffset, long[] next, int nextOffset,
+                          boolean withXor) {
+        long[] r = this.r;
+        long[] z = this.z;
+        for (int i = 0; i < BLOCK_LONGS; i++) {
+            r[i] = x[xOffset + i] ^ y[yOffset + i];
+        }
+        if (withXor) {
+            for (int i = 0; i < BLOCK_LONGS; i++) {
+                z[i] = r[i] ^ next[nextOffset + i];
+            }
+        } else {
+            System.arraycopy(r, 0, z, 0, BLOCK_LONGS);
+        }
+        for (int i = 0; i < 8; i++) {
+            int b = 16 * i;
+            round(r, b, b + 1, b + 2, b + 3, b + 4, b + 5, b + 6, b + 7,
+                    b + 8, b + 9, b + 10, b + 11, b + 12, b + 13, b + 14, b + 15);
+        }
+        for (int i = 0; i < 8; i++) {
+            int b = 2 * i;
+            round(r, b, b + 1, b + 16, b + 17, b + 32, b + 33, b + 48, b + 49,
+                    b + 64, b + 65, b + 80, b + 81, b + 96, b + 97, b + 112, b + 113);
+        }
+        for (int i = 0; i < BLOCK_LONGS; i++) {
+            next[nextOffset + i] = z[i] ^ r[i];
+        }
+    }
+
+    private static void round(long[] v, int v0, int v1, int v2, int v3, int v4, int v5, int v6, int v7,
+                              int v8, int v9, int v10, int v11, int v12, int v13, int v14, int v15) {
+        mix(v, v0, v4, v8, v12);
+        mix(v, v1, v5, v9, v13);
+        mix(v, v2, v6, v10, v14);
+        mix(v, v3, v7, v11, v15);
+        mix(v, v0, v5, v10, v15);
+        mix(v, v1, v6, v11, v12);
+        mix(v, v2, v7, v8, v13);
+        mix(v, v3, v4, v9, v14);
+    }
+
+    /**
+     * BLAKE2b's G with the BlaMka multiply: a + b + 2 * lo32(a) * lo32(b).
+     */
+    private static void mix(long[] v, int ia, int ib, int ic, int id) {
+        long a = v[ia];
+        long b = v[ib];
+        long c = v[ic];
+        long d = v[id];
+        a = a + b + 2 * (a & 0xFFFFFFFFl) * (b & 0xFFFFFFFFl);
+        d = Long.rotateRight(d ^ a, 32);
+        c = c + d + 2 * (c & 0xFFFFFFFFl) * (d & 0xFFFFFFFFl);
+        b = Long.rotateRight(b ^ c, 24);
+        a = a + b + 2 * (a & 0xFFFFFFFFl) * (b & 0xFFFFFFFFl);
+        d = Long.rotateRight(d ^ a, 16);
+        c = c + d + 2 * (c & 0xFFFFFFFFl) * (d & 0xFFFFFFFFl);
+        b = Long.rotateRight(b ^ c, 63);
+        v[ia] = a;
+        v[ib] = b;
+        v[ic] = c;
+        v[id] = d;
+    }
+
+    private void finish() {
+        long[] last = r;
+        int lastOffset = (laneLength - 1) * BLOCK_LONGS;
+        System.arraycopy(memory, lastOffset, last, 0, BLOCK_LONGS);
+        for (int lane = 1; lane < lanes; lane++) {
+            int offset = lastOffset + lane * laneLength * BLOCK_LONGS;
+            for (int i = 0; i < BLOCK_LONGS; i++) {
+                last[i] ^= memory[offset + i];
+            }
+        }
+        for (int i = 0; i < BLOCK_LONGS; i++) {
+            longToBytes(last[i], blockBytes, i * 8);
+        }
+        longHash(blockBytes, BLOCK_BYTES, tag, hashLength);
+    }
+
+    /**
+     * H': BLAKE2b stretched to {@code outLength} bytes by chaining 64 byte digests and keeping 32 bytes of each.
+     */
+    private void longHash(byte[] input, int inputLength, byte[] out, int outLength) {
+        if (outLength <= Blake2b.MAX_LENGTH) {
+            blake.init(outLength);
+            blake.updateInt(outLength);
+            blake.update(input, 0, inputLength);
+            blake.digest(out, 0);
+            return;
+        }
+        byte[] chain = blake.chain;
+        blake.init(Blake2b.MAX_LENGTH);
+        blake.updateInt(outLength);
+        blake.update(input, 0, inputLength);
+        blake.digest(chain, 0);
+        System.arraycopy(chain, 0, out, 0, 32);
+        int at = 32;
+        while (outLength - at > Blake2b.MAX_LENGTH) {
+            blake.init(Blake2b.MAX_LENGTH);
+            blake.update(chain, 0, Blake2b.MAX_LENGTH);
+            blake.digest(chain, 0);
+            System.arraycopy(chain, 0, out, at, 32);
+            at += 32;
+        }
+        blake.init(outLength - at);
+        blake.update(chain, 0, Blake2b.MAX_LENGTH);
+        blake.digest(out, at);
+    }
+
+    private static int base64Length(int length) {
+        return (length * 4 + 2) / 3;
+    }
+
+    /**
+     * Standard alphabet without padding, as in the PHC string format.
+     */
+    private static int base64(byte[] data, int length, byte[] into, int at) {
+        int i = 0;
+        for (; i + 2 < length; i += 3) {
+            int bits = (data[i] & 0xff) << 16 | (data[i + 1] & 0xff) << 8 | (data[i + 2] & 0xff);
+            into[at++] = (byte) BASE64[bits >>> 18];
+            into[at++] = (byte) BASE64[(bits >>> 12) & 0x3f];
+            into[at++] = (byte) BASE64[(bits >>> 6) & 0x3f];
+            into[at++] = (byte) BASE64[bits & 0x3f];
+        }
+        if (length - i == 1) {
+            int bits = (data[i] & 0xff) << 16;
+            into[at++] = (byte) BASE64[bits >>> 18];
+            into[at++] = (byte) BASE64[(bits >>> 12) & 0x3f];
+        } else if (length - i == 2) {
+            int bits = (data[i] & 0xff) << 16 | (data[i + 1] & 0xff) << 8;
+            into[at++] = (byte) BASE64[bits >>> 18];
+            into[at++] = (byte) BASE64[(bits >>> 12) & 0x3f];
+            into[at++] = (byte) BASE64[(bits >>> 6) & 0x3f];
+        }
+        return at;
+    }
+
+    static void intToBytes(int value, byte[] into, int at) {
+        into[at] = (byte) value;
+        into[at + 1] = (byte) (value >>> 8);
+        into[at + 2] = (byte) (value >>> 16);
+        into[at + 3] = (byte) (value >>> 24);
+    }
+
+    static void longToBytes(long value, byte[] into, int at) {
+        for (int i = 0; i < 8; i++) {
+            into[at + i] = (byte) (value >>> (8 * i));
+        }
+    }
+
+    static long bytesToLong(byte[] from, int at) {
+        long value = 0l;
+        for (int i = 7; i >= 0; i--) {
+            value = (value << 8) | (from[at + i] & 0xffl);
+        }
+        return value;
+    }
+
+    /**
+     * Unkeyed BLAKE2b, reusable through {@link #init(int)}. Neither the JDK nor Android ship it.
+     */
+    static final class Blake2b {
+        static final int MAX_LENGTH = 64;
+        private static final int BLOCK = 128;
+        private static final long[] IV = {
+                0x6a09e667f3bcc908l, 0xbb67ae8584caa73bl, 0x3c6ef372fe94f82bl, 0xa54ff53a5f1d36f1l,
+                0x510e527fade682d1l, 0x9b05688c2b3e6c1fl, 0x1f83d9abfb41bd6bl, 0x5be0cd19137e2179l
+        };
+        private static final byte[][] SIGMA = {
+                {0, 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15},
+                {14, 10, 4, 8, 9, 15, 13, 6, 1, 12, 0, 2, 11, 7, 5, 3},
+                {11, 8, 12, 0, 5, 2, 15, 13, 10, 14, 3, 6, 7, 1, 9, 4},
+                {7, 9, 3, 1, 13, 12, 11, 14, 2, 6, 5, 10, 4, 0, 15, 8},
+                {9, 0, 5, 7, 2, 4, 10, 15, 14, 1, 11, 12, 6, 8, 3, 13},
+                {2, 12, 6, 10, 0, 11, 8, 3, 4, 13, 7, 5, 15, 14, 1, 9},
+                {12, 5, 1, 15, 14, 13, 4, 10, 0, 7, 6, 3, 9, 2, 8, 11},
+                {13, 11, 7, 14, 12, 1, 3, 9, 5, 0, 15, 4, 8, 6, 2, 10},
+                {6, 15, 14, 9, 11, 3, 0, 8, 12, 2, 13, 7, 1, 4, 10, 5},
+                {10, 2, 8, 4, 7, 6, 1, 5, 15, 11, 9, 14, 3, 12, 13, 0}
+        };
+
+        final byte[] chain = new byte[MAX_LENGTH];
+        private final long[] h = new long[8];
+        private final long[] v = new long[16];
+        private final long[] m = new long[16];
+        private final byte[] buffer = new byte[BLOCK];
+        private final byte[] word = new byte[4];
+        private int buffered;
+        private long counter;
+        private int length;
+
+        void init(int length) {
+            this.length = length;
+            System.arraycopy(IV, 0, h, 0, 8);
+            h[0] ^= 0x01010000l ^ length;
+            buffered = 0;
+            counter = 0l;
+        }
+
+        void updateInt(int value) {
+            intToBytes(value, word, 0);
+            update(word, 0, 4);
+        }
+
+        void update(byte[] data, int offset, int count) {
+            while (count > 0) {
+                if (buffered == BLOCK) {
+                    // only compressed once more input arrives, the last block needs the final flag
+                    counter += BLOCK;
+                    compress(buffer, 0, false);
+                    buffered = 0;
+                }
+                int take = Math.min(count, BLOCK - buffered);
+                System.arraycopy(data, offset, buffer, buffered, take);
+                buffered += take;
+                offset += take;
+                count -= take;
+            }
+        }
+
+        void digest(byte[] out, int offset) {
+            counter += buffered;
+            for (int i = buffered; i < BLOCK; i++) {
+                buffer[i] = 0;
+            }
+            compress(buffer, 0, true);
+            for (int i = 0; i < length; i++) {
+                out[offset + i] = (byte) (h[i >> 3] >>> (8 * (i & 7)));
+            }
+        }
+
+        private void compress(byte[] block, int offset, boolean last) {
+            for (int i = 0; i < 16; i++) {
+                m[i] = bytesToLong(block, offset + i * 8);
+            }
+            System.arraycopy(h, 0, v, 0, 8);
+            System.arraycopy(IV, 0, v, 8, 8);
+            v[12] ^= counter;
+            if (last) {
+                v[14] = ~v[14];
+            }
+            for (int round = 0; round < 12; round++) {
+                byte[] s = SIGMA[round % 10];
+                g(0, 4, 8, 12, m[s[0]], m[s[1]]);
+                g(1, 5, 9, 13, m[s[2]], m[s[3]]);
+                g(2, 6, 10, 14, m[s[4]], m[s[5]]);
+                g(3, 7, 11, 15, m[s[6]], m[s[7]]);
+                g(0, 5, 10, 15, m[s[8]], m[s[9]]);
+                g(1, 6, 11, 12, m[s[10]], m[s[11]]);
+                g(2, 7, 8, 13, m[s[12]], m[s[13]]);
+                g(3, 4, 9, 14, m[s[14]], m[s[15]]);
+            }
+            for (int i = 0; i < 8; i++) {
+                h[i] ^= v[i] ^ v[i + 8];
+            }
+        }
+
+        private void g(int a, int b, int c, int d, long x, long y) {
+            v[a] = v[a] + v[b] + x;
+            v[d] = Long.rotateRight(v[d] ^ v[a], 32);
+            v[c] = v[c] + v[d];
+            v[b] = Long.rotateRight(v[b] ^ v[c], 24);
+            v[a] = v[a] + v[b] + y;
+            v[d] = Long.rotateRight(v[d] ^ v[a], 16);
+            v[c] = v[c] + v[d];
+            v[b] = Long.rotateRight(v[b] ^ v[c], 63);
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.programmerdan.arionum.arionum_miner;
+
+import java.security.SecureRandom;
+
+/**
+ * {@link JavaArgon2} with the miner's parameters. Salts come from one SecureRandom per engine.
+ */
+final class JavaArgon2Engine implements Argon2Engine {
+
+    static final int SALT_LENGTH = 16;
+
+    private final JavaArgon2 argon2;
+    private final SecureRandom random = new SecureRandom();
+    private final byte[] salt = new byte[SALT_LENGTH];
+    private final byte[] encoded;
+    private int length;
+
+    JavaArgon2Engine() {
+        argon2 = new JavaArgon2(Argon2Engine.SECURITY_PARAMETERS.t_cost, Argon2Engine.SECURITY_PARAMETERS.m_cost,
+                Argon2Engine.SECURITY_PARAMETERS.parallelism, 32);
+        encoded = new byte[argon2.encodedLength(SALT_LENGTH)];
+    }
+
+    @Override
+    public void hash(byte[] password) {
+        random.nextBytes(salt);
+        length = argon2.hashEncoded(password, salt, encoded, 0);
+    }
+
+    @Override
+    public int append(HashBase base) {
+        return base.append(encoded, length);
+    }
+
+    @Override
+    public void release() {
+        argon2.release();
+    }
+
+    @Override
+    public String getName() {
+        return "java";
+    }
+}
@@ -0,0 +1,70 @@
+package com.programmerdan.arionum.arionum_miner;
+
+import java.util.Arrays;
+
+/**
+ * The last {@code capacity} latency samples, for cheap percentiles in periodic reports. Recording is a single
+ * array store; sorting only happens when a percentile is asked for.
+ */
+public class LatencyWindow {
+
+    private final long[] samples;
+    private int next;
+    private int count;
+
+    public LatencyWindow(int capacity) {
+        this.samples = new long[capacity];
+    }
+
+    public synchronized void record(long value) {
+        samples[next] = value;
+        next = (next + 1) % samples.length;
+        if (count < samples.length) {
+            count++;
+        }
+    }
+
+    public synchronized int size() {
+        return count;
+    }
+
+    public synchronized void clear() {
+        next = 0;
+        count = 0;
+    }
+
+    /**
+     * @param percentile 0 to 100
+     * @return nearest-rank percentile of the window, -1 if empty
+     */
+    public long percentile(double percentile) {
+        long[] sorted = snapshot();
+        return percentile(sorted, percentile);
+    }
+
+    /**
+     * Several percentiles from one sort, in the order asked for.
+     */
+    public long[] percentiles(double... percentiles) {
+        long[] sorted = snapshot();
+        long[] values = new long[percentiles.length];
+        for (int i = 0; i < percentiles.length; i++) {
+            values[i] = percentile(sorted, percentiles[i]);
+        }
+        return values;
+    }
+
+    private synchronized long[] snapshot() {
+        long[] sorted = Arrays.copyOf(samples, count);
+        Arrays.sort(sorted);
+        return sorted;
+    }
+
+    private static long percentile(long[] sorted, double percentile) {
+        if (sorted.length == 0) {
+            return -1l;
+        }
+        int rank = (int) Math.ceil(percentile / 100d * sorted.length);
+        return sorted[Math.max(0, Math.min(sorted.length - 1, rank - 1))];
+    }
+}
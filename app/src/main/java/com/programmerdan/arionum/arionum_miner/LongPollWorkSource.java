@@ -0,0 +1,89 @@
+package com.programmerdan.arionum.arionum_miner;
+
+import java.io.IOException;
+import java.net.URLEncoder;
+
+/**
+ * Long-poll for pools that support it: the request carries the block we already have and the node holds it
+ * until the block changes or {@link #HOLD_SECONDS} pass, so a new block reaches us as soon as the node has it
+ * and an idle miner makes one request per hold period.
+ * <p>
+ * An answer only counts as held when the response itself shows it: the block changed, or the same block came
+ * back after most of the hold period. A node that ignores the parameters answers with the same block early,
+ * however slow it is, and after {@link #MAX_IGNORED} such answers in a row this falls back to plain polling.
+ * Until an answer was held, requests are spaced like plain polling, and never closer than {@link #MIN_DELAY}.
+ */
+public class LongPollWorkSource extends PollingWorkSource {
+
+    static final int HOLD_SECONDS = 60;
+    static final int MAX_IGNORED = 3;
+    /**
+     * Answers with an unchanged block faster than this were not held by the node.
+     */
+    static final long HELD_THRESHOLD = HOLD_SECONDS * 1000l - 5000l;
+    /**
+     * Pause between held requests, so a node that answers instantly cannot spin the work loop.
+     */
+    static final long MIN_DELAY = 500l;
+
+    private int ignored;
+    private volatile boolean supported = true;
+    private volatile boolean held;
+    private long lastRoundTrip;
+
+    @Override
+    public WorkInfo fetch(String infoUrl, WorkInfo current) throws IOException {
+        if (!supported || current == null) {
+            WorkInfo latest = get(infoUrl, READ_TIMEOUT);
+            synchronized (this) {
+                held = false;
+                lastRoundTrip = latest.responseTime();
+            }
+            return latest;
+        }
+        String url = infoUrl + "&longpoll=" + HOLD_SECONDS + "&block=" + URLEncoder.encode(current.block, "UTF-8");
+        WorkInfo latest = get(url, READ_TIMEOUT + HOLD_SECONDS * 1000);
+        synchronized (this) {
+            boolean changed = !latest.sameBlock(current);
+            held = changed || latest.responseTime() >= HELD_THRESHOLD;
+            if (!held) {
+                lastRoundTrip = latest.responseTime();
+                if (++ignored >= MAX_IGNORED) {
+                    supported = false;
+                    System.out.println("Node does not hold info requests, falling back to polling");
+                }
+            } else if (!changed) {
+                ignored = 0;
+            }
+        }
+        return latest;
+    }
+
+    @Override
+    public long nextDelay(WorkInfo previous, WorkInfo latest, boolean failed) {
+        if (failed || !supported || !held) {
+            return Miner.UPDATING_DELAY;
+        }
+        return MIN_DELAY;
+    }
+
+    /**
+     * A held request is answered the moment the node sees the block, so only the way back counts.
+     */
+    @Override
+    public synchronized long changeLatency(WorkInfo previous, WorkInfo latest) {
+        if (held && lastRoundTrip > 0) {
+            return lastRoundTrip / 2l;
+        }
+        return super.changeLatency(previous, latest);
+    }
+
+    public boolean isSupported() {
+        return supported;
+    }
+
+    @Override
+    public String getName() {
+        return supported ? "longpoll" : "longpoll(poll)";
+    }
+}
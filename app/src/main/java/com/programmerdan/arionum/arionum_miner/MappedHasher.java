@@ -1,38 +1,33 @@
 package com.programmerdan.arionum.arionum_miner;
 
 
-import java.math.BigInteger;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
-import java.security.SecureRandom;
-
-import de.wuthoehle.argon2jni.Argon2;
-import de.wuthoehle.argon2jni.EncodedArgon2Result;
+import java.util.concurrent.locks.LockSupport;
 
 public class MappedHasher extends Hasher {
 
+    static final long NO_WORK_PARK = 100000000l;
 
-
-    private final Argon2 context;
-    private SecureRandom random = new SecureRandom();
-    private String rawHashBase;
-    private byte[] nonce = new byte[32];
-    private String rawNonce;
-    private byte[] hashBaseBuffer;
-    private byte[] fullHashBaseBuffer;
-    private Miner.callbackMiner caller;
-    private String hashBase_Done = "";
+    private final Argon2Engine engine;
+    private final byte[] digest = new byte[HashBase.DIGEST_LENGTH];
+    private HashBase hashBase;
 
     public MappedHasher(Miner parent, String id, long target, long maxTime) {
+        this(parent, id, target, maxTime, false);
+    }
+
+    /**
+     * @param javaArgon2 hash with {@link JavaArgon2} instead of libargon2jni
+     */
+    public MappedHasher(Miner parent, String id, long target, long maxTime, boolean javaArgon2) {
         super(parent, id, target, maxTime);
-        genNonce();
-        context = new Argon2(Argon2.SecurityParameterTemplates.OFFICIAL_DEFAULT, 32, Argon2.TypeIdentifiers.ARGON2I, Argon2.VersionIdentifiers.VERSION_13);
+        engine = javaArgon2 ? new JavaArgon2Engine() : new NativeArgon2Engine();
     }
 
     @Override
-    public void update(BigInteger difficulty, String data, long limit, String publicKey, long blockHeight, Miner.callbackMiner caller) {
-        super.update(difficulty, data, limit, publicKey, blockHeight, caller);
-        this.caller = caller;
+    protected void adopt(MiningWork next) {
+        super.adopt(next);
         genNonce();
     }
 
@@ -43,34 +38,21 @@ public class MappedHasher extends Hasher {
 
 
     int argos = 0;
+    /**
+     * Lay out a hash base for new work, or only swap the nonce when the work is the same.
+     */
     private void genNonce() {
         if (caller != null)
             caller.onDurChange("Generating Nonce...");
-        String encNonce = null;
-        StringBuilder hashBase;
-        random.nextBytes(nonce);
-        encNonce = new String(android.util.Base64.encode(nonce, android.util.Base64.DEFAULT));
-        char[] nonceChar = encNonce.toCharArray();
-        StringBuilder nonceSb = new StringBuilder(encNonce.length());
-
-        for (char ar : nonceChar) {
-            if (ar >= '0' && ar <= '9' || ar >= 'a' && ar <= 'z' || ar >= 'A' && ar <= 'Z') {
-                nonceSb.append(ar);
-            }
+        if (this.work == null) {
+            return;
+        }
+        NonceGenerator nonces = NonceGenerator.forCurrentThread();
+        if (this.hashBase != null && this.hashBase.work == this.work) {
+            this.hashBase.patchNonce(nonces);
+        } else {
+            this.hashBase = this.work.newBase(nonces);
         }
-
-        hashBase = new StringBuilder(hashBufferSize);
-        hashBase.append(this.publicKey).append("-");
-        hashBase.append(nonceSb).append("-");
-        hashBase.append(this.data).append("-");
-        hashBase.append(this.difficultyString);
-
-        hashBase_Done = hashBase.toString();
-        rawNonce = nonceSb.toString();
-        rawHashBase = hashBase.toString();
-        hashBaseBuffer = rawHashBase.getBytes();
-        fullHashBaseBuffer = new byte[hashBaseBuffer.length + 32];
-        System.arraycopy(hashBaseBuffer, 0, fullHashBaseBuffer, 0, hashBaseBuffer.length);
     }
 
     @Override
@@ -79,7 +61,6 @@ public class MappedHasher extends Hasher {
         this.hashBegin = System.currentTimeMillis();
 
         this.parent.hasherCount.getAndIncrement();
-        byte[] byteBase = null;
 
         MessageDigest sha512 = null;
         try {
@@ -104,53 +85,69 @@ public class MappedHasher extends Hasher {
 
         try {
             boolean bound = true;
-            while (doLoop && active) {
+            while (doLoop && active && !retired && !parent.isOutdated(this)) {
+                long paused = parent.awaitRunning();
+                if (paused < 0) {
+                    break;
+                }
+                // time spent paused is not hashing time
+                this.hashBegin += paused;
                 statCycle = System.currentTimeMillis();
                 statBegin = System.nanoTime();
+                if (!refreshWork()) {
+                    LockSupport.parkNanos(this, NO_WORK_PARK);
+                    continue;
+                }
                 try {
+                    MiningWork used = this.work;
+                    HashBase base = this.hashBase;
+
                     statArgonBegin = System.nanoTime();
-                    String base = hashBase_Done;
-                    EncodedArgon2Result result = context.argon2_hash(base.getBytes());
+                    engine.hash(base.prefix);
+                    statArgonEnd = System.nanoTime();
+                    this.argonTime += statArgonEnd - statArgonBegin;
+                    this.nonArgonTime += statArgonBegin - statBegin;
                     argos++;
 
-                    String hash = result.getEncoded();
-                    String hashed_done = base + hash;
-
-                    fullHashBaseBuffer = hashed_done.getBytes();
-                    statShaBegin = System.nanoTime();
+                    if (isStale(used)) {
+                        // the block changed while Argon2 ran, this cannot be a share any more
+                        this.staleHashes++;
+                        this.hashCount++;
+                    } else {
+                        int length = engine.append(base);
+
+                        statShaBegin = System.nanoTime();
+                        base.digest(sha512, length, digest);
+                        statShaEnd = System.nanoTime();
+
+                        long finalDuration = Duration.compute(digest, this.difficultyValue, this.difficulty);
+                        Miner.limitDuration = this.limit;
+                        caller.onDurChange(finalDuration + "");
+
+                        if (finalDuration <= this.limit) {
+                            Miner.finalDuration = Long.MAX_VALUE;
+                            System.out.println("SUBMITTING!!");
+                            parent.submit(used, base.nonce(), base.encoded(length), finalDuration, this.getType());
+                            if (finalDuration <= 240) {
+                                finds++;
+                                caller.onFind(finalDuration + "");
+                                System.out.println("FOUND +1 = FOUND");
+                            } else {
+                                shares++;
+                                System.out.println("FOUND +1 = SHARE");
+                                caller.onShare(finalDuration + "");
+                            }
+                            argos = 0;
+                            genNonce();
+                        }
+                        hashCount++;
 
-                    byteBase = sha512.digest(fullHashBaseBuffer);
-                    for (int i = 0; i < 5; i++) {
-                        byteBase = sha512.digest(byteBase);
-                    }
-                    statShaEnd = System.nanoTime();
-
-                    StringBuilder duration = new StringBuilder(25);
-                    duration.append(byteBase[10] & 0xFF).append(byteBase[15] & 0xFF).append(byteBase[20] & 0xFF)
-                            .append(byteBase[23] & 0xFF).append(byteBase[31] & 0xFF).append(byteBase[40] & 0xFF)
-                            .append(byteBase[45] & 0xFF).append(byteBase[55] & 0xFF);
-
-                    long finalDuration = new BigInteger(duration.toString()).divide(this.difficulty).longValue();
-                    Miner.limitDuration = this.limit;
-                    caller.onDurChange(finalDuration + "");
-
-                    if (finalDuration <= this.limit) {
-                        Miner.finalDuration = Long.MAX_VALUE;
-                        System.out.println("SUBMITTING!!");
-                        parent.submit(rawNonce, hash, finalDuration, this.difficulty.longValue(), this.getType());
-                        if (finalDuration <= 240) {
-                            finds++;
-                            caller.onFind(finalDuration + "");
-                            System.out.println("FOUND +1 = FOUND");
-                        } else {
-                            shares++;
-                            System.out.println("FOUND +1 = SHARE");
-                            caller.onShare(finalDuration + "");
+                        if (finalDuration < this.bestDL) {
+                            this.bestDL = finalDuration;
                         }
-                        argos = 0;
-                        genNonce();
+                        this.shaTime += statShaEnd - statShaBegin;
                     }
-                    if (argos > 400) {
+                    if (argos > this.recycleAfter) {
                         argos = 0;
                         System.out.println("RECREATE");
                         doLoop = false;
@@ -160,16 +157,10 @@ public class MappedHasher extends Hasher {
                         completeSession();
                         this.loopTime = 0l;
                     }
-                    hashCount++;
                     statEnd = System.nanoTime();
-
-                    if (finalDuration < this.bestDL) {
-                        this.bestDL = finalDuration;
-                    }
-
-                    this.argonTime += statArgonEnd - statArgonBegin;
-                    this.shaTime += statShaEnd - statShaBegin;
-                    this.nonArgonTime += (statArgonBegin - statBegin) + (statEnd - statArgonEnd);
+                    this.nonArgonTime += statEnd - statArgonEnd;
+                    parent.getHashrateMeter().recordLatency(statEnd - statBegin);
+                    publish();
 
                 } catch (Exception e) {
                     System.err.println("WORKER FAILED! " + e.getMessage() + " at " + e.getStackTrace()[0]);
@@ -194,6 +185,9 @@ public class MappedHasher extends Hasher {
             e.printStackTrace();
         }
 
+        if (!parent.active) {
+            engine.release();
+        }
         System.gc();
         Runtime.getRuntime().gc();
         this.hashEnd = System.currentTimeMillis();
@@ -201,8 +195,11 @@ public class MappedHasher extends Hasher {
         this.parent.hasherCount.decrementAndGet();
     }
 
-
     public String getType() {
         return "CPU";
     }
-}
\ No newline at end of file
+
+    public String getEngine() {
+        return engine.getName();
+    }
+}
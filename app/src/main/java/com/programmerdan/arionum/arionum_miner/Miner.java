@@ -1,32 +1,22 @@
 package com.programmerdan.arionum.arionum_miner;
 
-import android.os.AsyncTask;
 import android.os.Handler;
 
 import com.afollestad.materialdialogs.MaterialDialog;
 
-import org.json.JSONException;
-import org.json.JSONObject;
-
-import java.io.BufferedReader;
 import java.io.DataOutputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
 import java.lang.Thread.UncaughtExceptionHandler;
 import java.math.BigInteger;
 import java.net.HttpURLConnection;
 import java.net.URL;
-import java.net.URLConnection;
 import java.net.URLEncoder;
-import java.util.LinkedList;
+import java.util.Iterator;
 import java.util.TreeSet;
-import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
-import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
@@ -47,6 +37,17 @@ public class Miner implements UncaughtExceptionHandler {
     private static final long MIN_SESSION_LENGTH = 5000l;
     private static final long MAX_SESSION_LENGTH = 14000l;
     private static final long REBALANCE_DELAY = 300000l;
+    private static final long REASSESS_PERIOD = 4l * 60l * 60l * 1000l;
+    private static final int TUNE_WORKERS = 0;
+    private static final int TUNE_PIPELINE = 1;
+    private static final int TUNE_SESSION = 2;
+    private static final int TUNE_DONE = 3;
+    private static final int TUNE_REASSESS = 4;
+    private static final long PAUSE_POLL = 250l;
+    private static final long FIRST_RETRY_DELAY = 5000l;
+    private static final int STATE_RUNNING = 0;
+    private static final int STATE_PAUSED = 1;
+    private static final int STATE_DRAINING = 2;
     public static long finalDuration = Long.MAX_VALUE;
     public static long limitDuration = 0;
     private static callbackMiner callbackMiner;
@@ -59,11 +60,13 @@ public class Miner implements UncaughtExceptionHandler {
     protected final AtomicLong blockShares;
     protected final AtomicLong blockFinds;
     protected final long wallClockBegin;
-    private final ExecutorService submitters;
-    private final ConcurrentLinkedQueue<HasherStats> deadWorkerSociety;
+    private final ShareSubmitter submitter;
+    private final StatsBoard statsBoard;
+    private final StatsBoard.Window refreshWindow = new StatsBoard.Window(0l);
+    private final StatsBoard.Window[] statsWindows = {new StatsBoard.Window(StatsBoard.SECOND),
+            new StatsBoard.Window(StatsBoard.QUARTER_MINUTE), new StatsBoard.Window(StatsBoard.FIVE_MINUTES)};
     private final AtomicLong deadWorkers;
-    private final ConcurrentHashMap<String, Long> deadWorkerLives;
-    private final ExecutorService hashers;
+    private final HasherScheduler hashers;
     private final ConcurrentHashMap<String, Hasher> workers;
     private final ExecutorService updaters;
     private final AtomicLong updateTimeAvg;
@@ -72,18 +75,12 @@ public class Miner implements UncaughtExceptionHandler {
     private final AtomicLong updateParseTimeAvg;
     private final AtomicLong updateParseTimeMax;
     private final AtomicLong updateParseTimeMin;
-    private final AtomicLong submitTimeAvg;
-    private final AtomicLong submitTimeMax;
-    private final AtomicLong submitTimeMin;
-    private final AtomicLong submitParseTimeAvg;
-    private final AtomicLong submitParseTimeMax;
-    private final AtomicLong submitParseTimeMin;
     private final ExecutorService stats;
-    protected boolean active = false;
+    protected volatile boolean active = false;
     protected boolean colors = false;
     private int maxHashers;
-    private long hashesPerSession = 10l;
-    private long sessionLength = 5000l;
+    private final SessionController sessions = new SessionController(MIN_SESSION_LENGTH, MIN_SESSION_LENGTH,
+            MAX_SESSION_LENGTH, MIN_HASHES_PER_SESSION, 10l);
     private long lastRebalance;
     private double lastRebalanceHashRate = Double.MAX_VALUE;
     private double lastRebalanceTiC = 0.0d;
@@ -99,14 +96,15 @@ public class Miner implements UncaughtExceptionHandler {
     private BigInteger difficulty;
     private long limit;
     private long height;
+    private volatile MiningWork work;
+    private long workEpoch;
+    private final AtomicLong staleHashes = new AtomicLong();
     private long lastBlockUpdate;
-    private AtomicLong lastSpeed;
-    private AtomicLong speedAccrue;
-    private long lastUpdate;
+    private final HashrateMeter hashrate = new HashrateMeter();
+    private volatile long lastUpdate;
     private long lastReport;
     private int cycles;
     private int supercycles;
-    private int skips;
     private int failures;
     private int updates;
     private Profile activeProfile;
@@ -117,12 +115,28 @@ public class Miner implements UncaughtExceptionHandler {
     private long profilesTested;
     private long nextReassess;
     private Profile toReassess;
+    private int tuneStage;
+    private PowerProxy power;
+    private boolean powerStarted;
+    private boolean powerInMilliamps;
+    private volatile int generation;
     private String statsHost;
     private String statsInvoke;
     private String statsToken;
     private boolean post;
-    private ConcurrentHashMap<String, HasherStats> statsStage;
-    private ConcurrentLinkedQueue<HasherStats> statsReport;
+
+    private volatile WorkSource workSource;
+    private volatile WorkInfo workInfo;
+    private final AtomicLong workRequests = new AtomicLong();
+    private final AtomicLong blockChanges = new AtomicLong();
+    private final LatencyWindow blockLatency = new LatencyWindow(64);
+    private final AtomicBoolean firstRun = new AtomicBoolean(true);
+    private final AtomicBoolean sentSpeed = new AtomicBoolean(false);
+    private volatile boolean pipelined;
+    private HashPipeline pipeline;
+
+    private final Object stateLock = new Object();
+    private volatile int state = STATE_RUNNING;
 
     boolean sendSpeed = false;
 
@@ -131,15 +145,22 @@ public class Miner implements UncaughtExceptionHandler {
     }
 
     public static Miner main(callbackMiner callback, String pool, String hashers) {
-        Miner miner = null;
+        Miner miner = create(callback, pool, hashers);
+        miner.start();
+        return miner;
+    }
+
+    /**
+     * Build a miner without starting it, so the caller holds a reference for pause/resume/drain while
+     * {@link #start()} blocks.
+     */
+    public static Miner create(callbackMiner callback, String pool, String hashers) {
         callbackMiner = callback;
         int defaultHashers = Runtime.getRuntime().availableProcessors();
         if (!hashers.isEmpty())
             defaultHashers = Integer.parseInt(hashers);
         String workerName = Miner.php_uniqid();
-        miner = new Miner(pool, defaultHashers, workerName);
-        miner.start();
-        return miner;
+        return new Miner(pool, defaultHashers, workerName);
     }
 
     public static String php_uniqid() {
@@ -151,20 +172,144 @@ public class Miner implements UncaughtExceptionHandler {
         return (System.currentTimeMillis() - sleep) < 2000;
     }
 
+    /**
+     * Stop hashing at the next iteration boundary. Hashers keep their Argon2 context, nonce and session state
+     * and continue where they left off on {@link #resume()}.
+     */
+    public void pause() {
+        synchronized (stateLock) {
+            if (state == STATE_RUNNING) {
+                state = STATE_PAUSED;
+            }
+        }
+    }
+
+    public void resume() {
+        synchronized (stateLock) {
+            if (state == STATE_PAUSED) {
+                state = STATE_RUNNING;
+                stateLock.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Let every hasher finish its current iteration, release its native memory and exit, then stop the miner
+     * loop. Replaces killing the miner thread.
+     */
+    public void drain() {
+        synchronized (stateLock) {
+            state = STATE_DRAINING;
+            active = false;
+            stateLock.notifyAll();
+        }
+    }
+
+    /**
+     * Hash through a shared {@link HashPipeline} instead of doing everything on each hasher thread. Applies to
+     * hashers created after the call.
+     */
+    public void setPipelined(boolean pipelined) {
+        this.pipelined = pipelined;
+    }
+
+    public boolean isPipelined() {
+        return pipelined;
+    }
+
+    /**
+     * The shared pipeline, started on first use.
+     */
+    protected synchronized HashPipeline getPipeline() {
+        if (pipeline == null) {
+            pipeline = new HashPipeline(this);
+            pipeline.start();
+        }
+        return pipeline;
+    }
+
+    /**
+     * {@link AdvMode#auto} hands hasher count, session length and pipelining to the auto-tuner.
+     */
+    public void setHasherMode(AdvMode hasherMode) {
+        this.hasherMode = hasherMode;
+        if (this.hashers != null) {
+            this.hashers.setHeapMatrices(HasherFactory.usesJavaArgon2(hasherMode));
+        }
+    }
+
+    public AdvMode getHasherMode() {
+        return hasherMode;
+    }
+
+    protected int getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Whether the settings changed since {@code hasher} was created. Hashers check this between hashes and
+     * end, so their replacement picks up the new settings.
+     */
+    protected boolean isOutdated(Hasher hasher) {
+        return hasher.generation != generation;
+    }
+
+    private synchronized void shutdownPipeline() {
+        if (pipeline != null) {
+            pipeline.shutdown();
+            pipeline = null;
+        }
+    }
+
+    public boolean isPaused() {
+        return state == STATE_PAUSED;
+    }
+
+    public boolean isDraining() {
+        return state == STATE_DRAINING;
+    }
+
+    /**
+     * Called by hashers between iterations. Returns right away while running, blocks while paused or while the
+     * system asks us to back off (see {@link #shouldSleep()}).
+     *
+     * @return milliseconds spent waiting, or -1 if the hasher should exit
+     */
+    protected long awaitRunning() {
+        if (state == STATE_RUNNING && !shouldSleep()) {
+            return 0l;
+        }
+        long begin = System.currentTimeMillis();
+        synchronized (stateLock) {
+            while (state == STATE_PAUSED || (state == STATE_RUNNING && shouldSleep())) {
+                try {
+                    stateLock.wait(PAUSE_POLL);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    return -1l;
+                }
+            }
+            if (state == STATE_DRAINING) {
+                return -1l;
+            }
+        }
+        return System.currentTimeMillis() - begin;
+    }
+
     long lastSendSpeed = 0;
     public Miner(String node, int cores, String worker) {
         this.hasherMode = AdvMode.standard;
         this.worker = php_uniqid();
 
         this.updaters = Executors.newSingleThreadExecutor();
-        this.submitters = Executors.newCachedThreadPool();
+        this.workSource = new PollingWorkSource();
+        this.submitter = new ShareSubmitter(this);
         this.hasherCount = new AtomicInteger();
 
         this.workers = new ConcurrentHashMap<String, Hasher>();
 
-        this.deadWorkerSociety = new ConcurrentLinkedQueue<>();
+        this.statsBoard = new StatsBoard();
         this.deadWorkers = new AtomicLong(0l);
-        this.deadWorkerLives = new ConcurrentHashMap<String, Long>();
 
         this.blockFinds = new AtomicLong();
         this.blockShares = new AtomicLong();
@@ -173,27 +318,24 @@ public class Miner implements UncaughtExceptionHandler {
         lastSendSpeed = System.currentTimeMillis();
 
 
-        activeProfile = null;
-        TreeSet<Profile> evaluatedProfiles = new TreeSet<Profile>();
-        ConcurrentLinkedQueue<Profile> profilesToEvaluate = new ConcurrentLinkedQueue<Profile>();
-        int coreCap = Runtime.getRuntime().availableProcessors();
-        long nextProfileSwap = 0;
-        long profilesTested = 0;
+        this.activeProfile = null;
+        this.evaluatedProfiles = new TreeSet<Profile>();
+        this.profilesToEvaluate = new ConcurrentLinkedQueue<Profile>();
+        this.coreCap = Runtime.getRuntime().availableProcessors();
+        this.nextProfileSwap = 0;
+        this.profilesTested = 0;
+        this.tuneStage = TUNE_WORKERS;
 
         this.statsHost = null;
         this.statsInvoke = "report.php";
         this.statsToken = php_uniqid();
         this.post = false;
-        this.statsStage = new ConcurrentHashMap<String, HasherStats>();
-        this.statsReport = new ConcurrentLinkedQueue<HasherStats>();
         this.stats = Executors.newCachedThreadPool();
 
         this.hashes = new AtomicLong();
         this.bestDL = new AtomicLong(Long.MAX_VALUE);
         this.sessionSubmits = new AtomicLong();
         this.sessionRejects = new AtomicLong();
-        this.lastSpeed = new AtomicLong();
-        this.speedAccrue = new AtomicLong();
 
         this.updateTimeAvg = new AtomicLong();
         this.updateTimeMax = new AtomicLong(Long.MIN_VALUE);
@@ -202,12 +344,6 @@ public class Miner implements UncaughtExceptionHandler {
         this.updateParseTimeMax = new AtomicLong(Long.MIN_VALUE);
         this.updateParseTimeMin = new AtomicLong(Long.MAX_VALUE);
 
-        this.submitTimeAvg = new AtomicLong();
-        this.submitTimeMax = new AtomicLong(Long.MIN_VALUE);
-        this.submitTimeMin = new AtomicLong(Long.MAX_VALUE);
-        this.submitParseTimeAvg = new AtomicLong();
-        this.submitParseTimeMax = new AtomicLong(Long.MIN_VALUE);
-        this.submitParseTimeMin = new AtomicLong(Long.MAX_VALUE);
 
 
         try {
@@ -242,8 +378,7 @@ public class Miner implements UncaughtExceptionHandler {
 
 
 
-        this.hashers = Executors.newFixedThreadPool(
-                this.maxHashers > 0 ? this.maxHashers : Runtime.getRuntime().availableProcessors());
+        this.hashers = new HasherScheduler(this.maxHashers, HomeView.instance, this.hashrate);
 
         this.limit = 240;
         this.wallClockBegin = System.currentTimeMillis();
@@ -255,212 +390,56 @@ public class Miner implements UncaughtExceptionHandler {
             return;
         }
 
-        active = true;
+        synchronized (stateLock) {
+            if (state == STATE_DRAINING) {
+                // stopped before it got going
+                stop();
+                return;
+            }
+            active = true;
+        }
+        // loads libargon2jni and runs its self-test, so not in the constructor, which runs on the UI thread
+        boolean javaArgon2 = HasherFactory.usesJavaArgon2(this.hasherMode);
+        if (javaArgon2 && HasherScheduler.heapWorkers() == 0) {
+            stop();
+            throw new IllegalStateException("libargon2jni is not available and the Java heap limit of "
+                    + (Runtime.getRuntime().maxMemory() >> 20) + "MB cannot hold one "
+                    + (Argon2Engine.SECURITY_PARAMETERS.m_cost >> 10) + "MB Argon2 matrix, so this device cannot mine");
+        }
+        this.hashers.setHeapMatrices(javaArgon2);
+        this.hashers.reassess(true);
         this.lastUpdate = wallClockBegin;
-        final AtomicBoolean firstRun = new AtomicBoolean(true);
+        firstRun.set(true);
+        sentSpeed.set(false);
+        hashrate.reset();
         cycles = 0;
         supercycles = 0;
-        final AtomicBoolean sentSpeed = new AtomicBoolean(false);
-        skips = 0;
         failures = 0;
         updates = 0;
         System.out.println("STARTING");
 
+        this.updaters.submit(new Runnable() {
+            public void run() {
+                workLoop();
+            }
+        });
+        awaitFirstWork();
+        lastWorkerReport = System.currentTimeMillis();
 
         while (active) {
             System.out.println("ACTIVE");
-            final boolean[] updateLoop = {true};
-            int firstAttempts = 0;
-            while (updateLoop[0]) {
-                System.out.println("LOOP");
-                Future<Boolean> update = this.updaters.submit(new Callable<Boolean>() {
-                    public Boolean call() throws JSONException {
-                        long executionTimeTracker = System.currentTimeMillis();
-                        try {
-                            if (cycles > 0 && (System.currentTimeMillis() - lastUpdate) < (UPDATING_DELAY * .5)) {
-                                skips++;
-                                return Boolean.FALSE;
-                            }
-                            boolean endline = false;
-
-                            String cummSpeed = speed();
-                            StringBuilder extra = new StringBuilder(node);
-                            extra.append("/mine.php?q=info");
-                            if (MinerType.pool.equals(type)) {
-                                extra.append("&worker=").append(URLEncoder.encode(worker, "UTF-8"));
-
-                                if (firstRun.get() || (!sentSpeed.get() && supercycles > 15)) {
-                                    extra.append("&address=").append(privateKey);
-                                }
-
-                                if (!sendSpeed && lastSendSpeed + 1000 * 20 < System.currentTimeMillis()) {
-                                    extra.append("&hashrate=").append(cummSpeed);
-                                    lastSendSpeed = System.currentTimeMillis();
-                                    sendSpeed = true;
-                                } else if (sendSpeed && lastSendSpeed + 1000 * 60 * 6 < System.currentTimeMillis()) {
-                                    extra.append("&hashrate=").append(cummSpeed);
-                                    lastSendSpeed = System.currentTimeMillis();
-                                }
-
-                            }
-
-                            URL url = new URL(extra.toString());
-                            URLConnection connect = url.openConnection();
-                            connect.setConnectTimeout(1000);
-                            updateLoop[0] = false;
-
-                            lastUpdate = System.currentTimeMillis();
-
-
-
-                            long parseTimeTracker = System.currentTimeMillis();
-
-                            BufferedReader s = new BufferedReader(new InputStreamReader(connect.getInputStream()));
-                            String st = new String(s.readLine());
-
-
-                            JSONObject obj = new JSONObject(st);
-
-                            if (!"ok".equals(obj.get("status"))) {
-                                failures++;
-                                updateTime(System.currentTimeMillis(), executionTimeTracker, parseTimeTracker);
-                                return Boolean.FALSE;
-                            }
-
-                            JSONObject jsonData = (JSONObject) obj.get("data");
-                            String localData = (String) jsonData.get("block");
-                            if (!localData.equals(data)) {
-                                if (lastBlockUpdate > 0) {
-                                }
-                                data = localData;
-                                lastBlockUpdate = System.currentTimeMillis();
-                                long bestDLLastBlock = bestDL.getAndSet(Long.MAX_VALUE);
-
-                                endline = true;
-                            }
-                            BigInteger localDifficulty = new BigInteger((String) jsonData.get("difficulty"));
-                            if (!localDifficulty.equals(difficulty)) {
-                                difficulty = localDifficulty;
-                                endline = true;
-                            }
-                            updateLoop[0] = false;
-                            long localLimit = 0;
-                            if (MinerType.pool.equals(type)) {
-                                localLimit = Long.parseLong(jsonData.get("limit").toString());
-                                publicKey = (String) jsonData.get("public_key");
-                            } else {
-                                localLimit = 240;
-                            }
-
-                            if (limit != localLimit) {
-                                limit = localLimit;
-                            }
-                            long localHeight = jsonData.getLong("height");
-                            if (localHeight != height) {
-                                height = localHeight;
-                                updateWorkers();
-                            }
-
-
-                            localHeight = (Long) jsonData.get("height");
-                            if (localHeight != height) {
-                                height = localHeight;
-                                endline = true;
-                            }
-
-                            if (endline) {
-                                updateWorkers();
-                            }
-
-                            System.out.println("REPORTED SPEED: " + cummSpeed);
-                            System.out.println("Shares: " + sessionSubmits.get());
-                            long sinceLastReport = System.currentTimeMillis() - lastReport;
-                            if (sinceLastReport > UPDATING_REPORT) {
-                                lastReport = System.currentTimeMillis();
-                                System.out.println("REPORTED SPEED: " + cummSpeed);
-                                System.out.println("Shares: " + sessionSubmits.get());
-
-                                printWorkerHeader();
-
-                                updateTimeAvg.set(0);
-                                updateTimeMax.set(Long.MIN_VALUE);
-                                updateTimeMin.set(Long.MAX_VALUE);
-                                updateParseTimeAvg.set(0);
-                                updateParseTimeMax.set(Long.MIN_VALUE);
-                                updateParseTimeMin.set(Long.MAX_VALUE);
-                                submitParseTimeAvg.set(0);
-                                submitParseTimeMax.set(Long.MIN_VALUE);
-                                submitParseTimeMin.set(Long.MAX_VALUE);
-                                skips = 0;
-                                failures = 0;
-                                updates = 0;
-                                endline = true;
-                                clearSpeed();
-                            }
-                            updates++;
-                            updateTime(System.currentTimeMillis(), executionTimeTracker, parseTimeTracker);
-                            if (endline) {
-                                System.out.println();
-                            }
-                            if ((sinceLastReport % UPDATING_STATS) < UPDATING_DELAY && sinceLastReport < 5000000000l) {
-                                printWorkerStats();
-                            }
-
-                            updateLoop[0] = false;
-                            return Boolean.TRUE;
-                        } catch (IOException e) {
-                            lastUpdate = System.currentTimeMillis();
-                            updateLoop[0] = false;
-                            e.printStackTrace();
-                            failures++;
-                            updateTime(System.currentTimeMillis() - executionTimeTracker);
-                            return Boolean.FALSE;
-                        }
-                    }
-                });
-                if (firstRun.get()) {
-                    try {
-                        if (update.get().booleanValue()) {
-                            firstRun.set(false);
-                            updateLoop[0] = false;
-                        } else {
-                            firstAttempts++;
-                        }
-                    } catch (InterruptedException | ExecutionException e) {
-
-                    } finally {
-                        if (firstRun.get() && firstAttempts > 15) {
-                            System.out.println("ACTIVE == FALSE");
-                            active = false;
-                            firstRun.set(false);
-                            updateLoop[0] = false;
-                            break;
-                        } else if (firstRun.get()) {
-
-                            try {
-                                Thread.sleep(5000l);
-                            } catch (InterruptedException ie) {
-                                System.out.println("INTERRUPT == FALSE");
-                                active = false;
-                                firstRun.set(false);
-                                updateLoop[0] = false;
-                            }
-
-                        }
-                    }
-                    lastWorkerReport = System.currentTimeMillis();
-                } else {
-                    updateLoop[0] = false;
-                }
+            report();
+            String speed = speed();
+            System.out.println("Hashrate: " + speed);
+            callbackMiner.onHashRate(speed, finalDuration + "");
+            this.hashers.reassess(shouldSleep());
+            if (AdvMode.auto.equals(this.hasherMode)) {
+                autoTune();
             }
-            System.out.println("Hashrate: " + speed());
-            callbackMiner.onHashRate(speed(), finalDuration + "");
-            if (!AdvMode.auto.equals(this.hasherMode) && this.hasherCount.get() < maxHashers) {
+            if (!isPaused() && this.hashers.canGrow()) {
                 String workerId = this.deadWorkers.getAndIncrement() + "]" + php_uniqid();
-                this.deadWorkerLives.put(workerId, System.currentTimeMillis());
-                Hasher hasher = HasherFactory.createHasher(hasherMode, this, workerId, this.hashesPerSession, this.sessionLength * 2l);
-                updateWorker(hasher);
-                this.hashers.submit(hasher);
+                Hasher hasher = newHasher(workerId);
+                this.hashers.launch(hasher);
                 addWorker(workerId, hasher);
             }
 
@@ -484,257 +463,523 @@ public class Miner implements UncaughtExceptionHandler {
                 refreshFromWorkers();
             }
 
-            updateStats();
-
             cycles++;
             supercycles++;
         }
 
-        this.updaters.shutdown();
+        this.updaters.shutdownNow();
         this.hashers.shutdown();
-        this.submitters.shutdown();
+        this.submitter.shutdown();
+        this.statsBoard.shutdown();
+        shutdownPipeline();
     }
 
-    protected void addWorker(String workerId, Hasher hasher) {
-        workers.put(workerId, hasher);
-    }
+    /**
+     * Runs on the update thread for the life of the miner, asking the work source for new work at the pace
+     * the source chooses.
+     */
+    private void workLoop() {
+        int firstAttempts = 0;
+        while (active) {
+            WorkInfo before = this.workInfo;
+            WorkInfo latest = null;
+            boolean failed = false;
+            long executionTimeTracker = System.currentTimeMillis();
+            try {
+                workRequests.incrementAndGet();
+                latest = workSource.fetch(infoUrl(), before);
+                lastUpdate = System.currentTimeMillis();
+                applyWork(latest);
+                updates++;
+                updateTime(System.currentTimeMillis(), executionTimeTracker, latest.receivedAt);
+                firstRun.set(false);
+            } catch (IOException | RuntimeException e) {
+                // a malformed answer (bad number, missing field) backs off like a failed request
+                failed = true;
+                lastUpdate = System.currentTimeMillis();
+                e.printStackTrace();
+                failures++;
+                updateTime(System.currentTimeMillis() - executionTimeTracker);
+                if (firstRun.get() && ++firstAttempts > 15) {
+                    System.out.println("ACTIVE == FALSE");
+                    active = false;
+                    firstRun.set(false);
+                    break;
+                }
+            }
 
-    protected void releaseWorker(String workerId) {
-        workers.remove(workerId);
+            long delay = firstRun.get() ? FIRST_RETRY_DELAY : workSource.nextDelay(before, latest, failed);
+            if (delay > 0) {
+                try {
+                    Thread.sleep(delay);
+                } catch (InterruptedException ie) {
+                    break;
+                }
+            }
+        }
     }
 
-    protected void updateWorkers() {
-        for (Hasher h : workers.values()) {
-            if (h != null && h.isActive()) {
-                updateWorker(h);
+    private void awaitFirstWork() {
+        while (active && firstRun.get()) {
+            try {
+                Thread.sleep(100l);
+            } catch (InterruptedException ie) {
+                System.out.println("INTERRUPT == FALSE");
+                active = false;
             }
         }
     }
 
+    private String infoUrl() throws IOException {
+        StringBuilder extra = new StringBuilder(node);
+        extra.append("/mine.php?q=info");
+        if (MinerType.pool.equals(type)) {
+            extra.append("&worker=").append(URLEncoder.encode(worker, "UTF-8"));
 
+            if (firstRun.get() || (!sentSpeed.get() && supercycles > 15)) {
+                extra.append("&address=").append(privateKey);
+            }
 
-    protected void updateWorker(Hasher hasher) {
-        hasher.update(getDifficulty(), getBlockData(), getLimit(), getPublicKey(), getHeight(), callbackMiner);
-    }
+            if (!sendSpeed && lastSendSpeed + 1000 * 20 < System.currentTimeMillis()) {
+                extra.append("&hashrate=").append(HashrateMeter.format(hashrate.getQuarterHourRate()));
+                lastSendSpeed = System.currentTimeMillis();
+                sendSpeed = true;
+            } else if (sendSpeed && lastSendSpeed + 1000 * 60 * 6 < System.currentTimeMillis()) {
+                extra.append("&hashrate=").append(HashrateMeter.format(hashrate.getQuarterHourRate()));
+                lastSendSpeed = System.currentTimeMillis();
+            }
 
-    protected void workerInit(final String workerId) {
+        }
+        return extra.toString();
     }
 
-    protected void workerFinish(HasherStats stats, Hasher worker) {
-        this.deadWorkerSociety.offer(stats);
-        releaseWorker(worker.getID());
-        try {
-            stats.scheduledTime = System.currentTimeMillis() - this.deadWorkerLives.remove(stats.id);
-        } catch (NullPointerException npe) {
-            stats.scheduledTime = stats.hashTime;
+    /**
+     * Take over new work and push it to the hashers if anything they use changed.
+     */
+    protected void applyWork(WorkInfo info) {
+        WorkInfo before = this.workInfo;
+        boolean changed = false;
+        if (!info.block.equals(data)) {
+            if (before != null) {
+                blockChanges.incrementAndGet();
+                blockLatency.record(workSource.changeLatency(before, info));
+            }
+            data = info.block;
+            lastBlockUpdate = System.currentTimeMillis();
+            long bestDLLastBlock = bestDL.getAndSet(Long.MAX_VALUE);
+            changed = true;
+        }
+        if (!info.difficulty.equals(difficulty)) {
+            difficulty = info.difficulty;
+            changed = true;
+        }
+        long localLimit = 240;
+        if (MinerType.pool.equals(type)) {
+            localLimit = info.limit >= 0 ? info.limit : limit;
+            publicKey = info.publicKey;
+        }
+        if (limit != localLimit) {
+            limit = localLimit;
+            changed = true;
+        }
+        if (info.height != height) {
+            height = info.height;
+            changed = true;
+        }
+        this.workInfo = info;
+        if (changed) {
+            // hashers pick this up before their next hash
+            this.work = new MiningWork(this.workEpoch++, data, difficulty, limit, getPublicKey(), height);
         }
-        String workerId = this.deadWorkers.getAndIncrement() + "]" + php_uniqid();
-        this.deadWorkerLives.put(workerId, System.currentTimeMillis());
-        Hasher hasher = HasherFactory.createHasher(hasherMode, this, workerId, this.hashesPerSession, this.sessionLength * 2l);
-        updateWorker(hasher);
-        this.hashers.submit(hasher);
-        addWorker(workerId, hasher);
     }
 
-    protected long[] sessionFinish(HasherStats stats, Hasher worker) {
-        this.deadWorkerSociety.offer(stats);
-        try {
-            stats.scheduledTime = System.currentTimeMillis() - this.deadWorkerLives.put(stats.id, System.currentTimeMillis());
-        } catch (NullPointerException npe) {
-            stats.scheduledTime = stats.hashTime;
+    private void report() {
+        String cummSpeed = speed();
+        boolean endline = false;
+        System.out.println("REPORTED SPEED: " + cummSpeed);
+        System.out.println("Shares: " + sessionSubmits.get());
+        long sinceLastReport = System.currentTimeMillis() - lastReport;
+        if (sinceLastReport > UPDATING_REPORT) {
+            lastReport = System.currentTimeMillis();
+            System.out.println("REPORTED SPEED: " + cummSpeed);
+            System.out.println("Shares: " + sessionSubmits.get());
+            System.out.println("Submits: " + submitter.describe());
+            System.out.println("Work: " + describeWork());
+            System.out.println("Session: " + sessions.getDecision());
+            System.out.println("Hashers: " + hashers.describe());
+            if (AdvMode.auto.equals(this.hasherMode)) {
+                System.out.println("Auto-tune: " + describeTuning());
+            }
+            System.out.println("Hashrate: " + hashrate.describe());
+
+            printWorkerHeader();
+
+            HashPipeline reportPipeline = pipeline;
+            if (reportPipeline != null) {
+                reportPipeline.sample(hasherCount.get());
+                System.out.println("Pipeline: " + reportPipeline.describe());
+            }
+
+            updateTimeAvg.set(0);
+            updateTimeMax.set(Long.MIN_VALUE);
+            updateTimeMin.set(Long.MAX_VALUE);
+            updateParseTimeAvg.set(0);
+            updateParseTimeMax.set(Long.MIN_VALUE);
+            updateParseTimeMin.set(Long.MAX_VALUE);
+            failures = 0;
+            updates = 0;
+            endline = true;
+        }
+        if (endline) {
+            System.out.println();
+        }
+        if ((sinceLastReport % UPDATING_STATS) < UPDATING_DELAY && sinceLastReport < 5000000000l) {
+            printWorkerStats();
         }
-        return new long[]{this.hashesPerSession, this.sessionLength * 2l};
     }
 
-    protected void refreshFromWorkers() {
-        long wallTime = System.currentTimeMillis() - lastWorkerReport;
-        lastWorkerReport = System.currentTimeMillis();
-        try {
-            AtomicLong newHashes = new AtomicLong();
-            AtomicLong adjust = new AtomicLong();
-            AtomicLong offload = new AtomicLong();
-            HasherStats worker = null;
-            Report report = new Report();
-            while ((worker = this.deadWorkerSociety.poll()) != null) {
-                try {
-                    report.runs++;
+    /**
+     * Work source name, requests per hour, block changes and the p50/p95 delay before we saw them.
+     */
+    public String describeWork() {
+        long elapsed = Math.max(1l, System.currentTimeMillis() - wallClockBegin);
+        long[] latency = blockLatency.percentiles(50d, 95d);
+        long total = Math.max(1l, hashes.get());
+        return String.format("%s %.0f req/h, %d blocks, latency p50 %dms p95 %dms, stale hashes %d (%.2f%%)",
+                workSource.getName(), workRequests.get() * 3600000d / elapsed, blockChanges.get(), latency[0],
+                latency[1], staleHashes.get(), staleHashes.get() * 100d / total);
+    }
 
-                    long allHashes = worker.hashes;
-                    newHashes.addAndGet(allHashes);
-                    hashes.getAndAdd(allHashes);
+    public void setWorkSource(WorkSource workSource) {
+        this.workSource = workSource;
+    }
 
-                    report.hashes += allHashes;
+    public WorkSource getWorkSource() {
+        return workSource;
+    }
 
-                    long localDL = worker.bestDL;
+    public double getRequestsPerHour() {
+        long elapsed = Math.max(1l, System.currentTimeMillis() - wallClockBegin);
+        return workRequests.get() * 3600000d / elapsed;
+    }
 
-                    report.shares += worker.shares;
-                    report.finds += worker.finds;
+    /**
+     * @return p50 and p95 block change latency in milliseconds, -1 before the first change
+     */
+    public long[] getBlockLatencyPercentiles() {
+        return blockLatency.percentiles(50d, 95d);
+    }
 
-                    blockShares.addAndGet(worker.shares);
-                    blockFinds.addAndGet(worker.finds);
+    protected void addWorker(String workerId, Hasher hasher) {
+        workers.put(workerId, hasher);
+    }
 
-                    long argonTime = worker.argonTime;
-                    long shaTime = worker.shaTime;
-                    long nonArgonTime = worker.nonArgonTime;
-                    long fullTime = argonTime + nonArgonTime;
-                    double lastRatio = 0.0d;
-                    if (fullTime > 0) {
-                        lastRatio = (double) argonTime / (double) fullTime;
-                    }
+    protected void releaseWorker(String workerId) {
+        workers.remove(workerId);
+    }
 
-                    double lastShaRatio = 0.0;
-                    if (shaTime > 0 || fullTime > 0) {
-                        lastShaRatio = (double) shaTime / (double) fullTime;
-                    }
-                    report.argonEff += lastRatio;
-                    report.shaEff += lastShaRatio;
+    protected void workerInit(final String workerId) {
+    }
+
+    protected void workerFinish(Hasher worker) {
+        releaseWorker(worker.getID());
+        if (worker.retired || !active) {
+            return;
+        }
+        if (this.hashers.tryRetire()) {
+            worker.retired = true;
+            return;
+        }
+        String workerId = this.deadWorkers.getAndIncrement() + "]" + php_uniqid();
+        Hasher hasher = newHasher(workerId);
+        // run the replacement on the same slot so it inherits the thread's Argon2 matrix
+        worker.successor = hasher;
+        addWorker(workerId, hasher);
+    }
 
-                    report.argonTime += argonTime;
-                    report.nonArgontime += nonArgonTime;
-                    report.shaTime += shaTime;
+    protected boolean shouldRetire(Hasher worker) {
+        return this.hashers.tryRetire();
+    }
 
-                    long totalTime = worker.hashTime;
+    private Hasher newHasher(String workerId) {
+        SessionController.Decision session = this.sessions.getDecision();
+        return HasherFactory.createHasher(hasherMode, this, workerId, session.hashesPerSession, session.maxTime);
+    }
 
-                    report.totalTime += totalTime;
+    public StatsBoard getStatsBoard() {
+        return this.statsBoard;
+    }
 
-                    report.curWaitLoss += (double) (worker.scheduledTime - worker.hashTime) / (double) worker.scheduledTime;
+    public SessionController.Decision getSessionDecision() {
+        return this.sessions.getDecision();
+    }
 
-                    long seconds = fullTime / 1000000000l;
+    /**
+     * A hasher finished a session; its counters are already on the {@link StatsBoard}.
+     */
+    protected SessionController.Decision sessionFinish(Hasher worker) {
+        return this.sessions.getDecision();
+    }
 
-                    report.curHashPerSecond += (double) allHashes / (totalTime / 1000d);
+    protected void refreshFromWorkers() {
+        lastWorkerReport = System.currentTimeMillis();
+        try {
+            StatsBoard.Window interval = this.refreshWindow;
+            this.statsBoard.advance(interval);
 
-                    report.curTimeInCore += ((double) seconds * 1000d) / ((double) totalTime);
+            hashes.getAndAdd(interval.hashes);
+            staleHashes.addAndGet(interval.staleHashes);
+            blockShares.addAndGet(interval.shares);
+            blockFinds.addAndGet(interval.finds);
 
-                    if (totalTime < this.sessionLength) {
-                        double gap = (double) (this.sessionLength - totalTime) / (double) this.sessionLength;
-                        long recom = (long) (((double) allHashes) * .5 * gap);
+            if (activeProfile != null && activeProfile.getStatus() == Profile.Status.PROFILING) {
+                activeProfile.update(interval.hashes, System.currentTimeMillis() - activeProfile.sampleBegin);
+            }
 
-                        adjust.addAndGet(recom);
-                        offload.incrementAndGet();
-                    } else if (totalTime > this.sessionLength) {
-                        double gap = (double) (totalTime - this.sessionLength) / (double) totalTime;
-                        long recom = (long) -(((double) allHashes) * .5 * gap);
+            this.sessions.record(interval.sessionHashes, interval.sessionTime, interval.sessions);
 
-                        adjust.addAndGet(recom);
-                        offload.incrementAndGet();
-                    } else {
-                        offload.incrementAndGet();
-                    }
+            this.sessions.update();
+        } catch (Exception e) {
+        }
+    }
 
-                    /* reporting stats */
-                    if (this.statsHost != null) {
+    /**
+     * One step of the auto-tuner, called every miner cycle in {@link AdvMode#auto}.
+     * <p>
+     * Profiles run one at a time for {@link #INIT_DELAY} of warm-up and a {@link #TEST_PERIOD} measuring
+     * window. The search goes in stages, each varying one setting around the best profile so far: worker
+     * count, pipelining, session length. The winner is applied, and every
+     * {@link #REASSESS_PERIOD} it is measured again against one worker more and less; if either beats it the
+     * search starts over from there.
+     */
+    protected void autoTune() {
+        long now = System.currentTimeMillis();
+        if (power == null) {
+            power = new PowerProxy(HomeView.instance);
+            powerInMilliamps = power.usesBattery();
+        }
+        if (activeProfile != null) {
+            switch (activeProfile.getStatus()) {
+                case WAITING:
+                    return;
+                case PROFILING:
+                    if (!powerStarted) {
+                        power.begin();
+                        powerStarted = true;
                     }
+                    power.sample();
+                    return;
+                default:
+                    boolean battery = power.usesBattery();
+                    activeProfile.power = power.end();
+                    powerStarted = false;
+                    if (battery != powerInMilliamps) {
+                        // a charger showed up, profiles measured so far are in other units
+                        powerInMilliamps = battery;
+                        evaluatedProfiles.clear();
+                        profilesToEvaluate.clear();
+                        tuneStage = TUNE_WORKERS;
+                        toReassess = null;
+                        nextReassess = 0;
+                    }
+                    forgetProfile(activeProfile);
+                    evaluatedProfiles.add(activeProfile);
+                    profilesTested++;
+                    activeProfile = null;
+            }
+        }
 
-                } catch (Throwable e) {
-                    e.printStackTrace();
+        Profile next = profilesToEvaluate.poll();
+        while (next == null) {
+            if (tuneStage < TUNE_DONE) {
+                enqueueStage(tuneStage++, bestProfile());
+                next = profilesToEvaluate.poll();
+                continue;
+            }
+            if (tuneStage == TUNE_REASSESS) {
+                Profile winner = bestProfile();
+                tuneStage = TUNE_DONE;
+                if (toReassess != null && !winner.equals(toReassess)) {
+                    tuneStage = TUNE_WORKERS;
                 }
+                toReassess = null;
+                continue;
             }
-            if (offload.get() > 0) {
-                this.hashesPerSession += (long) (adjust.doubleValue() / offload.doubleValue());
-                if (this.hashesPerSession < MIN_HASHES_PER_SESSION) {
-                    this.hashesPerSession = MIN_HASHES_PER_SESSION;
+            if (nextReassess == 0) {
+                Profile winner = bestProfile();
+                applyProfile(winner);
+                nextReassess = now + REASSESS_PERIOD;
+                return;
+            }
+            if (now < nextReassess) {
+                return;
+            }
+            toReassess = bestProfile();
+            evaluatedProfiles.clear();
+            nextReassess = 0;
+            tuneStage = TUNE_REASSESS;
+            profilesToEvaluate.offer(toReassess.copy());
+            for (int workers : new int[]{toReassess.getWorkerCount() - 1, toReassess.getWorkerCount() + 1}) {
+                if (workers >= 1 && workers <= workerCap()) {
+                    profilesToEvaluate.offer(withWorkers(toReassess, workers));
                 }
             }
-            this.lastSpeed.addAndGet((long) (((newHashes.doubleValue() * 10000000d) / (double) (wallTime))));
-            this.speedAccrue.incrementAndGet();
-        } catch (Exception e) {
+            next = profilesToEvaluate.poll();
         }
-    }
-
-    private void printWorkerHeader() {
 
+        activeProfile = next;
+        applyProfile(next);
+        next.begin();
+        nextProfileSwap = next.samplePlannedEnd;
     }
 
-    private void printWorkerStats() {
-        int recentSize = 0;
-        long runs = 0;
-        double avgRate = 0.0d;
-        double coreEff = 0.0d;
-        double waitEff = 0.0d;
-        double argEff = 0.0d;
-        double shaEff = 0.0d;
-        long shares = this.blockShares.get();
-        long finds = this.blockFinds.get();
-        long failures = this.sessionRejects.get();
-        int grabReports = (int) (15000.0 / (Miner.UPDATING_DELAY * 2d));
-        if (grabReports < 3) grabReports = 3;
-
-        try {
-            LinkedList<Report> recent = new LinkedList<Report>();
-
+    private void enqueueStage(int stage, Profile base) {
+        switch (stage) {
+            case TUNE_WORKERS:
+                int cap = workerCap();
+                TreeSet<Integer> counts = new TreeSet<Integer>();
+                if (cap <= 4) {
+                    for (int i = 1; i <= cap; i++) {
+                        counts.add(i);
+                    }
+                } else {
+                    counts.add(1);
+                    counts.add(cap / 2);
+                    counts.add(cap - 1);
+                    counts.add(cap);
+                }
+                for (int workers : counts) {
+                    enqueueProfile(withWorkers(base, workers));
+                }
+                break;
+            case TUNE_PIPELINE:
+                for (boolean pipeline : new boolean[]{false, true}) {
+                    Profile profile = base.copy();
+                    profile.pipelined = pipeline;
+                    enqueueProfile(profile);
+                }
+                break;
+            case TUNE_SESSION:
+                for (long length : new long[]{MIN_SESSION_LENGTH, (MIN_SESSION_LENGTH + MAX_SESSION_LENGTH) / 2l, MAX_SESSION_LENGTH}) {
+                    Profile profile = base.copy();
+                    profile.sessionLength = length;
+                    enqueueProfile(profile);
+                }
+                break;
+            default:
+        }
+    }
 
-            for (Report report : recent) {
-                runs += report.runs;
-                avgRate += report.curHashPerSecond;
-                waitEff += report.curWaitLoss * 100d;
-                coreEff += report.curTimeInCore * 100d;
-                argEff += report.argonEff * 100d;
-                shaEff += report.shaEff * 100d;
+    private void enqueueProfile(Profile profile) {
+        for (Profile evaluated : evaluatedProfiles) {
+            if (evaluated.equals(profile)) {
+                return;
             }
+        }
+        profilesToEvaluate.offer(profile);
+    }
 
-            if (waitEff < 0.0d) waitEff = 0.0d;
+    /**
+     * Drop an earlier measurement of the same settings. The set is ordered by score, so contains/remove
+     * cannot find it by settings alone.
+     */
+    private void forgetProfile(Profile profile) {
+        Iterator<Profile> evaluated = evaluatedProfiles.iterator();
+        while (evaluated.hasNext()) {
+            if (evaluated.next().equals(profile)) {
+                evaluated.remove();
+            }
+        }
+    }
 
+    private Profile withWorkers(Profile base, int workers) {
+        return new Profile(base.getWorkerCount() > 0 ? base.getWorkers()[0] : AdvMode.standard, workers,
+                base.getSessionLength(), base.isPipelined());
+    }
 
-        } catch (Throwable t) {
-            t.printStackTrace();
+    private int workerCap() {
+        int cap = Math.min(coreCap, HasherScheduler.suggestWorkers());
+        if (HasherFactory.usesJavaArgon2(this.hasherMode)) {
+            cap = Math.min(cap, HasherScheduler.heapWorkers());
         }
+        return Math.max(1, cap);
+    }
 
-        if (AdvMode.auto.equals(this.hasherMode)) {
+    private Profile bestProfile() {
+        if (evaluatedProfiles.isEmpty()) {
+            return currentProfile();
         }
+        return evaluatedProfiles.last();
     }
 
-    protected void updateStats() {
-        String a = "1";
-        if (a.equalsIgnoreCase("1"))
-            return;
-        this.stats.submit(new Runnable() {
-            public void run() {
-                HasherStats latest = null;
-                while ((latest = statsReport.poll()) != null) {
-                    try {
-                        StringBuilder to = new StringBuilder(statsHost);
-                        to.append("/").append(statsInvoke).append("?q=report");
-                        to.append("&token=").append(URLEncoder.encode(statsToken, "UTF-8"));
-                        to.append("&id=").append(URLEncoder.encode(latest.id, "UTF-8")).append("&type=").append(latest.type);
-                        if (!post) {
-                            to.append("&hashes=").append(latest.hashes)
-                                    .append("&elapsed=").append(latest.hashTime);
-                        }
-
+    protected Profile currentProfile() {
+        return new Profile(AdvMode.standard, Math.min(this.maxHashers, workerCap()), this.sessions.getTarget(),
+                this.pipelined);
+    }
 
-                        URL url = new URL(to.toString());
-                        HttpURLConnection con = (HttpURLConnection) url.openConnection();
-                        if (post) {
-                            con.setRequestMethod("POST");
-                            con.setRequestProperty("Content-type", "application/x-www-form-urlencoded");
-                            con.setDoOutput(true);
-                            DataOutputStream out = new DataOutputStream(con.getOutputStream());
+    /**
+     * Switch to the settings of {@code profile}. Running hashers finish their hash and are replaced.
+     */
+    protected void applyProfile(Profile profile) {
+        this.maxHashers = profile.getWorkerCount();
+        this.sessions.setTarget(profile.getSessionLength());
+        this.pipelined = profile.isPipelined();
+        this.hashers.setMaxWorkers(this.maxHashers);
+        this.hashers.reassess(true);
+        this.generation++;
+    }
 
-                            StringBuilder data = new StringBuilder();
+    public String describeTuning() {
+        String stage;
+        switch (tuneStage) {
+            case TUNE_WORKERS:
+            case TUNE_PIPELINE:
+            case TUNE_SESSION:
+                stage = "searching";
+                break;
+            case TUNE_REASSESS:
+                stage = "reassessing";
+                break;
+            default:
+                stage = "settled";
+        }
+        StringBuilder line = new StringBuilder(stage);
+        if (activeProfile != null) {
+            line.append(", profiling ").append(activeProfile).append(" (").append(activeProfile.getStatus()).append(")");
+        }
+        line.append(", tested ").append(profilesTested).append(", queued ").append(profilesToEvaluate.size());
+        if (!evaluatedProfiles.isEmpty()) {
+            Profile best = evaluatedProfiles.last();
+            line.append(String.format(", best %s at %.3f H/s", best, best.getHashSec()));
+        }
+        return line.toString();
+    }
 
-                            data.append(URLEncoder.encode("hashes", "UTF-8")).append("=")
-                                    .append(URLEncoder.encode(Long.toString(latest.hashes), "UTF-8")).append("&");
-                            data.append(URLEncoder.encode("elapsed", "UTF-8")).append("=")
-                                    .append(URLEncoder.encode(Long.toString(latest.hashTime), "UTF-8"));
+    private void printWorkerHeader() {
 
-                            out.writeBytes(data.toString());
+    }
 
-                            out.flush();
-                            out.close();
-                        } else {
-                            con.setRequestMethod("GET");
-                        }
+    private void printWorkerStats() {
+        long shares = this.blockShares.get();
+        long finds = this.blockFinds.get();
+        long failures = this.sessionRejects.get();
 
-                        int status = con.getResponseCode();
-                        if (status != HttpURLConnection.HTTP_OK) {
-                            System.err.println("Failed to report stats: " + status);
-                        }
-                    } catch (IOException ioe) {
-                        System.err.println("Failed to report stats: " + ioe.getMessage());
-                    }
-                }
+        try {
+            for (StatsBoard.Window window : statsWindows) {
+                this.statsBoard.window(window);
             }
-        });
+            StatsBoard.Window second = statsWindows[0];
+            StatsBoard.Window quarter = statsWindows[1];
+            StatsBoard.Window five = statsWindows[2];
+            System.out.println(String.format("Hashers %d | 1s %.3f | 15s %.3f | 5m %.3f H/s", this.statsBoard.getHashers(),
+                    second.getHashRate(), quarter.getHashRate(), five.getHashRate()));
+            System.out.println("  15s: " + quarter);
+            System.out.println("  5m:  " + five);
+            System.out.println(String.format("  block shares %d finds %d rejects %d, 5m sessions %d", shares, finds,
+                    failures, five.sessions));
+        } catch (Throwable t) {
+            t.printStackTrace();
+        }
     }
 
     protected void submitStats(final String nonce, final String argon, final long submitDL, final long difficulty, final String type, final int retries, final boolean accepted) {
@@ -800,97 +1045,40 @@ public class Miner implements UncaughtExceptionHandler {
         });
     }
 
-    protected void submit(final String nonce, final String argon, final long submitDL, final long difficulty, final String workerType) {
-        if (height == 0)
+    /**
+     * Queue a share for the work its nonce was hashed on. The height and key are that work's, not the current
+     * ones, so a share found just before a new block is dropped as stale instead of being sent for the new one.
+     */
+    protected void submit(final MiningWork work, final String nonce, final String argon, final long submitDL, final String workerType) {
+        if (work.height == 0)
             return;
 
-        new AsyncTask<Void, Void, Void>() {
-            @Override
-            protected Void doInBackground(Void... voids) {
-                StringBuilder extra = new StringBuilder(node);
-                extra.append("/mine.php?q=submitNonce");
-                int failures = 0;
-                long executionTimeTracker = System.currentTimeMillis();
-                try {
-                    URL url = new URL(extra.toString());
-                    HttpURLConnection con = (HttpURLConnection) url.openConnection();
-                    con.setRequestMethod("POST");
-                    con.setRequestProperty("Content-type", "application/x-www-form-urlencoded");
-                    con.setDoOutput(true);
-                    DataOutputStream out = new DataOutputStream(con.getOutputStream());
-
-                    StringBuilder data = new StringBuilder();
-
-                    data.append(URLEncoder.encode("argon", "UTF-8")).append("=")
-                            .append(URLEncoder.encode(argon.substring(30), "UTF-8")).append("&");
-                    data.append(URLEncoder.encode("nonce", "UTF-8")).append("=")
-                            .append(URLEncoder.encode(nonce, "UTF-8")).append("&");
-                    data.append(URLEncoder.encode("private_key", "UTF-8")).append("=")
-                            .append(URLEncoder.encode(privateKey, "UTF-8")).append("&");
-                    data.append(URLEncoder.encode("public_key", "UTF-8")).append("=")
-                            .append(URLEncoder.encode(publicKey, "UTF-8")).append("&");
-                    data.append(URLEncoder.encode("address", "UTF-8")).append("=")
-                            .append(URLEncoder.encode(privateKey, "UTF-8")).append("&");
-
-                    data.append(URLEncoder.encode("height", "UTF-8")).append("=")
-                            .append(height);
-
-                    System.out.println("MAKING REQUEST WITH DATA: " + data);
-
-                    out.writeBytes(data.toString());
-
-                    out.flush();
-                    out.close();
-
-                    sessionSubmits.incrementAndGet();
-
-                    int status = con.getResponseCode();
-                    if (status != HttpURLConnection.HTTP_OK) {
-                        con.disconnect();
-                        failures++;
-                        submitTime(System.currentTimeMillis() - executionTimeTracker);
-                    } else {
-                        long parseTimeTracker = System.currentTimeMillis();
-                        BufferedReader b = new BufferedReader(new InputStreamReader(con.getInputStream()));
-                        String s = b.readLine();
-                        JSONObject obj = new JSONObject(s);
-
-                        if (!"ok".equals(obj.get("status"))) {
-                            sessionRejects.incrementAndGet();
-                            System.out.println(" Raw Failure: " + obj.toString());
-                            callbackMiner.onReject(obj.toString());
-                            submitStats(nonce, argon, submitDL, difficulty, workerType, failures, false);
-
-                        } else {
-                            System.out.println("DONE ACCEPTED SHARE " + obj.toString());
-                            callbackMiner.onAccept(obj.toString());
-                            submitStats(nonce, argon, submitDL, difficulty, workerType, failures, true);
-                        }
-
-                        con.disconnect();
-
-                        submitTime(System.currentTimeMillis(), executionTimeTracker, parseTimeTracker);
-                    }
-                } catch (IOException e) {
-                    failures++;
+        this.submitter.submit(new ShareSubmitter.Share(nonce, argon, submitDL, work.difficulty.longValue(), workerType,
+                work.height, work.publicKey, privateKey));
+    }
 
+    protected void shareAccepted(ShareSubmitter.Share share, String response, int retries) {
+        System.out.println("DONE ACCEPTED SHARE " + response);
+        callbackMiner.onAccept(response);
+        submitStats(share.nonce, share.argon, share.submitDL, share.difficulty, share.workerType, retries, true);
+    }
 
-                    submitTime(System.currentTimeMillis() - executionTimeTracker);
-                } catch (JSONException e) {
-                    e.printStackTrace();
-                }
-                return null;
-            }
-        }.execute(null, null, null);
+    protected void shareRejected(ShareSubmitter.Share share, String response, int retries) {
+        sessionRejects.incrementAndGet();
+        System.out.println(" Raw Failure: " + response);
+        callbackMiner.onReject(response);
+        submitStats(share.nonce, share.argon, share.submitDL, share.difficulty, share.workerType, retries, false);
     }
 
+    /**
+     * Hashrate shown to the user: the last minute, steady enough to read but quick to follow changes.
+     */
     private String speed() {
-        return String.format("%.3f", (((double) this.lastSpeed.get() / 10000d) / (double) this.speedAccrue.get()));
+        return HashrateMeter.format(this.hashrate.getMinuteRate());
     }
 
-    private void clearSpeed() {
-        this.lastSpeed.set(0);
-        this.speedAccrue.set(0);
+    public HashrateMeter getHashrateMeter() {
+        return this.hashrate;
     }
 
     private String avgSpeed(long clockBegin) {
@@ -909,14 +1097,22 @@ public class Miner implements UncaughtExceptionHandler {
         this.updateParseTimeAvg.addAndGet(duration);
     }
 
-    private void submitTime(long duration) {
-        this.submitTimeAvg.addAndGet(duration);
+    /**
+     * The work hashers should be on, null until the first answer from the node.
+     */
+    public MiningWork getWork() {
+        return this.work;
     }
 
-    private void submitTime(long instance, long total, long parse) {
-        submitTime(instance - total);
-        long duration = instance - parse;
-        this.submitParseTimeAvg.addAndGet(duration);
+    static callbackMiner getCallback() {
+        return callbackMiner;
+    }
+
+    /**
+     * Hashes thrown away since start because their block changed before they finished.
+     */
+    public long getStaleHashes() {
+        return this.staleHashes.get();
     }
 
     protected BigInteger getDifficulty() {
@@ -939,6 +1135,14 @@ public class Miner implements UncaughtExceptionHandler {
         return this.height;
     }
 
+    protected String getNode() {
+        return this.node;
+    }
+
+    public ShareSubmitter getSubmitter() {
+        return this.submitter;
+    }
+
     private void startTest() {
         System.out.println("Static tests using " + this.maxHashers + " iterations as cap");
 
@@ -967,9 +1171,12 @@ public class Miner implements UncaughtExceptionHandler {
     }
 
     public void stop() {
-        this.updaters.shutdown();
+        drain();
+        this.updaters.shutdownNow();
         this.hashers.shutdown();
-        this.submitters.shutdown();
+        this.submitter.shutdown();
+        this.statsBoard.shutdown();
+        shutdownPipeline();
     }
 
     public static abstract class callbackMiner {
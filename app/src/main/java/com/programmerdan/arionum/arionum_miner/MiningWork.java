@@ -0,0 +1,70 @@
+package com.programmerdan.arionum.arionum_miner;
+
+import java.math.BigInteger;
+
+/**
+ * Everything a hasher needs about the block being mined, published by the miner as one immutable object
+ * through a single volatile reference. Hashers compare that reference before every batch, so new work reaches
+ * them within one batch and they never see a new block with an old difficulty or limit.
+ * <p>
+ * The nonce-independent parts of the Argon2 password are encoded once here; hashers only splice in their nonce.
+ */
+public final class MiningWork {
+
+    /**
+     * Counts up with every published change, whatever changed.
+     */
+    public final long epoch;
+    public final String block;
+    public final BigInteger difficulty;
+    public final long difficultyValue;
+    public final String difficultyString;
+    public final long limit;
+    public final String publicKey;
+    public final long height;
+    /**
+     * {@code publicKey-}
+     */
+    private final byte[] head;
+    /**
+     * {@code -block-difficulty}
+     */
+    private final byte[] tail;
+
+    public MiningWork(long epoch, String block, BigInteger difficulty, long limit, String publicKey, long height) {
+        this.epoch = epoch;
+        this.block = block;
+        this.difficulty = difficulty;
+        this.difficultyValue = Duration.fastDifficulty(difficulty);
+        this.difficultyString = difficulty.toString();
+        this.limit = limit;
+        this.publicKey = publicKey;
+        this.height = height;
+        this.head = (publicKey + "-").getBytes();
+        this.tail = ("-" + block + "-" + difficultyString).getBytes();
+    }
+
+    /**
+     * Whether hashes done on {@code other} still count for this block. A changed limit or difficulty alone
+     * does not make them stale.
+     */
+    public boolean sameBlock(MiningWork other) {
+        return other != null && (other == this || (height == other.height && block.equals(other.block)));
+    }
+
+    /**
+     * A new Argon2 password {@code publicKey-nonce-block-difficulty} with the next nonce of {@code nonces}.
+     */
+    HashBase newBase(NonceGenerator nonces) {
+        byte[] prefix = new byte[head.length + NonceGenerator.LENGTH + tail.length];
+        System.arraycopy(head, 0, prefix, 0, head.length);
+        nonces.fill(prefix, head.length);
+        System.arraycopy(tail, 0, prefix, head.length + NonceGenerator.LENGTH, tail.length);
+        return new HashBase(this, prefix, head.length, NonceGenerator.LENGTH);
+    }
+
+    @Override
+    public String toString() {
+        return "#" + epoch + " height " + height + " difficulty " + difficultyString + " limit " + limit;
+    }
+}
@@ -0,0 +1,60 @@
+package com.programmerdan.arionum.arionum_miner;
+
+import de.wuthoehle.argon2jni.Argon2;
+
+/**
+ * libargon2jni, which allocates and frees the memory matrix inside every hash.
+ */
+final class NativeArgon2Engine implements Argon2Engine {
+
+    private static volatile Boolean available;
+
+    private final Argon2 context;
+    private String encoded;
+
+    NativeArgon2Engine() {
+        context = new Argon2(Argon2Engine.SECURITY_PARAMETERS, 32, Argon2.TypeIdentifiers.ARGON2I, Argon2.VersionIdentifiers.VERSION_13);
+    }
+
+    /**
+     * Whether libargon2jni loads on this device and passes its self-test. Checked once; {@link Argon2} itself
+     * would fail in its static initializer and stay unusable. A build that fails the self-test is not used,
+     * this process hashes in Java instead.
+     */
+    static synchronized boolean isAvailable() {
+        if (available == null) {
+            try {
+                if (Argon2.selfTest()) {
+                    available = Boolean.TRUE;
+                } else {
+                    System.err.println("libargon2jni failed its self-test, hashing in Java");
+                    available = Boolean.FALSE;
+                }
+            } catch (Throwable e) {
+                System.err.println("libargon2jni unavailable, hashing in Java: " + e.getMessage());
+                available = Boolean.FALSE;
+            }
+        }
+        return available;
+    }
+
+    @Override
+    public void hash(byte[] password) {
+        encoded = context.argon2_hash(password).getEncoded();
+    }
+
+    @Override
+    public int append(HashBase base) {
+        return base.append(encoded);
+    }
+
+    @Override
+    public void release() {
+        // nothing outlives a hash
+    }
+
+    @Override
+    public String getName() {
+        return "native";
+    }
+}
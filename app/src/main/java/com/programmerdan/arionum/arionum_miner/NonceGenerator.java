@@ -0,0 +1,89 @@
+package com.programmerdan.arionum.arionum_miner;
+
+import java.security.SecureRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Alphanumeric nonces written straight into a hash base, one generator per thread.
+ * <p>
+ * A nonce is {@link #LENGTH} characters: the generator's id, a per-generator counter and random filler from a
+ * xorshift128+ seeded once from {@link SecureRandom}. Id and counter make every nonce of this process unique
+ * (the first {@value #MAX_GENERATORS} generators, {@value #COUNTER_CHARS} counter digits each), the filler
+ * keeps different workers and restarts apart. Nothing is allocated per nonce.
+ */
+public final class NonceGenerator {
+
+    public static final int LENGTH = 40;
+    static final int ID_CHARS = 3;
+    static final int COUNTER_CHARS = 8;
+    static final int MAX_GENERATORS = 62 * 62 * 62;
+    private static final byte[] ALPHABET = "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz".getBytes();
+    /**
+     * 62^10 fits in 63 bits, so one draw gives ten characters.
+     */
+    private static final int CHARS_PER_DRAW = 10;
+
+    private static final SecureRandom SEED = new SecureRandom();
+    private static final AtomicInteger IDS = new AtomicInteger();
+    private static final ThreadLocal<NonceGenerator> PER_THREAD = new ThreadLocal<NonceGenerator>() {
+        @Override
+        protected NonceGenerator initialValue() {
+            return new NonceGenerator();
+        }
+    };
+
+    private final int id;
+    private long counter;
+    private long s0;
+    private long s1;
+
+    NonceGenerator() {
+        this.id = IDS.getAndIncrement() % MAX_GENERATORS;
+        synchronized (SEED) {
+            do {
+                s0 = SEED.nextLong();
+                s1 = SEED.nextLong();
+            } while (s0 == 0l && s1 == 0l);
+        }
+    }
+
+    /**
+     * The calling thread's generator. Hashers that succeed each other on a thread share it, and so its counter.
+     */
+    public static NonceGenerator forCurrentThread() {
+        return PER_THREAD.get();
+    }
+
+    /**
+     * Write the next nonce into {@code into} at {@code offset}, {@link #LENGTH} bytes.
+     */
+    public void fill(byte[] into, int offset) {
+        int at = encode(id, ID_CHARS, into, offset);
+        at = encode(counter++, COUNTER_CHARS, into, at);
+        int end = offset + LENGTH;
+        while (at < end) {
+            long draw = next() >>> 1;
+            for (int i = 0; i < CHARS_PER_DRAW && at < end; i++) {
+                into[at++] = ALPHABET[(int) (draw % 62l)];
+                draw /= 62l;
+            }
+        }
+    }
+
+    private static int encode(long value, int digits, byte[] into, int at) {
+        for (int i = digits - 1; i >= 0; i--) {
+            into[at + i] = ALPHABET[(int) (value % 62l)];
+            value /= 62l;
+        }
+        return at + digits;
+    }
+
+    private long next() {
+        long x = s0;
+        long y = s1;
+        s0 = y;
+        x ^= x << 23;
+        s1 = x ^ y ^ (x >>> 17) ^ (y >>> 26);
+        return s1 + y;
+    }
+}
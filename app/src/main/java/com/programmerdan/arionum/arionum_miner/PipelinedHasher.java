@@ -0,0 +1,218 @@
+package com.programmerdan.arionum.arionum_miner;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.locks.LockSupport;
+
+import de.wuthoehle.argon2jni.Argon2;
+
+/**
+ * Argon2 stage of a {@link HashPipeline}. Takes a prepared hash base, runs one Argon2 hash and queues it for
+ * the post stage while the next hash is already running. Two jobs are in flight per hasher; when both are
+ * still with the post stage the hasher waits, which only happens if the post stage falls a whole hash behind.
+ */
+public class PipelinedHasher extends Hasher {
+
+    static final int JOBS_IN_FLIGHT = 2;
+    static final long DRAIN_TIMEOUT = 5000l;
+
+    private final Argon2 context;
+    private final HashPipeline pipeline;
+    private final BoundedRing<HashPipeline.Job> free;
+    private final byte[] digest = new byte[HashBase.DIGEST_LENGTH];
+    private volatile Thread worker;
+    private MessageDigest sha512;
+    int argos = 0;
+
+    public PipelinedHasher(Miner parent, String id, long target, long maxTime) {
+        super(parent, id, target, maxTime);
+        context = new Argon2(Argon2Engine.SECURITY_PARAMETERS, 32, Argon2.TypeIdentifiers.ARGON2I, Argon2.VersionIdentifiers.VERSION_13);
+        pipeline = parent.getPipeline();
+        free = new BoundedRing<HashPipeline.Job>(JOBS_IN_FLIGHT);
+        for (int i = 0; i < JOBS_IN_FLIGHT; i++) {
+            free.offer(new HashPipeline.Job(this));
+        }
+    }
+
+    @Override
+    public void newHeight(long oldBlockHeight, long newBlockHeight) {
+
+    }
+
+    @Override
+    public void go() {
+        boolean doLoop = true;
+        this.hashBegin = System.currentTimeMillis();
+        this.worker = Thread.currentThread();
+
+        this.parent.hasherCount.getAndIncrement();
+
+        try {
+            sha512 = MessageDigest.getInstance("SHA-512");
+        } catch (NoSuchAlgorithmException e1) {
+            System.err.println("Unable to find SHA-512 algorithm! Fatal error.");
+            e1.printStackTrace();
+            active = false;
+            doLoop = false;
+        }
+        if (active) {
+            parent.workerInit(id);
+        }
+
+        long statCycle = 0l;
+        long statBegin = 0l;
+        long statArgonBegin = 0l;
+        long statArgonEnd = 0l;
+
+        try {
+            boolean bound = true;
+            while (doLoop && active && !retired && !parent.isOutdated(this)) {
+                long paused = parent.awaitRunning();
+                if (paused < 0) {
+                    break;
+                }
+                this.hashBegin += paused;
+                statCycle = System.currentTimeMillis();
+                statBegin = System.nanoTime();
+                if (!refreshWork()) {
+                    LockSupport.parkNanos(this, MappedHasher.NO_WORK_PARK);
+                    continue;
+                }
+                try {
+                    HashPipeline.Job job = takeJob();
+                    if (job == null) {
+                        break;
+                    }
+                    HashPipeline.Prepared prepared = pipeline.nextBase(this.work);
+                    if (prepared != null) {
+                        job.base = prepared.base;
+                        this.prepTime += prepared.prepNanos;
+                    } else {
+                        long prepBegin = System.nanoTime();
+                        job.base = this.work.newBase(NonceGenerator.forCurrentThread());
+                        this.prepTime += System.nanoTime() - prepBegin;
+                    }
+                    job.work = this.work;
+                    job.difficulty = this.difficulty;
+                    job.difficultyValue = this.difficultyValue;
+                    job.limit = this.limit;
+                    job.caller = this.caller;
+                    job.type = getType();
+
+                    statArgonBegin = System.nanoTime();
+                    job.encoded = context.argon2_hash(job.base.prefix).getEncoded();
+                    statArgonEnd = System.nanoTime();
+                    this.argonTime += statArgonEnd - statArgonBegin;
+                    pipeline.recordArgon(statArgonEnd - statArgonBegin);
+
+                    if (!pipeline.submit(job)) {
+                        job.process(sha512, digest, parent);
+                        fold(job);
+                        free.offer(job);
+                    }
+                    this.nonArgonTime += (statArgonBegin - statBegin) + (System.nanoTime() - statArgonEnd);
+                    parent.getHashrateMeter().recordLatency(System.nanoTime() - statBegin);
+
+                    if (argos > this.recycleAfter) {
+                        argos = 0;
+                        doLoop = false;
+                        this.hashEnd = System.currentTimeMillis();
+                        this.hashTime = this.hashEnd - this.hashBegin;
+                        this.hashBegin = System.currentTimeMillis();
+                        completeSession();
+                        this.loopTime = 0l;
+                    }
+                } catch (Exception e) {
+                    System.err.println("WORKER FAILED! " + e.getMessage() + " at " + e.getStackTrace()[0]);
+                    e.printStackTrace();
+                    doLoop = false;
+                }
+                this.loopTime += System.currentTimeMillis() - statCycle;
+
+                if (this.hashCount > this.targetHashCount || this.loopTime > this.maxTime) {
+                    if (!bound) {
+                        doLoop = false;
+                    } else {
+                        this.hashEnd = System.currentTimeMillis();
+                        this.hashTime = this.hashEnd - this.hashBegin;
+                        this.hashBegin = System.currentTimeMillis();
+                        completeSession();
+                        this.loopTime = 0l;
+                    }
+                }
+            }
+        } catch (Throwable e) {
+            e.printStackTrace();
+        }
+
+        awaitJobs();
+        this.hashEnd = System.currentTimeMillis();
+        this.hashTime = this.hashEnd - this.hashBegin;
+        this.parent.hasherCount.decrementAndGet();
+    }
+
+    /**
+     * Called by the post stage when it is done with one of our jobs.
+     */
+    void recycle(HashPipeline.Job job) {
+        free.offer(job);
+        Thread waiting = worker;
+        if (waiting != null) {
+            LockSupport.unpark(waiting);
+        }
+    }
+
+    /**
+     * Next free job with the results of its previous hash folded into this session. Waits while both jobs are
+     * with the post stage.
+     *
+     * @return null if the pipeline stopped and no job came back
+     */
+    private HashPipeline.Job takeJob() {
+        HashPipeline.Job job;
+        while ((job = free.poll()) == null) {
+            if (!pipeline.isRunning() || !active) {
+                return null;
+            }
+            LockSupport.parkNanos(this, HashPipeline.IDLE_PARK);
+        }
+        fold(job);
+        return job;
+    }
+
+    private void fold(HashPipeline.Job job) {
+        this.hashCount += job.hashes;
+        this.argos += (int) job.hashes;
+        this.shaTime += job.shaTime;
+        this.postTime += job.postTime;
+        this.shares += job.shares;
+        this.finds += job.finds;
+        this.staleHashes += job.staleHashes;
+        if (job.bestDL < this.bestDL) {
+            this.bestDL = job.bestDL;
+        }
+        job.reset();
+        publish();
+    }
+
+    /**
+     * Wait for hashes still with the post stage so their shares count toward this hasher.
+     */
+    private void awaitJobs() {
+        long deadline = System.currentTimeMillis() + DRAIN_TIMEOUT;
+        int returned = 0;
+        while (returned < JOBS_IN_FLIGHT && System.currentTimeMillis() < deadline) {
+            HashPipeline.Job job = free.poll();
+            if (job != null) {
+                fold(job);
+                returned++;
+            } else {
+                LockSupport.parkNanos(this, HashPipeline.IDLE_PARK);
+            }
+        }
+    }
+
+    public String getType() {
+        return "CPU";
+    }
+}
@@ -0,0 +1,65 @@
+package com.programmerdan.arionum.arionum_miner;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.net.HttpURLConnection;
+import java.net.URL;
+
+/**
+ * Asks {@code mine.php?q=info} every {@link Miner#UPDATING_DELAY}, the miner's original behaviour.
+ */
+public class PollingWorkSource implements WorkSource {
+
+    static final int CONNECT_TIMEOUT = 1000;
+    static final int READ_TIMEOUT = 10000;
+
+    @Override
+    public WorkInfo fetch(String infoUrl, WorkInfo current) throws IOException {
+        return get(infoUrl, READ_TIMEOUT);
+    }
+
+    @Override
+    public long nextDelay(WorkInfo previous, WorkInfo latest, boolean failed) {
+        return Miner.UPDATING_DELAY;
+    }
+
+    /**
+     * The block appeared at some point between the previous answer and this one; on average halfway, plus
+     * the time the answer took to reach us.
+     */
+    @Override
+    public long changeLatency(WorkInfo previous, WorkInfo latest) {
+        if (previous == null) {
+            return 0l;
+        }
+        return (latest.requestedAt - previous.receivedAt) / 2l + latest.responseTime();
+    }
+
+    @Override
+    public String getName() {
+        return "poll";
+    }
+
+    /**
+     * Parse the body as it arrives and close it, so the connection can be kept alive for the next fetch.
+     */
+    protected WorkInfo get(String url, int readTimeout) throws IOException {
+        long requestedAt = System.currentTimeMillis();
+        HttpURLConnection connect = (HttpURLConnection) new URL(url).openConnection();
+        connect.setConnectTimeout(CONNECT_TIMEOUT);
+        connect.setReadTimeout(readTimeout);
+        connect.setRequestProperty("Connection", "keep-alive");
+
+        Reader reader = new InputStreamReader(connect.getInputStream(), "UTF-8");
+        try {
+            WorkInfo info = WorkInfo.parse(reader, requestedAt);
+            // drain whatever follows so the connection can be reused
+            while (reader.read() >= 0) {
+            }
+            return info;
+        } finally {
+            reader.close();
+        }
+    }
+}
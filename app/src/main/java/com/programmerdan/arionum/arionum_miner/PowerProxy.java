@@ -0,0 +1,151 @@
+package com.programmerdan.arionum.arionum_miner;
+
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.os.BatteryManager;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.lang.reflect.Method;
+
+/**
+ * Stand-in for power draw while a profile runs, good enough to rank profiles against each other on the same
+ * device. Uses the battery's instantaneous current (BatteryManager, API 21+) when it can be read, otherwise
+ * the process CPU time in busy cores plus one core for everything that runs regardless (screen, radio), so
+ * more workers are not judged only by their marginal cost. The source is picked once so all profiles are
+ * measured the same way.
+ * <p>
+ * While a charger is plugged in the battery current is the charger's, not the miner's draw. The first sample
+ * taken while plugged in switches to the CPU time source for good, see {@link #usesBattery()}.
+ */
+public class PowerProxy {
+
+    private static final int BATTERY_PROPERTY_CURRENT_NOW = 2;
+    private static final double CLOCK_TICKS = 100d;
+    private static final double BASELINE_CORES = 1d;
+
+    private final Context context;
+    private Object battery;
+    private Method currentNow;
+    private long cpuBegin;
+    private long wallBegin;
+    private double currentSum;
+    private int currentSamples;
+
+    public PowerProxy(Context context) {
+        Object manager = null;
+        Method method = null;
+        if (context != null) {
+            try {
+                manager = context.getSystemService(Context.BATTERY_SERVICE);
+                method = manager.getClass().getMethod("getIntProperty", int.class);
+                int probe = (Integer) method.invoke(manager, BATTERY_PROPERTY_CURRENT_NOW);
+                if (probe == 0 || probe == Integer.MIN_VALUE) {
+                    // not reported by this device
+                    manager = null;
+                    method = null;
+                }
+            } catch (Throwable e) {
+                manager = null;
+                method = null;
+            }
+        }
+        this.context = context == null ? null : context.getApplicationContext();
+        this.battery = manager;
+        this.currentNow = method;
+        if (isPlugged()) {
+            useCpuTime();
+        }
+    }
+
+    /**
+     * Whether measurements are in milliamps. Turns false once a charger is seen, and then stays false;
+     * measurements taken before that are in other units.
+     */
+    public boolean usesBattery() {
+        return battery != null;
+    }
+
+    public void begin() {
+        if (battery != null && isPlugged()) {
+            useCpuTime();
+        }
+        cpuBegin = cpuTicks();
+        wallBegin = System.currentTimeMillis();
+        currentSum = 0d;
+        currentSamples = 0;
+    }
+
+    /**
+     * Call regularly while the profile runs; only the battery source needs it.
+     */
+    public void sample() {
+        if (battery == null) {
+            return;
+        }
+        if (isPlugged()) {
+            // begin() read the CPU ticks as well, so this measurement still ends in the new units
+            useCpuTime();
+            return;
+        }
+        try {
+            int microAmps = (Integer) currentNow.invoke(battery, BATTERY_PROPERTY_CURRENT_NOW);
+            currentSum += Math.abs((double) microAmps) / 1000d;
+            currentSamples++;
+        } catch (Throwable ignored) {
+        }
+    }
+
+    /**
+     * @return average milliamps, or busy cores plus the baseline; 0 if nothing could be measured
+     */
+    public double end() {
+        if (battery != null) {
+            return currentSamples > 0 ? currentSum / currentSamples : 0d;
+        }
+        long cpuEnd = cpuTicks();
+        long wall = System.currentTimeMillis() - wallBegin;
+        if (cpuBegin < 0 || cpuEnd < 0 || wall <= 0) {
+            return 0d;
+        }
+        double busyCores = ((cpuEnd - cpuBegin) / CLOCK_TICKS) / (wall / 1000d);
+        return busyCores + BASELINE_CORES;
+    }
+
+    private void useCpuTime() {
+        System.out.println("Charger plugged in, measuring power by CPU time");
+        battery = null;
+        currentNow = null;
+    }
+
+    /**
+     * Whether a charger is connected, read from the sticky battery broadcast. False if it cannot be read.
+     */
+    private boolean isPlugged() {
+        if (context == null) {
+            return false;
+        }
+        try {
+            Intent status = context.registerReceiver(null, new IntentFilter(Intent.ACTION_BATTERY_CHANGED));
+            return status != null && status.getIntExtra(BatteryManager.EXTRA_PLUGGED, 0) != 0;
+        } catch (Throwable e) {
+            return false;
+        }
+    }
+
+    /**
+     * utime plus stime of this process in clock ticks, -1 if unavailable.
+     */
+    static long cpuTicks() {
+        try {
+            BufferedReader reader = new BufferedReader(new FileReader("/proc/self/stat"));
+            String stat = reader.readLine();
+            reader.close();
+            String[] fields = stat.substring(stat.lastIndexOf(')') + 2).split(" ");
+            return Long.parseLong(fields[11]) + Long.parseLong(fields[12]);
+        } catch (Exception e) {
+            return -1l;
+        }
+    }
+}
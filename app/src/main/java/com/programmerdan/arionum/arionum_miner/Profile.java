@@ -2,14 +2,24 @@ package com.programmerdan.arionum.arionum_miner;
 
 import java.util.Arrays;
 
+/**
+ * One miner configuration under evaluation by the auto-tuner: worker count and types, session length and
+ * pipelined or serial hashing, plus what it achieved while it ran.
+ */
 public class Profile implements Comparable<Profile> {
     AdvMode[] workerTypes;
+    long sessionLength;
+    boolean pipelined;
     long hashes;
     long sampleBegin;
     long samplePlannedEnd;
     long sampleTime;
     double rate;
     double TiC;
+    /**
+     * Average power proxy over the sample, see {@link PowerProxy}. 0 until measured.
+     */
+    double power;
 
     public Profile(int workers) {
         workerTypes = new AdvMode[workers];
@@ -29,6 +39,26 @@ public class Profile implements Comparable<Profile> {
         this.samplePlannedEnd = 0;
     }
 
+    /**
+     * A profile with {@code workers} workers of {@code type} and the given settings.
+     */
+    public Profile(AdvMode type, int workers, long sessionLength, boolean pipelined) {
+        this(workers);
+        Arrays.fill(workerTypes, type);
+        this.sessionLength = sessionLength;
+        this.pipelined = pipelined;
+    }
+
+    /**
+     * Same settings, not yet measured.
+     */
+    public Profile copy() {
+        Profile copy = new Profile(workerTypes.clone());
+        copy.sessionLength = sessionLength;
+        copy.pipelined = pipelined;
+        return copy;
+    }
+
     public void begin() {
         long now = System.currentTimeMillis();
         this.sampleBegin = now + Miner.INIT_DELAY;
@@ -53,6 +83,18 @@ public class Profile implements Comparable<Profile> {
         return workerTypes;
     }
 
+    public int getWorkerCount() {
+        return workerTypes.length;
+    }
+
+    public long getSessionLength() {
+        return sessionLength;
+    }
+
+    public boolean isPipelined() {
+        return pipelined;
+    }
+
     public void register(int idx, AdvMode worker) {
         this.workerTypes[idx] = worker;
     }
@@ -64,7 +106,7 @@ public class Profile implements Comparable<Profile> {
     }
 
     public double getHashSec() {
-        return getRawRate() / 1000d;
+        return getRawRate() * 1000d;
     }
 
     public double getRawRate() {
@@ -84,19 +126,52 @@ public class Profile implements Comparable<Profile> {
         return hashes;
     }
 
+    public double getPower() {
+        return power;
+    }
+
+    /**
+     * Sustained hashrate per unit of the power proxy, or the plain hashrate while power is unknown.
+     */
+    public double getScore() {
+        double hashSec = getHashSec();
+        return power > 0d ? hashSec / power : hashSec;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (o instanceof Profile) {
             Profile p = (Profile) o;
-            return p == this || (Arrays.deepEquals(p.workerTypes, this.workerTypes));
+            return p == this || (Arrays.deepEquals(p.workerTypes, this.workerTypes)
+                    && p.sessionLength == this.sessionLength && p.pipelined == this.pipelined);
         }
 
         return false;
     }
 
+    @Override
+    public int hashCode() {
+        int hash = Arrays.hashCode(workerTypes);
+        hash = 31 * hash + (int) (sessionLength ^ (sessionLength >>> 32));
+        return 31 * hash + (pipelined ? 1 : 0);
+    }
+
+    /**
+     * Orders by score. Different settings with the same score are still distinct, so a sorted set keeps both.
+     */
     @Override
     public int compareTo(Profile o) {
-        return Double.compare(this.getRawRate(), o.getRawRate());
+        int byScore = Double.compare(this.getScore(), o.getScore());
+        if (byScore != 0 || equals(o)) {
+            return byScore;
+        }
+        return toString().compareTo(o.toString());
+    }
+
+    @Override
+    public String toString() {
+        return workerTypes.length + "x" + (workerTypes.length > 0 ? workerTypes[0] : "-") + " session "
+                + sessionLength + "ms" + (pipelined ? " pipelined" : " serial");
     }
 
     enum Status {
@@ -0,0 +1,146 @@
+package com.programmerdan.arionum.arionum_miner;
+
+/**
+ * Sizes hasher sessions so they last a target wall time. Session boundaries are where a hasher flushes its
+ * stats, picks up retirement and memory trims, and where the miner notices a hasher is hashing stale work, so
+ * sessions that run long waste hashes on old blocks while short ones spend their time on overhead.
+ * <p>
+ * Feed-forward from a smoothed per-hash latency (EWMA), plus an integral term on the relative session length
+ * error that takes out what the latency alone misses (session bookkeeping, time between batches). The target
+ * stays within the miner's session bounds. Every change is published as an immutable {@link Decision}.
+ */
+public class SessionController {
+
+    private static final double LATENCY_ALPHA = 0.2d;
+    private static final double INTEGRAL_GAIN = 0.1d;
+    private static final double INTEGRAL_LIMIT = 0.5d;
+    /**
+     * A hasher is replaced after this many sessions without a share; at the default session length this is
+     * about the 400 hashes it used to be.
+     */
+    static final long RECYCLE_SESSIONS = 40l;
+
+    private final long minLength;
+    private final long maxLength;
+    private final long minHashes;
+    private final long initialHashes;
+    private long target;
+    private double latency;
+    private double integral;
+    private long sessions;
+    private volatile Decision decision;
+
+    /**
+     * @param initialHashes session size until the first sessions have been timed
+     */
+    public SessionController(long target, long minLength, long maxLength, long minHashes, long initialHashes) {
+        this.minLength = minLength;
+        this.maxLength = maxLength;
+        this.minHashes = minHashes;
+        this.initialHashes = initialHashes;
+        this.target = clamp(target);
+        this.decision = decide("initial");
+    }
+
+    /**
+     * What hashers should do from their next session on.
+     */
+    public static class Decision {
+        public final long targetLength;
+        public final long hashesPerSession;
+        /**
+         * Hard wall time cap for a session, in case hashing slows down before the controller catches up.
+         */
+        public final long maxTime;
+        public final long recycleHashes;
+        /**
+         * Smoothed milliseconds per hash of one hasher, 0 until the first session.
+         */
+        public final double latency;
+        public final double correction;
+        public final String reason;
+
+        Decision(long targetLength, long hashesPerSession, long maxTime, long recycleHashes, double latency,
+                 double correction, String reason) {
+            this.targetLength = targetLength;
+            this.hashesPerSession = hashesPerSession;
+            this.maxTime = maxTime;
+            this.recycleHashes = recycleHashes;
+            this.latency = latency;
+            this.correction = correction;
+            this.reason = reason;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("target %dms, %d hashes (%.0fms/hash, %+.0f%%), cap %dms, recycle after %d, %s",
+                    targetLength, hashesPerSession, latency, correction * 100d, maxTime, recycleHashes, reason);
+        }
+    }
+
+    /**
+     * Sessions that finished since the last record, summed over all hashers.
+     *
+     * @param hashes total hashes of those sessions
+     * @param time   total wall time of those sessions
+     * @param count  how many sessions
+     */
+    public synchronized void record(long hashes, long time, long count) {
+        if (hashes <= 0 || time <= 0 || count <= 0) {
+            return;
+        }
+        double perHash = (double) time / (double) hashes;
+        latency = latency > 0d ? latency + LATENCY_ALPHA * (perHash - latency) : perHash;
+
+        double error = (double) (target - time / count) / (double) target;
+        integral += INTEGRAL_GAIN * error;
+        if (integral > INTEGRAL_LIMIT) {
+            integral = INTEGRAL_LIMIT;
+        } else if (integral < -INTEGRAL_LIMIT) {
+            integral = -INTEGRAL_LIMIT;
+        }
+        sessions += count;
+    }
+
+    /**
+     * Publish a new decision from what was recorded since the last one. Called once per miner cycle so all
+     * hashers finishing in between get the same answer.
+     */
+    public synchronized Decision update() {
+        if (sessions > 0) {
+            decision = decide(sessions + " sessions");
+            sessions = 0;
+        }
+        return decision;
+    }
+
+    public synchronized void setTarget(long target) {
+        long clamped = clamp(target);
+        if (clamped != this.target) {
+            this.target = clamped;
+            this.integral = 0d;
+            decision = decide("new target");
+        }
+    }
+
+    public long getTarget() {
+        return decision.targetLength;
+    }
+
+    public Decision getDecision() {
+        return decision;
+    }
+
+    private Decision decide(String reason) {
+        long hashes = initialHashes;
+        if (latency > 0d) {
+            hashes = Math.max(minHashes, Math.round(target * (1d + integral) / latency));
+        }
+        long maxTime = Math.max(target, Math.min(target * 2l, maxLength));
+        return new Decision(target, hashes, maxTime, hashes * RECYCLE_SESSIONS, latency, integral, reason);
+    }
+
+    private long clamp(long length) {
+        return Math.max(minLength, Math.min(maxLength, length));
+    }
+}
@@ -0,0 +1,271 @@
+package com.programmerdan.arionum.arionum_miner;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.BufferedReader;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Sends found nonces to the pool node from one thread instead of one task per share.
+ * <p>
+ * Shares wait in a bounded queue; when it is full the oldest share is dropped, since it is the most likely to
+ * be stale by the time it would be sent. The sender drains the queue back to back over a keep-alive connection
+ * (response bodies are read to the end and never disconnected, so HttpURLConnection can pool the socket).
+ * Failed sends are retried with exponential backoff, and a share whose block height is no longer current is
+ * dropped before every attempt.
+ */
+public class ShareSubmitter {
+
+    static final int QUEUE_CAPACITY = 32;
+    static final int MAX_RETRIES = 4;
+    static final long BACKOFF_BASE = 500l;
+    static final long BACKOFF_MAX = 8000l;
+    static final int CONNECT_TIMEOUT = 5000;
+    static final int READ_TIMEOUT = 10000;
+    static final int LATENCY_SAMPLES = 256;
+
+    private final Miner parent;
+    private final ArrayBlockingQueue<Share> queue;
+    private final LatencyWindow latency;
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong retried = new AtomicLong();
+    private final AtomicLong stale = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final Thread sender;
+    private volatile boolean running;
+
+    public ShareSubmitter(Miner parent) {
+        this.parent = parent;
+        this.queue = new ArrayBlockingQueue<Share>(QUEUE_CAPACITY);
+        this.latency = new LatencyWindow(LATENCY_SAMPLES);
+        this.running = true;
+        this.sender = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                drain();
+            }
+        }, "share-submitter");
+        this.sender.setDaemon(true);
+        this.sender.start();
+    }
+
+    /**
+     * Queue a share, never blocking the hasher that found it.
+     */
+    public void submit(Share share) {
+        if (!running) {
+            return;
+        }
+        while (!queue.offer(share)) {
+            if (queue.poll() != null) {
+                dropped.incrementAndGet();
+                System.err.println("Submit queue full, dropped oldest share");
+            }
+        }
+    }
+
+    public void shutdown() {
+        running = false;
+        sender.interrupt();
+    }
+
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    public long getSent() {
+        return sent.get();
+    }
+
+    public long getRetried() {
+        return retried.get();
+    }
+
+    public long getStale() {
+        return stale.get();
+    }
+
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    public long getFailed() {
+        return failed.get();
+    }
+
+    /**
+     * @return p50, p95 and p99 submit latency in milliseconds over the recent window, -1 while empty
+     */
+    public long[] getLatencyPercentiles() {
+        return latency.percentiles(50d, 95d, 99d);
+    }
+
+    public String describe() {
+        long[] p = getLatencyPercentiles();
+        return "depth " + queue.size() + "/" + QUEUE_CAPACITY + " latency p50 " + p[0] + "ms p95 " + p[1]
+                + "ms p99 " + p[2] + "ms sent " + sent.get() + " retried " + retried.get() + " stale " + stale.get()
+                + " dropped " + dropped.get() + " failed " + failed.get();
+    }
+
+    private void drain() {
+        while (running) {
+            Share share;
+            try {
+                share = queue.poll(1l, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                break;
+            }
+            if (share != null) {
+                send(share);
+            }
+        }
+    }
+
+    private void send(Share share) {
+        int attempt = 0;
+        while (running) {
+            if (share.height != parent.getHeight()) {
+                stale.incrementAndGet();
+                System.out.println("Dropping share for stale height " + share.height);
+                return;
+            }
+            long begin = System.currentTimeMillis();
+            try {
+                String response = post(share);
+                latency.record(System.currentTimeMillis() - begin);
+                sent.incrementAndGet();
+                parent.sessionSubmits.incrementAndGet();
+                if (response == null) {
+                    throw new IOException("Empty response");
+                }
+                JSONObject obj = new JSONObject(response);
+                if ("ok".equals(obj.get("status"))) {
+                    parent.shareAccepted(share, obj.toString(), attempt);
+                } else {
+                    parent.shareRejected(share, obj.toString(), attempt);
+                }
+                return;
+            } catch (IOException e) {
+                System.err.println("Submit failed: " + e.getMessage());
+            } catch (JSONException e) {
+                // the node answered, just not with something we understand; resending will not help
+                e.printStackTrace();
+                return;
+            }
+            if (++attempt > MAX_RETRIES) {
+                failed.incrementAndGet();
+                return;
+            }
+            retried.incrementAndGet();
+            try {
+                Thread.sleep(Math.min(BACKOFF_MAX, BACKOFF_BASE << (attempt - 1)));
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * @return the first line of a 200 response
+     * @throws IOException on transport errors and any other status
+     */
+    private String post(Share share) throws IOException {
+        StringBuilder data = new StringBuilder();
+        data.append(URLEncoder.encode("argon", "UTF-8")).append("=")
+                .append(URLEncoder.encode(share.argon.substring(30), "UTF-8")).append("&");
+        data.append(URLEncoder.encode("nonce", "UTF-8")).append("=")
+                .append(URLEncoder.encode(share.nonce, "UTF-8")).append("&");
+        data.append(URLEncoder.encode("private_key", "UTF-8")).append("=")
+                .append(URLEncoder.encode(share.privateKey, "UTF-8")).append("&");
+        data.append(URLEncoder.encode("public_key", "UTF-8")).append("=")
+                .append(URLEncoder.encode(share.publicKey, "UTF-8")).append("&");
+        data.append(URLEncoder.encode("address", "UTF-8")).append("=")
+                .append(URLEncoder.encode(share.privateKey, "UTF-8")).append("&");
+        data.append(URLEncoder.encode("height", "UTF-8")).append("=")
+                .append(share.height);
+
+        System.out.println("MAKING REQUEST WITH DATA: " + data);
+
+        URL url = new URL(parent.getNode() + "/mine.php?q=submitNonce");
+        HttpURLConnection con = (HttpURLConnection) url.openConnection();
+        con.setConnectTimeout(CONNECT_TIMEOUT);
+        con.setReadTimeout(READ_TIMEOUT);
+        con.setRequestMethod("POST");
+        con.setRequestProperty("Content-type", "application/x-www-form-urlencoded");
+        con.setRequestProperty("Connection", "keep-alive");
+        con.setDoOutput(true);
+        DataOutputStream out = new DataOutputStream(con.getOutputStream());
+        out.writeBytes(data.toString());
+        out.flush();
+        out.close();
+
+        int status = con.getResponseCode();
+        if (status != HttpURLConnection.HTTP_OK) {
+            consume(con.getErrorStream());
+            throw new IOException("HTTP " + status);
+        }
+        InputStream in = con.getInputStream();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, "UTF-8"));
+        try {
+            String line = reader.readLine();
+            while (reader.readLine() != null) {
+                // read to the end so the connection goes back to the pool
+            }
+            return line;
+        } finally {
+            reader.close();
+        }
+    }
+
+    private static void consume(InputStream in) {
+        if (in == null) {
+            return;
+        }
+        try {
+            byte[] skip = new byte[512];
+            while (in.read(skip) >= 0) {
+            }
+            in.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    /**
+     * One found nonce, with the work it was found for.
+     */
+    public static class Share {
+        final String nonce;
+        final String argon;
+        final long submitDL;
+        final long difficulty;
+        final String workerType;
+        final long height;
+        final String publicKey;
+        final String privateKey;
+        final long queuedAt;
+
+        public Share(String nonce, String argon, long submitDL, long difficulty, String workerType, long height,
+                     String publicKey, String privateKey) {
+            this.nonce = nonce;
+            this.argon = argon;
+            this.submitDL = submitDL;
+            this.difficulty = difficulty;
+            this.workerType = workerType;
+            this.height = height;
+            this.publicKey = publicKey;
+            this.privateKey = privateKey;
+            this.queuedAt = System.currentTimeMillis();
+        }
+    }
+}
@@ -0,0 +1,254 @@
+package com.programmerdan.arionum.arionum_miner;
+
+/**
+ * Collects the {@link StatsSlab}s of all hashers and turns them into rolling windows.
+ * <p>
+ * Hashers publish into their own slab without locks. A sampler thread adds the slabs up once a second into a
+ * preallocated ring of totals, enough for the longest window; a window is the difference between the newest
+ * sample and the one at least its span older. Readers pass in a {@link Window} to fill, so neither sampling
+ * nor reading allocates. Totals of hashers that ended are folded into a retired row so they stay counted.
+ */
+public class StatsBoard {
+
+    static final int HASHES = 0;
+    static final int ARGON = 1;
+    static final int SHA = 2;
+    static final int NON_ARGON = 3;
+    static final int SHARES = 4;
+    static final int FINDS = 5;
+    static final int SESSIONS = 6;
+    static final int SESSION_HASHES = 7;
+    static final int SESSION_TIME = 8;
+    static final int PREP = 9;
+    static final int POST = 10;
+    static final int STALE = 11;
+    static final int FIELDS = 12;
+
+    public static final long SECOND = 1000l;
+    public static final long QUARTER_MINUTE = 15000l;
+    public static final long FIVE_MINUTES = 300000l;
+    static final long SAMPLE_PERIOD = 1000l;
+    private static final int RING = (int) (FIVE_MINUTES / SAMPLE_PERIOD) + 2;
+
+    volatile int epoch;
+    private volatile StatsSlab[] slabs = new StatsSlab[0];
+    private final long[] retired = new long[FIELDS];
+    private final long[][] ring = new long[RING][FIELDS];
+    private final long[] ringTime = new long[RING];
+    private final long[] ringBest = new long[RING];
+    private final long[] live = new long[FIELDS];
+    private int newest = -1;
+    private int samples;
+    private final Thread sampler;
+    private volatile boolean running;
+
+    public StatsBoard() {
+        this.running = true;
+        this.sampler = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                while (running) {
+                    sample();
+                    try {
+                        Thread.sleep(SAMPLE_PERIOD);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+            }
+        }, "stats-sampler");
+        this.sampler.setDaemon(true);
+        this.sampler.start();
+    }
+
+    /**
+     * Activity over the last {@link #span} milliseconds, or since some earlier call for
+     * {@link StatsBoard#advance(Window)}.
+     */
+    public static class Window {
+        public final long span;
+        /**
+         * Milliseconds actually covered, shorter than the span until enough samples exist.
+         */
+        public long elapsed;
+        public long hashes;
+        public long argonTime;
+        public long shaTime;
+        public long nonArgonTime;
+        /**
+         * Pipeline prep and post stage time, 0 when not pipelined.
+         */
+        public long prepTime;
+        public long postTime;
+        public long shares;
+        public long finds;
+        /**
+         * Hashes thrown away because their block had changed by the time they finished.
+         */
+        public long staleHashes;
+        public long sessions;
+        public long sessionHashes;
+        public long sessionTime;
+        public long bestDL;
+        private final long[] base = new long[FIELDS];
+        private long baseTime;
+
+        public Window(long span) {
+            this.span = span;
+        }
+
+        public double getHashRate() {
+            return elapsed > 0 ? hashes * 1000d / elapsed : 0d;
+        }
+
+        private double share(long part) {
+            long total = argonTime + nonArgonTime;
+            return total > 0 ? (double) part / (double) total : 0d;
+        }
+
+        /**
+         * Fraction of hashing time spent in Argon2.
+         */
+        public double getArgonShare() {
+            return share(argonTime);
+        }
+
+        public double getShaShare() {
+            return share(shaTime);
+        }
+
+        /**
+         * Everything that is not Argon2, SHA included.
+         */
+        public double getNonArgonShare() {
+            return share(nonArgonTime);
+        }
+
+        void fill(long[] to, long[] from, long time) {
+            elapsed = time;
+            hashes = to[HASHES] - from[HASHES];
+            argonTime = to[ARGON] - from[ARGON];
+            shaTime = to[SHA] - from[SHA];
+            nonArgonTime = to[NON_ARGON] - from[NON_ARGON];
+            prepTime = to[PREP] - from[PREP];
+            postTime = to[POST] - from[POST];
+            shares = to[SHARES] - from[SHARES];
+            finds = to[FINDS] - from[FINDS];
+            staleHashes = to[STALE] - from[STALE];
+            sessions = to[SESSIONS] - from[SESSIONS];
+            sessionHashes = to[SESSION_HASHES] - from[SESSION_HASHES];
+            sessionTime = to[SESSION_TIME] - from[SESSION_TIME];
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%.3f H/s, argon %.0f%% sha %.0f%% other %.0f%%, best DL %s", getHashRate(),
+                    getArgonShare() * 100d, getShaShare() * 100d, (getNonArgonShare() - getShaShare()) * 100d,
+                    bestDL == Long.MAX_VALUE ? "-" : Long.toString(bestDL));
+        }
+    }
+
+    StatsSlab attach() {
+        StatsSlab slab = new StatsSlab(this);
+        synchronized (this) {
+            StatsSlab[] current = slabs;
+            StatsSlab[] next = new StatsSlab[current.length + 1];
+            System.arraycopy(current, 0, next, 0, current.length);
+            next[current.length] = slab;
+            slabs = next;
+        }
+        return slab;
+    }
+
+    synchronized void detach(StatsSlab slab) {
+        StatsSlab[] current = slabs;
+        for (int i = 0; i < current.length; i++) {
+            if (current[i] == slab) {
+                StatsSlab[] next = new StatsSlab[current.length - 1];
+                System.arraycopy(current, 0, next, 0, i);
+                System.arraycopy(current, i + 1, next, i, current.length - i - 1);
+                slab.addTo(retired);
+                slabs = next;
+                return;
+            }
+        }
+    }
+
+    public int getHashers() {
+        return slabs.length;
+    }
+
+    /**
+     * Take one sample into the ring. Runs on the sampler thread; public so tests and benchmarks can step it.
+     */
+    public synchronized void sample() {
+        int slot = (newest + 1) % RING;
+        long[] totals = ring[slot];
+        totals(totals);
+        int closing = epoch;
+        epoch = closing + 1;
+        long best = Long.MAX_VALUE;
+        for (StatsSlab slab : slabs) {
+            long slabBest = slab.bestFor(closing);
+            if (slabBest < best) {
+                best = slabBest;
+            }
+        }
+        ringBest[slot] = best;
+        ringTime[slot] = System.currentTimeMillis();
+        newest = slot;
+        if (samples < RING) {
+            samples++;
+        }
+    }
+
+    /**
+     * Fill {@code out} with its span, ending at the newest sample.
+     */
+    public synchronized void window(Window out) {
+        out.bestDL = Long.MAX_VALUE;
+        if (samples < 2) {
+            out.fill(ring[0], ring[0], 0l);
+            return;
+        }
+        int from = newest;
+        long best = Long.MAX_VALUE;
+        for (int i = 1; i < samples; i++) {
+            int slot = (newest - i + RING) % RING;
+            if (ringBest[from] < best) {
+                best = ringBest[from];
+            }
+            from = slot;
+            if (ringTime[newest] - ringTime[slot] >= out.span) {
+                break;
+            }
+        }
+        out.fill(ring[newest], ring[from], ringTime[newest] - ringTime[from]);
+        out.bestDL = best;
+    }
+
+    /**
+     * Fill {@code out} with everything since the previous call with the same window, from live totals.
+     */
+    public synchronized void advance(Window out) {
+        long now = System.currentTimeMillis();
+        long[] base = out.base;
+        totals(live);
+        out.fill(live, base, out.baseTime > 0 ? now - out.baseTime : 0l);
+        out.bestDL = Long.MAX_VALUE;
+        System.arraycopy(live, 0, base, 0, FIELDS);
+        out.baseTime = now;
+    }
+
+    private void totals(long[] into) {
+        System.arraycopy(retired, 0, into, 0, FIELDS);
+        for (StatsSlab slab : slabs) {
+            slab.addTo(into);
+        }
+    }
+
+    public void shutdown() {
+        running = false;
+        sampler.interrupt();
+    }
+}
@@ -0,0 +1,109 @@
+package com.programmerdan.arionum.arionum_miner;
+
+/**
+ * Running totals of one hasher, written only by the hasher's own thread and read by {@link StatsBoard}.
+ * <p>
+ * One writer means no CAS and no lock: every update is a plain read-add-store. The fields are volatile only
+ * so the board sees them and never reads a torn 64-bit value on 32-bit ARM. The padding classes around the
+ * counters keep each slab on its own cache lines, so hashers on different cores never invalidate each
+ * other's stats.
+ */
+final class StatsSlab extends StatsSlabCounters {
+    long q1, q2, q3, q4, q5, q6, q7;
+
+    StatsSlab(StatsBoard board) {
+        super(board);
+    }
+
+    /**
+     * Add what the hasher did since its last publish.
+     */
+    void add(long hashes, long argonTime, long shaTime, long nonArgonTime, long prepTime, long postTime, long shares,
+             long finds, long staleHashes, long bestDL) {
+        this.hashes = this.hashes + hashes;
+        this.argonTime = this.argonTime + argonTime;
+        this.shaTime = this.shaTime + shaTime;
+        this.nonArgonTime = this.nonArgonTime + nonArgonTime;
+        this.prepTime = this.prepTime + prepTime;
+        this.postTime = this.postTime + postTime;
+        this.shares = this.shares + shares;
+        this.finds = this.finds + finds;
+        this.staleHashes = this.staleHashes + staleHashes;
+
+        int epoch = board.epoch;
+        if (epoch != bestEpoch) {
+            previousBest = best;
+            previousEpoch = bestEpoch;
+            best = Long.MAX_VALUE;
+            bestEpoch = epoch;
+        }
+        if (bestDL < best) {
+            best = bestDL;
+        }
+    }
+
+    /**
+     * A session ended after {@code hashes} hashes and {@code time} milliseconds.
+     */
+    void session(long hashes, long time) {
+        this.sessions = this.sessions + 1;
+        this.sessionHashes = this.sessionHashes + hashes;
+        this.sessionTime = this.sessionTime + time;
+    }
+
+    /**
+     * Best DL this hasher reported during the board's sampling {@code epoch}, MAX_VALUE if none.
+     */
+    long bestFor(int epoch) {
+        if (bestEpoch == epoch) {
+            return best;
+        }
+        if (previousEpoch == epoch) {
+            return previousBest;
+        }
+        return Long.MAX_VALUE;
+    }
+
+    void addTo(long[] totals) {
+        totals[StatsBoard.HASHES] += hashes;
+        totals[StatsBoard.ARGON] += argonTime;
+        totals[StatsBoard.SHA] += shaTime;
+        totals[StatsBoard.NON_ARGON] += nonArgonTime;
+        totals[StatsBoard.PREP] += prepTime;
+        totals[StatsBoard.POST] += postTime;
+        totals[StatsBoard.SHARES] += shares;
+        totals[StatsBoard.FINDS] += finds;
+        totals[StatsBoard.STALE] += staleHashes;
+        totals[StatsBoard.SESSIONS] += sessions;
+        totals[StatsBoard.SESSION_HASHES] += sessionHashes;
+        totals[StatsBoard.SESSION_TIME] += sessionTime;
+    }
+}
+
+abstract class StatsSlabPadding {
+    long p1, p2, p3, p4, p5, p6, p7;
+}
+
+abstract class StatsSlabCounters extends StatsSlabPadding {
+    final StatsBoard board;
+    volatile long hashes;
+    volatile long argonTime;
+    volatile long shaTime;
+    volatile long nonArgonTime;
+    volatile long prepTime;
+    volatile long postTime;
+    volatile long shares;
+    volatile long finds;
+    volatile long staleHashes;
+    volatile long sessions;
+    volatile long sessionHashes;
+    volatile long sessionTime;
+    volatile long best = Long.MAX_VALUE;
+    volatile int bestEpoch;
+    volatile long previousBest = Long.MAX_VALUE;
+    volatile int previousEpoch = -1;
+
+    StatsSlabCounters(StatsBoard board) {
+        this.board = board;
+    }
+}
@@ -0,0 +1,102 @@
+package com.programmerdan.arionum.arionum_miner;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.math.BigInteger;
+
+import arionum.net.cubedpixels.utils.JsonStream;
+
+/**
+ * One answer of {@code mine.php?q=info}, with when it was asked for and when it arrived.
+ */
+public class WorkInfo {
+
+    public final String block;
+    public final BigInteger difficulty;
+    /**
+     * Pool limit, -1 if the node did not send one (solo mining).
+     */
+    public final long limit;
+    public final String publicKey;
+    public final long height;
+    public final long requestedAt;
+    public final long receivedAt;
+
+    public WorkInfo(String block, BigInteger difficulty, long limit, String publicKey, long height,
+                    long requestedAt, long receivedAt) {
+        this.block = block;
+        this.difficulty = difficulty;
+        this.limit = limit;
+        this.publicKey = publicKey;
+        this.height = height;
+        this.requestedAt = requestedAt;
+        this.receivedAt = receivedAt;
+    }
+
+    /**
+     * Pick the fields we use out of the response as it streams in, skipping everything else.
+     *
+     * @throws IOException if the response is malformed, incomplete or its status is not ok
+     */
+    public static WorkInfo parse(Reader response, long requestedAt) throws IOException {
+        JsonStream json = new JsonStream(response);
+        String status = null;
+        String block = null;
+        String difficulty = null;
+        long limit = -1l;
+        String publicKey = null;
+        long height = -1l;
+        json.beginObject();
+        while (json.hasNext()) {
+            String name = json.nextName();
+            if ("status".equals(name)) {
+                status = json.nextString();
+            } else if ("data".equals(name) && json.peek() == JsonStream.Token.BEGIN_OBJECT) {
+                json.beginObject();
+                while (json.hasNext()) {
+                    String field = json.nextName();
+                    if ("block".equals(field)) {
+                        block = json.nextString();
+                    } else if ("difficulty".equals(field)) {
+                        difficulty = json.nextString();
+                    } else if ("limit".equals(field)) {
+                        limit = json.nextLong();
+                    } else if ("public_key".equals(field)) {
+                        publicKey = json.nextString();
+                    } else if ("height".equals(field)) {
+                        height = json.nextLong();
+                    } else {
+                        json.skipValue();
+                    }
+                }
+                json.endObject();
+            } else {
+                json.skipValue();
+            }
+        }
+        json.endObject();
+        if (!"ok".equals(status)) {
+            throw new IOException("Node status: " + status);
+        }
+        if (block == null || difficulty == null || height < 0) {
+            throw new IOException("Incomplete info response");
+        }
+        try {
+            return new WorkInfo(block, new BigInteger(difficulty), limit, publicKey, height, requestedAt,
+                    System.currentTimeMillis());
+        } catch (NumberFormatException e) {
+            throw new IOException("Invalid difficulty " + difficulty);
+        }
+    }
+
+    public boolean sameBlock(WorkInfo other) {
+        return other != null && height == other.height && block.equals(other.block);
+    }
+
+    /**
+     * Round trip of the request, including any time a long-poll was held by the node.
+     */
+    public long responseTime() {
+        return receivedAt - requestedAt;
+    }
+}
@@ -0,0 +1,38 @@
+package com.programmerdan.arionum.arionum_miner;
+
+import java.io.IOException;
+
+/**
+ * Where the miner gets new block work from. The miner calls {@link #fetch} in a loop on its update thread,
+ * waiting {@link #nextDelay} between calls, so an implementation decides both how it asks and how often.
+ *
+ * @see PollingWorkSource
+ * @see AdaptivePollingWorkSource
+ * @see LongPollWorkSource
+ */
+public interface WorkSource {
+
+    /**
+     * Ask the node for work. May block for as long as the implementation's own timeout allows.
+     *
+     * @param infoUrl full {@code mine.php?q=info} URL including worker, address and hashrate parameters
+     * @param current the last work the miner accepted, null before the first answer
+     */
+    WorkInfo fetch(String infoUrl, WorkInfo current) throws IOException;
+
+    /**
+     * @param previous work before the last fetch, null if there was none
+     * @param latest   work after the last fetch, null if it failed
+     * @param failed   whether the last fetch threw
+     * @return milliseconds to wait before the next fetch
+     */
+    long nextDelay(WorkInfo previous, WorkInfo latest, boolean failed);
+
+    /**
+     * Expected delay between a block appearing on the node and the miner seeing it, for a fetch that
+     * returned a new block.
+     */
+    long changeLatency(WorkInfo previous, WorkInfo latest);
+
+    String getName();
+}
@@ -31,6 +31,8 @@ public class Argon2 {
     private int versionid;
     private SecurityParameters securityParameters;
     private int hashlen;
+    private int cachedSaltLength = -1;
+    private int cachedEncodedLength;
 
     /**
      * Construct a class using all default values
@@ -86,6 +88,23 @@ public class Argon2 {
                 Argon2.DefaultTypeIdentifier, Argon2.DefaultVersionIdentifier);
     }
 
+    /**
+     * Check the loaded native build against the reference implementation's Argon2i v1.3 vector
+     * (t=2, m=256 KiB, p=1, "password", "somesalt"). Small enough to run on every start.
+     *
+     * @return true if the build computes the expected hash
+     */
+    public static boolean selfTest() {
+        try {
+            Argon2 argon2 = new Argon2(new SecurityParameters(2, 256, 1), 32, TypeIdentifiers.ARGON2I,
+                    VersionIdentifiers.VERSION_13);
+            String encoded = argon2.argon2_hash("password".getBytes(), "somesalt".getBytes()).getEncoded();
+            return "$argon2i$v=19$m=256,t=2,p=1$c29tZXNhbHQ$iekCn0Y3spW+sCcFanM2xBT63UP2sghkUoHLIUpWRS8".equals(encoded);
+        } catch (Argon2Exception e) {
+            return false;
+        }
+    }
+
     /**
      * Call Argon2's verify function using all default values
      *
@@ -258,7 +277,12 @@ public class Argon2 {
      * @return A size in bytes which is sufficient to hold an encoded hash string
      */
     private int determineValidEncodedLen(byte[] salt) {
-        return determineValidEncodedLen(this.securityParameters, this.hashlen, this.versionid, salt);
+        // Only the salt length varies between calls, so avoid rebuilding the digit strings every hash
+        if (salt.length != this.cachedSaltLength) {
+            this.cachedEncodedLength = determineValidEncodedLen(this.securityParameters, this.hashlen, this.versionid, salt);
+            this.cachedSaltLength = salt.length;
+        }
+        return this.cachedEncodedLength;
     }
 
     /**
@@ -0,0 +1,124 @@
+package arionum.net.cubedpixels.api;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class TransactionStoreTest {
+
+	@Test
+	public void tornLineIsDroppedAndNotJoined() throws IOException {
+		File file = File.createTempFile("transactions", ".tsv");
+		file.deleteOnExit();
+		String first = TransactionStore.line(mined("a", 1l));
+		String torn = TransactionStore.line(mined("b", 2l));
+		write(file, first + '\n' + torn.substring(0, torn.length() - 3));
+
+		TransactionStore store = new TransactionStore(file);
+		assertEquals(1, store.size());
+		assertEquals(1, store.merge(Arrays.asList(mined("c", 3l), mined("a", 1l)), TransactionStore.FIRST_PAGE));
+
+		TransactionStore reloaded = new TransactionStore(file);
+		List<Transaction> page = reloaded.page(0, 10);
+		assertEquals(2, page.size());
+		assertEquals("c", page.get(0).getId());
+		assertEquals("a", page.get(1).getId());
+	}
+
+	@Test
+	public void unparsableLineIsSkipped() throws IOException {
+		File file = File.createTempFile("transactions", ".tsv");
+		file.deleteOnExit();
+		write(file, "x\tnot a height\t0\tcredit\t1\tsrc\tdst\n" + TransactionStore.line(mined("a", 1l)) + '\n');
+
+		List<Transaction> page = new TransactionStore(file).page(0, 10);
+		assertEquals(1, page.size());
+		assertEquals("a", page.get(0).getId());
+	}
+
+	@Test
+	public void pageWithoutKnownTransactionAsksForMore() throws IOException {
+		TransactionStore store = new TransactionStore(emptyFile());
+		assertEquals(1, store.merge(Arrays.asList(mined("a", 1l)), TransactionStore.FIRST_PAGE));
+
+		List<Transaction> newer = new ArrayList<Transaction>();
+		for (int i = TransactionStore.FIRST_PAGE; i > 0; i--) {
+			newer.add(mined("n" + i, 1l + i));
+		}
+		assertEquals(-1, store.merge(newer, TransactionStore.FIRST_PAGE));
+		assertEquals(1, store.size());
+
+		List<Transaction> wider = new ArrayList<Transaction>(newer);
+		wider.add(mined("a", 1l));
+		assertEquals(TransactionStore.FIRST_PAGE,
+				store.merge(wider, TransactionStore.FIRST_PAGE * TransactionStore.GROWTH));
+		assertEquals(TransactionStore.FIRST_PAGE + 1, store.size());
+		assertEquals("n" + TransactionStore.FIRST_PAGE, store.getNewestId());
+	}
+
+	@Test
+	public void pendingIsReplacedBySync() throws IOException {
+		TransactionStore store = new TransactionStore(emptyFile());
+		assertEquals(1, store.merge(Arrays.asList(pending("p1"), mined("a", 1l)), TransactionStore.FIRST_PAGE));
+		assertEquals(2, store.size());
+		assertEquals("p1", store.getNewestId());
+
+		assertEquals(1, store.merge(Arrays.asList(pending("p2"), mined("p1", 2l), mined("a", 1l)),
+				TransactionStore.FIRST_PAGE));
+		List<Transaction> page = store.page(0, 10);
+		assertEquals(3, page.size());
+		assertEquals("p2", page.get(0).getId());
+		assertEquals("p1", page.get(1).getId());
+		assertEquals(false, page.get(1).isPending());
+		assertEquals("a", page.get(2).getId());
+
+		assertEquals(0, store.merge(Arrays.asList(mined("p1", 2l), mined("a", 1l)), TransactionStore.FIRST_PAGE));
+		assertEquals(2, store.size());
+	}
+
+	@Test
+	public void overlapIsNotStoredTwice() throws IOException {
+		File file = emptyFile();
+		TransactionStore store = new TransactionStore(file);
+		assertEquals(2, store.merge(Arrays.asList(mined("b", 2l), mined("a", 1l)), TransactionStore.FIRST_PAGE));
+		assertEquals(1, store.merge(Arrays.asList(mined("c", 3l), mined("b", 2l), mined("a", 1l)),
+				TransactionStore.FIRST_PAGE));
+		assertEquals(0, store.merge(Arrays.asList(mined("c", 3l), mined("b", 2l)), TransactionStore.FIRST_PAGE));
+
+		List<Transaction> page = new TransactionStore(file).page(0, 10);
+		assertEquals(3, page.size());
+		assertEquals("c", page.get(0).getId());
+		assertEquals("b", page.get(1).getId());
+		assertEquals("a", page.get(2).getId());
+	}
+
+	private static Transaction mined(String id, long height) {
+		return new Transaction(id, "1.0", "src", "dst", 1500000000l + height, "credit", height);
+	}
+
+	private static Transaction pending(String id) {
+		return new Transaction(id, "1.0", "src", "dst", 1500000000l, "mempool", 0l);
+	}
+
+	private static File emptyFile() throws IOException {
+		File file = File.createTempFile("transactions", ".tsv");
+		file.deleteOnExit();
+		return file;
+	}
+
+	private static void write(File file, String text) throws IOException {
+		FileOutputStream out = new FileOutputStream(file);
+		try {
+			out.write(text.getBytes("UTF-8"));
+		} finally {
+			out.close();
+		}
+	}
+}
@@ -0,0 +1,53 @@
+package com.programmerdan.arionum.arionum_miner;
+
+import org.junit.Test;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+public class DurationTest {
+
+    private static final int ROUNDS = 200000;
+
+    @Test
+    public void fastPathMatchesBigInteger() {
+        Random random = new Random(42l);
+        byte[] digest = new byte[64];
+        for (int i = 0; i < ROUNDS; i++) {
+            random.nextBytes(digest);
+            // spread difficulties over every magnitude, including ones that force the fallback
+            BigInteger difficulty = new BigInteger(1 + random.nextInt(80), random).add(BigInteger.ONE);
+            assertEquals("difficulty " + difficulty, Duration.computeBigInteger(digest, difficulty),
+                    Duration.compute(digest, Duration.fastDifficulty(difficulty), difficulty));
+        }
+    }
+
+    @Test
+    public void largestDigestValues() {
+        byte[] digest = new byte[64];
+        Arrays.fill(digest, (byte) 0xFF);
+        for (long difficulty : new long[]{1l, 2l, 255l, 1000l, Duration.MAX_FAST_DIFFICULTY}) {
+            BigInteger big = BigInteger.valueOf(difficulty);
+            assertEquals(Duration.computeBigInteger(digest, big), Duration.compute(digest, difficulty, big));
+        }
+    }
+
+    @Test
+    public void zeroDigest() {
+        byte[] digest = new byte[64];
+        BigInteger difficulty = BigInteger.valueOf(7l);
+        assertEquals(0l, Duration.compute(digest, 7l, difficulty));
+    }
+
+    @Test
+    public void unusableDifficultyFallsBack() {
+        byte[] digest = new byte[64];
+        new Random(7l).nextBytes(digest);
+        BigInteger huge = BigInteger.ONE.shiftLeft(70);
+        assertEquals(-1l, Duration.fastDifficulty(huge));
+        assertEquals(Duration.computeBigInteger(digest, huge), Duration.compute(digest, -1l, huge));
+    }
+}
@@ -0,0 +1,73 @@
+package com.programmerdan.arionum.arionum_miner;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import de.wuthoehle.argon2jni.Argon2;
+import de.wuthoehle.argon2jni.SecurityParameters;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assume.assumeTrue;
+
+public class JavaArgon2Test {
+
+    private static final String REFERENCE_ENCODED =
+            "$argon2i$v=19$m=65536,t=2,p=1$c29tZXNhbHQ$wWKIMhR9lyDFvRz9YTZweHKfbftvj+qf+YFY4NeBbtA";
+    private static final String RFC_9106_TAG = "c814d9d1dc7f37aa13f0d77f2494bda1c8de6b016dd388d29952a4c4672b6ce8";
+
+    @Test
+    public void rfc9106Vector() {
+        assertEquals(RFC_9106_TAG, rfcTag());
+    }
+
+    @Test
+    public void referenceEncodedString() {
+        JavaArgon2 argon2 = new JavaArgon2(2, 65536, 1, 32);
+        byte[] encoded = new byte[argon2.encodedLength(8)];
+        int length = argon2.hashEncoded("password".getBytes(), "somesalt".getBytes(), encoded, 0);
+        argon2.release();
+        assertEquals(REFERENCE_ENCODED, new String(encoded, 0, length));
+    }
+
+    @Test
+    public void matchesNative() {
+        assumeTrue(NativeArgon2Engine.isAvailable());
+        byte[] password = "PZ8Tyr4Nx8MHsRAGMpZmZ6TWY63dXWSCzbkmNF4H4efEGMZbQBNPvgHWxUDmAgTZ-test".getBytes();
+        byte[] salt = new byte[JavaArgon2Engine.SALT_LENGTH];
+        new Random(11l).nextBytes(salt);
+
+        JavaArgon2 java = new JavaArgon2(2, 65536, 1, 32);
+        byte[] encoded = new byte[java.encodedLength(salt.length)];
+        int length = java.hashEncoded(password, salt, encoded, 0);
+        java.release();
+
+        String nativeEncoded = new Argon2(new SecurityParameters(2, 65536, 1), 32, Argon2.TypeIdentifiers.ARGON2I,
+                Argon2.VersionIdentifiers.VERSION_13).argon2_hash(password, salt).getEncoded();
+        assertEquals(nativeEncoded, new String(encoded, 0, length));
+    }
+
+    private static String rfcTag() {
+        byte[] password = new byte[32];
+        byte[] salt = new byte[16];
+        byte[] secret = new byte[8];
+        byte[] associatedData = new byte[12];
+        Arrays.fill(password, (byte) 1);
+        Arrays.fill(salt, (byte) 2);
+        Arrays.fill(secret, (byte) 3);
+        Arrays.fill(associatedData, (byte) 4);
+        JavaArgon2 rfc = new JavaArgon2(3, 32, 4, 32, secret, associatedData);
+        byte[] tag = rfc.hash(password, salt);
+        rfc.release();
+        return hex(tag);
+    }
+
+    private static String hex(byte[] data) {
+        StringBuilder hex = new StringBuilder(data.length * 2);
+        for (byte b : data) {
+            hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        }
+        return hex.toString();
+    }
+}
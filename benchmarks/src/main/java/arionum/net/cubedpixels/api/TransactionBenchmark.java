@@ -0,0 +1,121 @@
+package arionum.net.cubedpixels.api;
+
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+/**
+ * Compares the ways of reading a getTransactions response: the old loop that re-parsed the growing body for
+ * every 1 KB chunk, one org.json parse of the complete body, and the streaming reader. Besides the total it
+ * reports how long it took until the first transaction was available.
+ * <p>
+ * Runs on a desktop JVM with the app's api package and org.json on the classpath; the first argument is the
+ * number of transactions in the sample response.
+ */
+public class TransactionBenchmark {
+
+	static final int CHUNK = 1024;
+
+	public static String sampleResponse(int transactions) {
+		StringBuilder response = new StringBuilder(transactions * 400);
+		response.append("{\"status\":\"ok\",\"data\":[");
+		for (int i = 0; i < transactions; i++) {
+			if (i > 0) {
+				response.append(',');
+			}
+			response.append("{\"block\":\"4SxMLLWRCxoL42gqgf2C2x5T5Q1BJhgfQvMsfwrcFAu4owsBYncsvVnBBVqtxVrkqHVZ8nJGrcJB7yWnV92j5Rca\",")
+					.append("\"height\":").append(200000 - i).append(',')
+					.append("\"id\":\"").append(Long.toString(0x5F3759DFL * (i + 1), 36)).append("txid\",")
+					.append("\"dst\":\"4kWXV4HMuogUcjZBEzmmQdtc1dHzta6VykhCV1HWyEXK7kRWEMJLNoMWbuDwFMTfBrq5a9VthkZfmkMkamTfwRBP\",")
+					.append("\"val\":\"").append(i % 97).append(".50000000\",")
+					.append("\"fee\":\"0.00250000\",")
+					.append("\"signature\":\"AN1rKvtGsWbMVf5ygHvtHnHHmJ7kz9xpU2CqDDbTqe5v3BR6cyNJhmEkJyfSMXbyBGBHGMqjENbHPXSRH4XQVmFDvTvxvbhsh\",")
+					.append("\"version\":1,\"message\":\"\",")
+					.append("\"date\":").append(1530000000 + i * 240).append(',')
+					.append("\"public_key\":\"PZ8Tyr4Nx8MHsRAGMpZmZ6TWY63dXWSCzbkmNF4H4efEGMZbQBNPvgHWxUDmAgTZQFLXCqoETRQyj7jTZr9Xyp1FW7qyZmoKGbfB\",")
+					.append("\"src\":\"3LfWqvM3nF2dsYcKSL8nAfTvSHjr6tqXxeDJnaHGT9RjJbF2a6s2gXmhvPfq2aqqC6AEfNS1CHNECMcxtMTt3pQz\",")
+					.append("\"confirmations\":").append(i + 1).append(',')
+					.append("\"type\":\"").append(i % 3 == 0 ? "debit" : "credit").append("\"}");
+		}
+		response.append("]}");
+		return response.toString();
+	}
+
+	/**
+	 * What ApiRequest used to do: after every chunk, close the partial body and parse all of it again.
+	 */
+	public static long prefetchLoop(String response) {
+		long begin = System.nanoTime();
+		long first = -1l;
+		StringBuilder received = new StringBuilder();
+		for (int offset = 0; offset < response.length(); offset += CHUNK) {
+			received.append(response, offset, Math.min(response.length(), offset + CHUNK));
+			try {
+				String s = received.toString();
+				new JSONObject(s.substring(0, s.lastIndexOf("}") + 1) + "]}");
+				if (first < 0 && s.indexOf("\"type\"") >= 0) {
+					first = System.nanoTime() - begin;
+				}
+			} catch (Exception ignored) {
+			}
+		}
+		try {
+			new JSONObject(received.toString());
+		} catch (Exception ignored) {
+		}
+		report("prefetch", System.nanoTime() - begin, first);
+		return first;
+	}
+
+	public static long domOnce(String response) {
+		long begin = System.nanoTime();
+		try {
+			new JSONObject(response);
+		} catch (Exception ignored) {
+		}
+		long elapsed = System.nanoTime() - begin;
+		report("dom", elapsed, elapsed);
+		return elapsed;
+	}
+
+	public static int streaming(String response) throws IOException {
+		final long begin = System.nanoTime();
+		final long[] first = {-1l};
+		int count = ApiRequest.readTransactions(new StringReader(response), new ApiRequest.TransactionFeedback() {
+			@Override
+			public void onTransaction(Transaction transaction) {
+				if (first[0] < 0) {
+					first[0] = System.nanoTime() - begin;
+				}
+			}
+		});
+		report("stream", System.nanoTime() - begin, first[0]);
+		return count;
+	}
+
+	public static void main(String[] args) {
+		run(args.length > 0 ? Integer.parseInt(args[0]) : 1000);
+	}
+
+	public static void run(int transactions) {
+		String response = sampleResponse(transactions);
+		System.out.println("getTransactions benchmark, " + transactions + " transactions, " + (response.length() >> 10) + " KB");
+		try {
+			// first round warms up the JIT, second round is the one to read
+			for (int round = 0; round < 2; round++) {
+				prefetchLoop(response);
+				domOnce(response);
+				streaming(response);
+			}
+		} catch (Exception e) {
+			System.err.println("Transaction benchmark failed: " + e.getMessage());
+			e.printStackTrace();
+		}
+	}
+
+	private static void report(String name, long elapsedNanos, long firstNanos) {
+		System.out.println(String.format("%-10s %10.2f ms total %10.2f ms to first transaction", name,
+				elapsedNanos / 1000000d, firstNanos / 1000000d));
+	}
+}
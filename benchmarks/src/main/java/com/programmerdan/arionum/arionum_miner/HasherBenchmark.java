@@ -0,0 +1,442 @@
+package com.programmerdan.arionum.arionum_miner;
+
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.StringReader;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.Method;
+import java.math.BigInteger;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+import de.wuthoehle.argon2jni.Argon2;
+
+/**
+ * Micro-benchmarks for the hash loop. The loop benchmarks replace Argon2 with a fixed encoded string so the
+ * numbers only reflect what the hasher does around the native call; the argon2 ones need libargon2jni.
+ * <p>
+ * {@link #runSuite(int)} covers the mining hot path piece by piece and needs nothing from Android, so it
+ * runs on a desktop JVM through {@link #main(String[])}, with the app's miner and argon2jni sources on the
+ * classpath. This source root is not part of the app. Each case gets warm-up rounds and then reports the
+ * median of its measured rounds; {@link #toJson(List)} writes the results in a stable format for comparing
+ * versions.
+ */
+public class HasherBenchmark {
+
+    static final String SAMPLE_BASE = "PZ8Tyr4Nx8MHsRAGMpZmZ6TWY63dXWSCzbkmNF4H4efEGMZbQBNPvgHWxUDmAgTZQFLXCqoETRQyj7jTZr9Xyp1FW7qyZmoKGbfB"
+            + "MDBrp3WGzWWsMJddaGGu4ZH9QXA3-0ogiu3Ss0H2bIgN3hNDFXzvr6ifAJa1WJkWWQ9aZ-"
+            + "4h48PJXGZpG3vXQtjM3XSAX2sGV5rjD4VuS1rPrsxMnMhbgBNvi2V4f3Z8CXXvzGv6MtRKmzH3aLnk2Z1rBjWCTrXm-1523200000";
+    static final String SAMPLE_ENCODED = "$argon2i$v=19$m=524288,t=1,p=1$c29tZXNhbHRzb21lc2FsdA$"
+            + "wWKIMhR9lyDFvRz9YTZweHKfbftvj+qf+YFY4NeBbtA";
+    static final BigInteger SAMPLE_DIFFICULTY = new BigInteger("167839249");
+    static final String SAMPLE_INFO = "{\"status\":\"ok\",\"data\":{\"difficulty\":\"167839249\","
+            + "\"block\":\"4h48PJXGZpG3vXQtjM3XSAX2sGV5rjD4VuS1rPrsxMnMhbgBNvi2V4f3Z8CXXvzGv6MtRKmzH3aLnk2Z1rBjWCTrXm\","
+            + "\"height\":61234,\"public_key\":\"PZ8Tyr4Nx8MHsRAGMpZmZ6TWY63dXWSCzbkmNF4H4efEGMZbQBNPvgHWxUDmAgTZ\","
+            + "\"limit\":2400,\"recommendation\":\"mine\",\"argon_mem\":524288,\"argon_threads\":1,"
+            + "\"argon_time\":1},\"coin\":\"arionum\"}";
+    static final String SAMPLE_BASE58 = "PZ8Tyr4Nx8MHsRAGMpZmZ6TWY63dXWSCzbkmNF4H4efEGMZbQBNPvgHWxUDmAgTZ";
+    static final int WARMUP_ROUNDS = 3;
+    static final int MEASURED_ROUNDS = 5;
+    static final int ARGON2_HASHES = 16;
+
+    /**
+     * One benchmark case; returns something derived from its work so the JIT cannot drop it.
+     */
+    abstract static class Case {
+        final String name;
+        /**
+         * Slow cases run only every this many iterations, so one suite size fits all of them.
+         */
+        final int divisor;
+
+        Case(String name) {
+            this(name, 1);
+        }
+
+        Case(String name, int divisor) {
+            this.name = name;
+            this.divisor = divisor;
+        }
+
+        abstract long run(int operations) throws Exception;
+    }
+
+    public static Result legacyLoop(int iterations) throws NoSuchAlgorithmException {
+        MessageDigest sha512 = MessageDigest.getInstance("SHA-512");
+        long sink = 0l;
+        long bytesBefore = allocatedBytes();
+        long begin = System.nanoTime();
+        for (int n = 0; n < iterations; n++) {
+            String base = SAMPLE_BASE;
+            base.getBytes();
+            String hashed_done = base + SAMPLE_ENCODED;
+            byte[] byteBase = sha512.digest(hashed_done.getBytes());
+            for (int i = 0; i < 5; i++) {
+                byteBase = sha512.digest(byteBase);
+            }
+            StringBuilder duration = new StringBuilder(25);
+            duration.append(byteBase[10] & 0xFF).append(byteBase[15] & 0xFF).append(byteBase[20] & 0xFF)
+                    .append(byteBase[23] & 0xFF).append(byteBase[31] & 0xFF).append(byteBase[40] & 0xFF)
+                    .append(byteBase[45] & 0xFF).append(byteBase[55] & 0xFF);
+            sink += new BigInteger(duration.toString()).divide(SAMPLE_DIFFICULTY).longValue();
+        }
+        return new Result("legacy", iterations, System.nanoTime() - begin, allocatedBytes() - bytesBefore, sink);
+    }
+
+    public static Result bufferedLoop(int iterations) throws Exception {
+        MessageDigest sha512 = MessageDigest.getInstance("SHA-512");
+        HashBase base = new HashBase(null, SAMPLE_BASE.getBytes(), 0, 0);
+        byte[] digest = new byte[HashBase.DIGEST_LENGTH];
+        long difficulty = Duration.fastDifficulty(SAMPLE_DIFFICULTY);
+        long sink = 0l;
+        long bytesBefore = allocatedBytes();
+        long begin = System.nanoTime();
+        for (int n = 0; n < iterations; n++) {
+            int length = base.append(SAMPLE_ENCODED);
+            base.digest(sha512, length, digest);
+            sink += Duration.compute(digest, difficulty, SAMPLE_DIFFICULTY);
+        }
+        return new Result("buffered", iterations, System.nanoTime() - begin, allocatedBytes() - bytesBefore, sink);
+    }
+
+    /**
+     * Warm up, then time {@link #MEASURED_ROUNDS} rounds and keep the median.
+     */
+    static Result measure(Case benchmark, int iterations) throws Exception {
+        int operations = Math.max(1, iterations / benchmark.divisor);
+        long sink = 0l;
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            sink += benchmark.run(operations);
+        }
+        long[] elapsed = new long[MEASURED_ROUNDS];
+        long[] allocated = new long[MEASURED_ROUNDS];
+        for (int i = 0; i < MEASURED_ROUNDS; i++) {
+            long bytesBefore = allocatedBytes();
+            long begin = System.nanoTime();
+            sink += benchmark.run(operations);
+            elapsed[i] = System.nanoTime() - begin;
+            allocated[i] = bytesBefore < 0 ? -1l : allocatedBytes() - bytesBefore;
+        }
+        Arrays.sort(elapsed);
+        Arrays.sort(allocated);
+        return new Result(benchmark.name, operations, elapsed[MEASURED_ROUNDS / 2], allocated[MEASURED_ROUNDS / 2], sink);
+    }
+
+    /**
+     * The hot path without Argon2: hash base layout, nonce patching, the SHA-512 chain, both duration paths,
+     * base58 decoding and parsing a {@code mine.php?q=info} answer.
+     */
+    public static List<Result> runSuite(int iterations) throws Exception {
+        WorkInfo info = WorkInfo.parse(new StringReader(SAMPLE_INFO), 0l);
+        final MiningWork work = new MiningWork(0l, info.block, info.difficulty, info.limit, info.publicKey, info.height);
+        final byte[] sampleDigest = sampleDigest();
+        final long fastDifficulty = Duration.fastDifficulty(SAMPLE_DIFFICULTY);
+        Case[] cases = {
+                new Case("base.layout") {
+                    long run(int iterations) {
+                        NonceGenerator nonces = NonceGenerator.forCurrentThread();
+                        long sink = 0l;
+                        for (int n = 0; n < iterations; n++) {
+                            sink += work.newBase(nonces).prefix.length;
+                        }
+                        return sink;
+                    }
+                },
+                new Case("base.patchNonce") {
+                    long run(int iterations) {
+                        NonceGenerator nonces = NonceGenerator.forCurrentThread();
+                        HashBase base = work.newBase(nonces);
+                        long sink = 0l;
+                        for (int n = 0; n < iterations; n++) {
+                            base.patchNonce(nonces);
+                            sink += base.prefix[base.nonceOffset];
+                        }
+                        return sink;
+                    }
+                },
+                new Case("sha512.chain") {
+                    long run(int iterations) throws Exception {
+                        MessageDigest sha512 = MessageDigest.getInstance("SHA-512");
+                        HashBase base = new HashBase(null, SAMPLE_BASE.getBytes(), 0, 0);
+                        byte[] digest = new byte[HashBase.DIGEST_LENGTH];
+                        int length = base.append(SAMPLE_ENCODED);
+                        long sink = 0l;
+                        for (int n = 0; n < iterations; n++) {
+                            base.digest(sha512, length, digest);
+                            sink += digest[10];
+                        }
+                        return sink;
+                    }
+                },
+                new Case("duration.fast") {
+                    long run(int iterations) {
+                        long sink = 0l;
+                        for (int n = 0; n < iterations; n++) {
+                            sink += Duration.compute(sampleDigest, fastDifficulty, SAMPLE_DIFFICULTY);
+                        }
+                        return sink;
+                    }
+                },
+                new Case("duration.bigInteger") {
+                    long run(int iterations) {
+                        long sink = 0l;
+                        for (int n = 0; n < iterations; n++) {
+                            sink += Duration.computeBigInteger(sampleDigest, SAMPLE_DIFFICULTY);
+                        }
+                        return sink;
+                    }
+                },
+                new Case("base58.decode", 100) {
+                    long run(int iterations) {
+                        long sink = 0l;
+                        for (int n = 0; n < iterations; n++) {
+                            sink += Utility.base58_decode(SAMPLE_BASE58).length();
+                        }
+                        return sink;
+                    }
+                },
+                new Case("base58.baseConvert", 100) {
+                    long run(int iterations) {
+                        byte[] digits = new byte[SAMPLE_BASE58.length()];
+                        for (int i = 0; i < digits.length; i++) {
+                            digits[i] = (byte) Utility.base58_chars.indexOf(SAMPLE_BASE58.charAt(i));
+                        }
+                        long sink = 0l;
+                        for (int n = 0; n < iterations; n++) {
+                            sink += Utility.baseConvert(digits, 58, 256).length;
+                        }
+                        return sink;
+                    }
+                },
+                new Case("json.info", 10) {
+                    long run(int iterations) throws Exception {
+                        long sink = 0l;
+                        for (int n = 0; n < iterations; n++) {
+                            sink += WorkInfo.parse(new StringReader(SAMPLE_INFO), 0l).height;
+                        }
+                        return sink;
+                    }
+                }
+        };
+        List<Result> results = new ArrayList<Result>();
+        for (Case benchmark : cases) {
+            results.add(measure(benchmark, iterations));
+        }
+        return results;
+    }
+
+    private static byte[] sampleDigest() throws NoSuchAlgorithmException {
+        MessageDigest sha512 = MessageDigest.getInstance("SHA-512");
+        byte[] digest = sha512.digest((SAMPLE_BASE + SAMPLE_ENCODED).getBytes());
+        for (int i = 0; i < 5; i++) {
+            digest = sha512.digest(digest);
+        }
+        return digest;
+    }
+
+    /**
+     * Results with enough about the build and VM to tell runs apart.
+     */
+    public static String toJson(List<Result> results) {
+        StringBuilder json = new StringBuilder();
+        String version = HasherBenchmark.class.getPackage() == null ? null
+                : HasherBenchmark.class.getPackage().getImplementationVersion();
+        json.append("{\"version\":").append(quote(version == null ? "dev" : version));
+        json.append(",\"vm\":").append(quote(System.getProperty("java.vm.name") + " "
+                + System.getProperty("java.vm.version")));
+        json.append(",\"arch\":").append(quote(System.getProperty("os.arch")));
+        json.append(",\"cores\":").append(Runtime.getRuntime().availableProcessors());
+        json.append(",\"timestamp\":").append(System.currentTimeMillis());
+        json.append(",\"warmupRounds\":").append(WARMUP_ROUNDS);
+        json.append(",\"measuredRounds\":").append(MEASURED_ROUNDS);
+        json.append(",\"results\":[");
+        for (int i = 0; i < results.size(); i++) {
+            Result result = results.get(i);
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"name\":").append(quote(result.name));
+            json.append(",\"iterations\":").append(result.iterations);
+            json.append(",\"nsPerOp\":").append(String.format(Locale.US, "%.2f", result.nanosPerOp()));
+            json.append(",\"bytesPerOp\":").append(String.format(Locale.US, "%.2f", result.bytesPerOp()));
+            json.append(",\"opsPerSecond\":").append(String.format(Locale.US, "%.2f", result.hashesPerSecond()));
+            json.append('}');
+        }
+        return json.append("]}").toString();
+    }
+
+    private static String quote(String value) {
+        return "\"" + value.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+    }
+
+    /**
+     * Desktop entry point: {@code [iterations] [output.json] [--argon2]}. Prints the JSON unless a file is
+     * given; Argon2 cases only with --argon2, the native ones only if libargon2jni is on the library path.
+     */
+    public static void main(String[] args) throws Exception {
+        int iterations = 20000;
+        String output = null;
+        boolean argon2 = false;
+        for (String arg : args) {
+            if ("--argon2".equals(arg)) {
+                argon2 = true;
+            } else if (arg.matches("\\d+")) {
+                iterations = Integer.parseInt(arg);
+            } else {
+                output = arg;
+            }
+        }
+        List<Result> results = runSuite(iterations);
+        if (argon2) {
+            int hashes = ARGON2_HASHES;
+            if (NativeArgon2Engine.isAvailable()) {
+                results.add(argon2Single(hashes));
+                results.add(argon2Engine(new NativeArgon2Engine(), hashes));
+            }
+            results.add(argon2Engine(new JavaArgon2Engine(), hashes));
+        }
+        for (Result result : results) {
+            System.err.println(result);
+        }
+        String json = toJson(results);
+        if (output == null) {
+            System.out.println(json);
+        } else {
+            Writer writer = new OutputStreamWriter(new FileOutputStream(output), "UTF-8");
+            try {
+                writer.write(json);
+            } finally {
+                writer.close();
+            }
+        }
+    }
+
+    public static void runAll(int iterations) {
+        try {
+            // first pass warms up the JIT, second pass is reported
+            legacyLoop(iterations);
+            bufferedLoop(iterations);
+            System.out.println(legacyLoop(iterations));
+            System.out.println(bufferedLoop(iterations));
+            List<Result> suite = runSuite(iterations);
+            for (Result result : suite) {
+                System.out.println(result);
+            }
+            System.out.println(toJson(suite));
+        } catch (Exception e) {
+            System.err.println("Benchmark failed: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Argon2 throughput on OFFICIAL_DEFAULT, one JNI crossing per hash.
+     */
+    public static Result argon2Single(int hashes) {
+        Argon2 argon2 = new Argon2(Argon2.SecurityParameterTemplates.OFFICIAL_DEFAULT, 32, Argon2.TypeIdentifiers.ARGON2I, Argon2.VersionIdentifiers.VERSION_13);
+        byte[] pwd = SAMPLE_BASE.getBytes();
+        long sink = 0l;
+        long bytesBefore = allocatedBytes();
+        long begin = System.nanoTime();
+        for (int n = 0; n < hashes; n++) {
+            sink += argon2.argon2_hash(pwd).getEncoded().length();
+        }
+        long elapsed = System.nanoTime() - begin;
+        return new Result("argon2", hashes, elapsed, allocatedBytes() - bytesBefore, sink);
+    }
+
+    /**
+     * Argon2 throughput of a hasher engine on OFFICIAL_DEFAULT, appended to a hash base the way
+     * {@code MappedHasher} does.
+     */
+    static Result argon2Engine(Argon2Engine engine, int hashes) {
+        HashBase base = new HashBase(null, SAMPLE_BASE.getBytes(), 0, 0);
+        long sink = 0l;
+        // one hash outside the clock, so the matrix allocation is not counted
+        engine.hash(base.prefix);
+        long bytesBefore = allocatedBytes();
+        long begin = System.nanoTime();
+        for (int n = 0; n < hashes; n++) {
+            engine.hash(base.prefix);
+            sink += engine.append(base);
+        }
+        long elapsed = System.nanoTime() - begin;
+        engine.release();
+        return new Result("argon2(" + engine.getName() + ")", hashes, elapsed,
+                bytesBefore < 0 ? -1l : allocatedBytes() - bytesBefore, sink);
+    }
+
+    public static void runArgon2(int hashes) {
+        try {
+            System.out.println(argon2Engine(new JavaArgon2Engine(), hashes));
+            if (!NativeArgon2Engine.isAvailable()) {
+                return;
+            }
+            System.out.println(argon2Single(hashes));
+            System.out.println(argon2Engine(new NativeArgon2Engine(), hashes));
+        } catch (Throwable e) {
+            System.err.println("Argon2 benchmark failed: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Bytes allocated so far by the calling thread on a HotSpot JVM, or by the whole process on ART.
+     * Returns -1 when neither counter is available.
+     */
+    static long allocatedBytes() {
+        try {
+            ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+            Method method = Class.forName("com.sun.management.ThreadMXBean")
+                    .getMethod("getThreadAllocatedBytes", long.class);
+            return (Long) method.invoke(threads, Thread.currentThread().getId());
+        } catch (Throwable ignored) {
+        }
+        try {
+            Method method = Class.forName("android.os.Debug").getMethod("getRuntimeStat", String.class);
+            return Long.parseLong((String) method.invoke(null, "art.gc.bytes-allocated"));
+        } catch (Throwable ignored) {
+        }
+        return -1l;
+    }
+
+    public static class Result {
+        public final String name;
+        public final long iterations;
+        public final long elapsedNanos;
+        public final long allocatedBytes;
+        final long sink;
+
+        Result(String name, long iterations, long elapsedNanos, long allocatedBytes, long sink) {
+            this.name = name;
+            this.iterations = iterations;
+            this.elapsedNanos = elapsedNanos;
+            this.allocatedBytes = allocatedBytes;
+            this.sink = sink;
+        }
+
+        public double nanosPerOp() {
+            return (double) elapsedNanos / (double) iterations;
+        }
+
+        public double bytesPerOp() {
+            return allocatedBytes < 0 ? -1d : (double) allocatedBytes / (double) iterations;
+        }
+
+        public double hashesPerSecond() {
+            return (double) iterations * 1000000000d / (double) elapsedNanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%-12s %10.1f ns/hash %10.1f B/hash %8.3f H/s", name, nanosPerOp(), bytesPerOp(),
+                    hashesPerSecond());
+        }
+    }
+}